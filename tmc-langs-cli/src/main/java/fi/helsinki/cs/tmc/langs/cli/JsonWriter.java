@@ -1,10 +1,21 @@
 package fi.helsinki.cs.tmc.langs.cli;
 
+import fi.helsinki.cs.tmc.langs.domain.LogContent;
+import fi.helsinki.cs.tmc.langs.domain.RunResult;
+
 import com.google.gson.Gson;
 
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Map;
 
 /**
  * Utility for converting objects into JSON format and writing them into a file.
@@ -12,14 +23,194 @@ import java.nio.file.Path;
 public final class JsonWriter {
 
     /**
-     * Convert and save object into outputFile as JSON.
+     * How the logs of a run result are written.
+     */
+    public enum LogEncoding {
+
+        /**
+         * An array of the bytes as signed numbers, as Gson writes a {@code byte[]}.
+         */
+        BYTES,
+        /**
+         * A base64 string of the bytes.
+         */
+        BASE64,
+        /**
+         * A string of the bytes decoded as UTF-8, with malformed input replaced.
+         */
+        UTF_8
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private JsonWriter() {
+    }
+
+    /**
+     * Convert and save object into outputFile as JSON, writing the logs of a run result as
+     * arrays of bytes.
      *
      * @param obj to be converted into JSON format.
      * @param outputFile destination where the converted result is to be saved
      */
     public static void writeObjectIntoJsonFormat(Object obj, Path outputFile) throws IOException {
-        FileWriter writer = new FileWriter(outputFile.toAbsolutePath().toFile());
-        writer.write(new Gson().toJson(obj));
-        writer.close();
+        writeObjectIntoJsonFormat(obj, outputFile, LogEncoding.BYTES);
+    }
+
+    /**
+     * Convert and save object into outputFile as JSON encoded in UTF-8.
+     *
+     * <p>The JSON is written to the file as it is produced. The logs of a run result are
+     * streamed from memory or from the files they were spilled to, in the given encoding,
+     * so they are not copied onto the heap. Each log is closed once it is written, which
+     * deletes the file of a spilled log.
+     *
+     * @param obj to be converted into JSON format.
+     * @param outputFile destination where the converted result is to be saved
+     * @param logEncoding how the logs of a run result are written
+     */
+    public static void writeObjectIntoJsonFormat(
+            Object obj, Path outputFile, LogEncoding logEncoding) throws IOException {
+        Gson gson = new Gson();
+        try (Writer writer =
+                Files.newBufferedWriter(outputFile.toAbsolutePath(), StandardCharsets.UTF_8)) {
+            if (obj instanceof RunResult) {
+                writeRunResult((RunResult) obj, writer, gson, logEncoding);
+            } else {
+                gson.toJson(obj, writer);
+            }
+        }
+    }
+
+    /**
+     * Writes the result with the same fields as Gson would, taking the logs from
+     * {@link RunResult#logContents} so that spilled logs are included.
+     */
+    private static void writeRunResult(
+            RunResult result, Writer writer, Gson gson, LogEncoding logEncoding)
+            throws IOException {
+        writer.write("{\"status\":");
+        gson.toJson(result.status, writer);
+        writer.write(",\"testResults\":");
+        gson.toJson(result.testResults, writer);
+        writer.write(",\"logs\":{");
+        boolean first = true;
+        for (Map.Entry<String, LogContent> log : result.logContents.entrySet()) {
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+            gson.toJson(log.getKey(), writer);
+            writer.write(':');
+            try (LogContent logContent = log.getValue();
+                    InputStream content = logContent.openStream()) {
+                writeLog(content, writer, logEncoding);
+            }
+        }
+        writer.write('}');
+        if (result.resourceUsage != null) {
+            writer.write(",\"resourceUsage\":");
+            gson.toJson(result.resourceUsage, writer);
+        }
+        writer.write('}');
+    }
+
+    private static void writeLog(InputStream content, Writer writer, LogEncoding logEncoding)
+            throws IOException {
+        switch (logEncoding) {
+            case BYTES:
+                writeBytes(content, writer);
+                break;
+            case BASE64:
+                writeBase64(content, writer);
+                break;
+            case UTF_8:
+                writeUtf8(content, writer);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown log encoding " + logEncoding);
+        }
+    }
+
+    private static void writeBytes(InputStream content, Writer writer) throws IOException {
+        writer.write('[');
+        byte[] buffer = new byte[BUFFER_SIZE];
+        boolean first = true;
+        int read;
+        while ((read = content.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                if (!first) {
+                    writer.write(',');
+                }
+                first = false;
+                writer.write(Byte.toString(buffer[i]));
+            }
+        }
+        writer.write(']');
+    }
+
+    private static void writeBase64(InputStream content, final Writer writer)
+            throws IOException {
+        writer.write('"');
+        // Base64 is ASCII without quotes or backslashes, so it needs no escaping.
+        OutputStream ascii =
+                new OutputStream() {
+                    @Override
+                    public void write(int value) throws IOException {
+                        writer.write(value);
+                    }
+
+                    @Override
+                    public void close() {
+                        // Leaves the writer open.
+                    }
+                };
+        try (OutputStream encoder = Base64.getEncoder().wrap(ascii)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = content.read(buffer)) != -1) {
+                encoder.write(buffer, 0, read);
+            }
+        }
+        writer.write('"');
+    }
+
+    private static void writeUtf8(InputStream content, Writer writer) throws IOException {
+        writer.write('"');
+        Reader reader = new InputStreamReader(content, StandardCharsets.UTF_8);
+        char[] buffer = new char[BUFFER_SIZE];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                writeEscaped(buffer[i], writer);
+            }
+        }
+        writer.write('"');
+    }
+
+    private static void writeEscaped(char character, Writer writer) throws IOException {
+        switch (character) {
+            case '"':
+                writer.write("\\\"");
+                break;
+            case '\\':
+                writer.write("\\\\");
+                break;
+            case '\n':
+                writer.write("\\n");
+                break;
+            case '\r':
+                writer.write("\\r");
+                break;
+            case '\t':
+                writer.write("\\t");
+                break;
+            default:
+                if (character < 0x20 || character == 0x2028 || character == 0x2029) {
+                    writer.write(String.format("\\u%04x", (int) character));
+                } else {
+                    writer.write(character);
+                }
+        }
     }
 }
@@ -9,6 +9,8 @@ import fi.helsinki.cs.tmc.langs.domain.FilterFileTreeVisitor;
 import fi.helsinki.cs.tmc.langs.domain.GeneralDirectorySkipper;
 import fi.helsinki.cs.tmc.langs.domain.NoLanguagePluginFoundException;
 import fi.helsinki.cs.tmc.langs.domain.RunResult;
+import fi.helsinki.cs.tmc.langs.util.AsyncTaskExecutorImpl;
+import fi.helsinki.cs.tmc.langs.util.ExerciseIndex;
 import fi.helsinki.cs.tmc.langs.util.ProjectType;
 import fi.helsinki.cs.tmc.langs.util.TaskExecutor;
 import fi.helsinki.cs.tmc.langs.util.TaskExecutorImpl;
@@ -21,10 +23,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -33,6 +37,12 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 /*
  * TODO: unstaticify this class
@@ -47,6 +57,8 @@ public final class Main {
     private static final String CHECKSTYLE_OUTPUT_PATH = "checkstyleOutputPath";
     private static final String OUTPUT_PATH = "outputPath";
     private static final String LOCALE = "locale";
+    private static final String INDEX_PATH = "indexPath";
+    private static final String LOG_ENCODING = "logEncoding";
 
     @VisibleForTesting static Map<String, String> argsMap = Maps.newHashMap();
 
@@ -69,12 +81,16 @@ public final class Main {
                     + "      Prepares from submission and solution project for which the tests"
                     + " can be run in sandbox\n"
                     + " run-tests --exercisePath --outputPath (--checkstyleOutputPath --locale)"
+                    + " (--logEncoding)"
                     + "      Run the tests for the exercise. Runs checkstyle if"
                     + "checkstyleOutputPath is defined \n"
-                    + " scan-exercise --exercisePath --outputPath"
+                    + "             logEncoding is bytes (the default), base64 or utf-8.\n"
+                    + " scan-exercise --exercisePath --outputPath (--indexPath)"
                     + "  Produce an exercise description of an exercise directory.\n"
-                    + " find-exercises --exercisePath --outputPath"
+                    + " find-exercises --exercisePath --outputPath (--indexPath)"
                     + "  Produce list of found exercises.\n"
+                    + "             If indexPath (e.g. <repo>/.tmc-index) is given, exercises are"
+                    + " recorded there and unchanged exercises are not rescanned.\n"
                     + " get-exercise-packaging-configuration --exercisePath --outputPath"
                     + "  Returns configuration of under which folders student and nonstudent files"
                     + " are located."
@@ -178,6 +194,30 @@ public final class Main {
         throw new IllegalStateException("No " + LOCALE + " provided");
     }
 
+    private static JsonWriter.LogEncoding getLogEncodingFromArgs() {
+        if (!argsMap.containsKey(LOG_ENCODING)) {
+            return JsonWriter.LogEncoding.BYTES;
+        }
+        switch (argsMap.get(LOG_ENCODING).toLowerCase(Locale.ROOT)) {
+            case "bytes":
+                return JsonWriter.LogEncoding.BYTES;
+            case "base64":
+                return JsonWriter.LogEncoding.BASE64;
+            case "utf-8":
+                return JsonWriter.LogEncoding.UTF_8;
+            default:
+                printErrAndExit("ERROR: Unknown log encoding " + argsMap.get(LOG_ENCODING) + ".");
+                return JsonWriter.LogEncoding.BYTES;
+        }
+    }
+
+    private static Optional<ExerciseIndex> getExerciseIndexFromArgs() {
+        if (argsMap.containsKey(INDEX_PATH)) {
+            return Optional.of(ExerciseIndex.load(Paths.get(argsMap.get(INDEX_PATH))));
+        }
+        return Optional.absent();
+    }
+
     private static Path getOutputPathFromArgs() {
         if (argsMap.containsKey(OUTPUT_PATH)) {
             return Paths.get(argsMap.get(OUTPUT_PATH));
@@ -215,27 +255,49 @@ public final class Main {
             validationResult =
                     executor.runCheckCodeStyle(getExercisePathFromArgs(), getLocaleFromArgs());
         } catch (NoLanguagePluginFoundException e) {
-            logger.error(
-                    "No suitable language plugin for project at {}", getExercisePathFromArgs(), e);
-            printErrAndExit(
-                    "ERROR: Could not find suitable language plugin for the given exercise "
-                            + outputPath + ".");
+            printNoCodeStylePluginAndExit(outputPath, e);
         }
 
         try {
-            JsonWriter.writeObjectIntoJsonFormat(validationResult, outputPath);
-            System.out.println("Codestyle report can be found at " + outputPath);
+            writeCodeStyleResult(validationResult, outputPath);
         } catch (IOException e) {
-            logger.error("Could not write result into {}", outputPath, e);
-            printErrAndExit("ERROR: Could not write the results to the given file.");
+            printCodeStyleWriteErrorAndExit(outputPath, e);
         }
     }
 
+    private static void writeCodeStyleResult(ValidationResult validationResult, Path outputPath)
+            throws IOException {
+        JsonWriter.writeObjectIntoJsonFormat(validationResult, outputPath);
+        System.out.println("Codestyle report can be found at " + outputPath);
+    }
+
+    private static void printNoCodeStylePluginAndExit(Path outputPath, Throwable cause) {
+        logger.error(
+                "No suitable language plugin for project at {}", getExercisePathFromArgs(), cause);
+        printErrAndExit(
+                "ERROR: Could not find suitable language plugin for the given exercise "
+                        + outputPath + ".");
+    }
+
+    private static void printCodeStyleWriteErrorAndExit(Path outputPath, Throwable cause) {
+        logger.error("Could not write result into {}", outputPath, cause);
+        printErrAndExit("ERROR: Could not write the results to the given file.");
+    }
+
     private static void runScanExercise() {
         String exerciseName = getExercisePathFromArgs().toFile().getName();
+        Optional<ExerciseIndex> index = getExerciseIndexFromArgs();
         Optional<ExerciseDesc> exerciseDesc = Optional.absent();
         try {
-            exerciseDesc = executor.scanExercise(getExercisePathFromArgs(), exerciseName);
+            if (index.isPresent()) {
+                exerciseDesc = getIndexedExerciseDesc(index.get(), exerciseName);
+            }
+            if (!exerciseDesc.isPresent()) {
+                exerciseDesc = executor.scanExercise(getExercisePathFromArgs(), exerciseName);
+                if (exerciseDesc.isPresent() && index.isPresent()) {
+                    updateExerciseIndex(index.get(), exerciseDesc.get());
+                }
+            }
 
             if (!exerciseDesc.isPresent()) {
                 logger.error("Absent exercise description after running scanExercise");
@@ -285,6 +347,20 @@ public final class Main {
                 .setFiler(exerciseMatchingFiler)
                 .traverse();
 
+        Optional<ExerciseIndex> index = getExerciseIndexFromArgs();
+        if (index.isPresent()) {
+            List<Path> exercisePaths = new ArrayList<>();
+            for (String exercise : exercises) {
+                exercisePaths.add(Paths.get(exercise));
+            }
+            index.get().updateExercises(exercisePaths);
+            try {
+                index.get().save();
+            } catch (IOException e) {
+                logger.warn("Could not save exercise index to {}", argsMap.get(INDEX_PATH), e);
+            }
+        }
+
         try {
             JsonWriter.writeObjectIntoJsonFormat(exercises, getOutputPathFromArgs());
             System.out.println("Results can be found in " + getOutputPathFromArgs());
@@ -294,7 +370,92 @@ public final class Main {
         }
     }
 
+    private static Optional<ExerciseDesc> getIndexedExerciseDesc(
+            ExerciseIndex index, String exerciseName) {
+        try {
+            Optional<ExerciseDesc> exerciseDesc =
+                    index.getExerciseDesc(getExercisePathFromArgs(), exerciseName);
+            if (exerciseDesc.isPresent()) {
+                logger.info("Using indexed description of {}", getExercisePathFromArgs());
+            }
+            return exerciseDesc;
+        } catch (IOException e) {
+            logger.warn("Could not fingerprint exercise at {}", getExercisePathFromArgs(), e);
+            return Optional.absent();
+        }
+    }
+
+    private static void updateExerciseIndex(ExerciseIndex index, ExerciseDesc exerciseDesc) {
+        try {
+            index.putExerciseDesc(getExercisePathFromArgs(), exerciseDesc);
+            index.save();
+        } catch (IOException e) {
+            logger.warn("Could not update exercise index at {}", argsMap.get(INDEX_PATH), e);
+        }
+    }
+
+    /**
+     * Runs the tests and, if a checkstyle output path is given, checks the code style at the
+     * same time. Each result is written as soon as it is ready.
+     */
     private static void runTests() {
+        final Optional<Path> checkstyleOutputPath = getCheckstyleOutputPathFromArgs();
+        ExecutorService codeStyleExecutor = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<Void> codeStyleWritten = CompletableFuture.completedFuture(null);
+            if (checkstyleOutputPath.isPresent()) {
+                logger.info("Preparing to check code style.");
+                codeStyleWritten =
+                        checkCodeStyleInBackground(checkstyleOutputPath.get(), codeStyleExecutor);
+            }
+            runTestsAndWriteResult();
+            if (checkstyleOutputPath.isPresent()) {
+                awaitCodeStyleResult(codeStyleWritten, checkstyleOutputPath.get());
+            }
+        } finally {
+            codeStyleExecutor.shutdown();
+        }
+    }
+
+    private static CompletableFuture<Void> checkCodeStyleInBackground(
+            final Path outputPath, Executor codeStyleExecutor) {
+        Consumer<ValidationResult> writeResult =
+                new Consumer<ValidationResult>() {
+                    @Override
+                    public void accept(ValidationResult validationResult) {
+                        try {
+                            writeCodeStyleResult(validationResult, outputPath);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                };
+        return new AsyncTaskExecutorImpl(executor)
+                .runCheckCodeStyle(
+                        getExercisePathFromArgs(), getLocaleFromArgs(), codeStyleExecutor)
+                .thenAccept(writeResult);
+    }
+
+    private static void awaitCodeStyleResult(CompletableFuture<Void> written, Path outputPath) {
+        try {
+            written.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            printErrAndExit("ERROR: Interrupted while checking code style.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof NoLanguagePluginFoundException) {
+                printNoCodeStylePluginAndExit(outputPath, e.getCause());
+            } else if (e.getCause() instanceof UncheckedIOException) {
+                printCodeStyleWriteErrorAndExit(outputPath, e.getCause().getCause());
+            } else {
+                logger.error("Could not check code style", e.getCause());
+                printErrAndExit("ERROR: Could not check code style.");
+            }
+        }
+    }
+
+    private static void runTestsAndWriteResult() {
+        final JsonWriter.LogEncoding logEncoding = getLogEncodingFromArgs();
         RunResult runResult = null;
         try {
             logger.info("Preparing to run tests.");
@@ -309,18 +470,12 @@ public final class Main {
         }
 
         try {
-            JsonWriter.writeObjectIntoJsonFormat(runResult, getOutputPathFromArgs());
+            JsonWriter.writeObjectIntoJsonFormat(runResult, getOutputPathFromArgs(), logEncoding);
             System.out.println("Test results can be found in " + getOutputPathFromArgs());
         } catch (IOException e) {
             logger.error("Could not write output to {}", getOutputPathFromArgs(), e);
             printErrAndExit("ERROR: Could not write the results to the given file.");
         }
-        final Optional<Path> checkstyleOutputPath = getCheckstyleOutputPathFromArgs();
-        if (!checkstyleOutputPath.isPresent()) {
-            return;
-        }
-        logger.info("Preparing to check code style.");
-        runCheckCodeStyle(checkstyleOutputPath.get());
     }
 
     private static void runPrepareStubs() {
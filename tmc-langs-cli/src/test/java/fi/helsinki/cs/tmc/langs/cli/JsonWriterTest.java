@@ -1,6 +1,15 @@
 package fi.helsinki.cs.tmc.langs.cli;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import fi.helsinki.cs.tmc.langs.domain.LogContent;
+import fi.helsinki.cs.tmc.langs.domain.ResourceUsage;
+import fi.helsinki.cs.tmc.langs.domain.RunResult;
+import fi.helsinki.cs.tmc.langs.domain.TestResult;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -8,8 +17,12 @@ import org.junit.Test;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Scanner;
 
 public class JsonWriterTest {
@@ -34,6 +47,101 @@ public class JsonWriterTest {
         scanner.close();
     }
 
+    @Test
+    public void testRunResultLogsAreWrittenAsBytes() throws IOException {
+        RunResult result =
+                new RunResult(
+                        RunResult.Status.PASSED,
+                        ImmutableList.<TestResult>of(),
+                        ImmutableMap.of("stdout", new byte[] {-61, -92}));
+
+        JsonWriter.writeObjectIntoJsonFormat(result, outputFile.toPath());
+
+        String json = new String(Files.readAllBytes(outputFile.toPath()), StandardCharsets.UTF_8);
+        assertEquals(
+                "{\"status\":\"PASSED\",\"testResults\":[],\"logs\":{\"stdout\":[-61,-92]}}",
+                json);
+    }
+
+    @Test
+    public void outputIsEncodedInUtf8() throws IOException {
+        JsonWriter.writeObjectIntoJsonFormat(new MockClass("ä"), outputFile.toPath());
+
+        byte[] json = Files.readAllBytes(outputFile.toPath());
+        assertEquals(
+                "{\"arr\":[0,1,2,3,4,5,6,7,8,9],\"name\":\"ä\"}",
+                new String(json, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void runResultLogsCanBeWrittenAsBase64() throws IOException {
+        RunResult result =
+                new RunResult(
+                        RunResult.Status.PASSED,
+                        ImmutableList.<TestResult>of(),
+                        ImmutableMap.of("stdout", new byte[] {-61, -92, 0}),
+                        new ResourceUsage(1, 2, 3, 4));
+
+        JsonWriter.writeObjectIntoJsonFormat(
+                result, outputFile.toPath(), JsonWriter.LogEncoding.BASE64);
+
+        assertEquals(
+                "{\"status\":\"PASSED\",\"testResults\":[],\"logs\":{\"stdout\":\"w6QA\"},"
+                        + "\"resourceUsage\":{\"wallTimeMillis\":1,\"userCpuMillis\":2,"
+                        + "\"systemCpuMillis\":3,\"peakRssBytes\":4}}",
+                readOutput());
+    }
+
+    @Test
+    public void runResultLogsCanBeWrittenAsUtf8() throws IOException {
+        RunResult result =
+                new RunResult(
+                        RunResult.Status.PASSED,
+                        ImmutableList.<TestResult>of(),
+                        ImmutableMap.of(
+                                "stdout", "ä \"q\"\\\n\u0001".getBytes(StandardCharsets.UTF_8)));
+
+        JsonWriter.writeObjectIntoJsonFormat(
+                result, outputFile.toPath(), JsonWriter.LogEncoding.UTF_8);
+
+        assertEquals(
+                "{\"status\":\"PASSED\",\"testResults\":[],"
+                        + "\"logs\":{\"stdout\":\"ä \\\"q\\\"\\\\\\n\\u0001\"}}",
+                readOutput());
+    }
+
+    @Test
+    public void spilledRunResultLogsAreWritten() throws IOException {
+        byte[] large = new byte[100];
+        Arrays.fill(large, (byte) 'x');
+        LogContent.Collector collector = LogContent.collector(10);
+        collector.write(large);
+        RunResult result =
+                RunResult.ofLogContents(
+                        RunResult.Status.PASSED,
+                        ImmutableList.<TestResult>of(),
+                        ImmutableMap.of("stdout", collector.toLogContent()),
+                        null);
+
+        JsonWriter.writeObjectIntoJsonFormat(
+                result, outputFile.toPath(), JsonWriter.LogEncoding.UTF_8);
+
+        assertEquals(
+                "{\"status\":\"PASSED\",\"testResults\":[],\"logs\":{\"stdout\":\""
+                        + new String(large, StandardCharsets.UTF_8)
+                        + "\"}}",
+                readOutput());
+        try (InputStream stream = result.logContents.get("stdout").openStream()) {
+            fail("The spilled log was not deleted after it was written");
+        } catch (NoSuchFileException expected) {
+            // The file is gone.
+        }
+    }
+
+    private String readOutput() throws IOException {
+        return new String(Files.readAllBytes(outputFile.toPath()), StandardCharsets.UTF_8);
+    }
+
     private class MockClass {
 
         private ArrayList<Integer> arr = new ArrayList<>();
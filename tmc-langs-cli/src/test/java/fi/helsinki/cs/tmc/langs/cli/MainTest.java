@@ -3,8 +3,10 @@ package fi.helsinki.cs.tmc.langs.cli;
 import static org.junit.Assert.assertTrue;
 
 import fi.helsinki.cs.tmc.edutestutils.MockStdio;
+import fi.helsinki.cs.tmc.langs.abstraction.ValidationResult;
 import fi.helsinki.cs.tmc.langs.domain.ExerciseDesc;
 import fi.helsinki.cs.tmc.langs.domain.NoLanguagePluginFoundException;
+import fi.helsinki.cs.tmc.langs.domain.RunResult;
 import fi.helsinki.cs.tmc.langs.domain.TestDesc;
 import fi.helsinki.cs.tmc.langs.util.TaskExecutor;
 import fi.helsinki.cs.tmc.langs.utils.TestUtils;
@@ -19,12 +21,18 @@ import org.junit.contrib.java.lang.system.Assertion;
 import org.junit.contrib.java.lang.system.ExpectedSystemExit;
 
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.io.File;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class MainTest {
 
@@ -173,6 +181,59 @@ public class MainTest {
         Main.main(args);
     }
 
+    @Test
+    public void testRunTestsChecksCodeStyleAtTheSameTime() throws Exception {
+        final String exercisePath = getTargetPath("arith_funcs");
+        final String outputPath = exercisePath + File.separator + "results.txt";
+        final String checkstyleOutputPath = exercisePath + File.separator + "checkstyle.txt";
+        final String[] args = {
+            "run-tests",
+            EXERCISE_PATH,
+            exercisePath,
+            OUTPUT_PATH,
+            outputPath,
+            "--checkstyleOutputPath",
+            checkstyleOutputPath,
+            LOCALE,
+            "en"
+        };
+        Files.deleteIfExists(Paths.get(outputPath));
+        Files.deleteIfExists(Paths.get(checkstyleOutputPath));
+        final CountDownLatch codeStyleChecked = new CountDownLatch(1);
+        final AtomicBoolean ranAtTheSameTime = new AtomicBoolean();
+        Answer<RunResult> runTests =
+                new Answer<RunResult>() {
+                    @Override
+                    public RunResult answer(InvocationOnMock invocation) throws Exception {
+                        ranAtTheSameTime.set(codeStyleChecked.await(10, TimeUnit.SECONDS));
+                        return null;
+                    }
+                };
+        Answer<ValidationResult> checkCodeStyle =
+                new Answer<ValidationResult>() {
+                    @Override
+                    public ValidationResult answer(InvocationOnMock invocation) {
+                        codeStyleChecked.countDown();
+                        return null;
+                    }
+                };
+        Mockito.when(executor.runTests(Paths.get(exercisePath))).thenAnswer(runTests);
+        Mockito.when(executor.runCheckCodeStyle(Paths.get(exercisePath), new Locale("en")))
+                .thenAnswer(checkCodeStyle);
+
+        exit.expectSystemExitWithStatus(0);
+        exit.checkAssertionAfterwards(
+                new Assertion() {
+                    @Override
+                    public void checkAssertion() throws Exception {
+                        assertTrue(ranAtTheSameTime.get());
+                        assertTrue(Files.exists(Paths.get(outputPath)));
+                        assertTrue(Files.exists(Paths.get(checkstyleOutputPath)));
+                    }
+                });
+        Main.main(args);
+    }
+
     @Test
     public void testRunCheckCodeStyle() {
         final String exercisePath = getTargetPath("arith_funcs");
@@ -3,12 +3,21 @@ package fi.helsinki.cs.tmc.langs;
 import fi.helsinki.cs.tmc.langs.domain.Configuration;
 import fi.helsinki.cs.tmc.langs.domain.ExerciseBuilder;
 import fi.helsinki.cs.tmc.langs.domain.ExercisePackagingConfiguration;
+import fi.helsinki.cs.tmc.langs.domain.RunResult;
+import fi.helsinki.cs.tmc.langs.domain.SpecialLogs;
+import fi.helsinki.cs.tmc.langs.domain.TestResult;
+import fi.helsinki.cs.tmc.langs.domain.ValueObject;
 import fi.helsinki.cs.tmc.langs.io.StudentFilePolicy;
 import fi.helsinki.cs.tmc.langs.io.sandbox.SubmissionProcessor;
 import fi.helsinki.cs.tmc.langs.io.zip.Unzipper;
 import fi.helsinki.cs.tmc.langs.io.zip.Zipper;
+import fi.helsinki.cs.tmc.langs.utils.OutputLimits;
+import fi.helsinki.cs.tmc.langs.utils.ProcessResult;
+import fi.helsinki.cs.tmc.langs.utils.ProcessRunner;
+import fi.helsinki.cs.tmc.langs.utils.ResourceLimits;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
 import java.io.File;
 import java.io.IOException;
@@ -20,6 +29,13 @@ import java.util.Stack;
 
 public abstract class AbstractLanguagePlugin implements LanguagePlugin {
 
+    private static final String OUTPUT_HEAD_BYTES = "output_head_bytes";
+    private static final String OUTPUT_TAIL_BYTES = "output_tail_bytes";
+    private static final String ADDRESS_SPACE_LIMIT_MB = "address_space_limit_mb";
+    private static final String CPU_TIME_LIMIT_SECONDS = "cpu_time_limit_seconds";
+    private static final String OPEN_FILES_LIMIT = "open_files_limit";
+    private static final String PROCESS_LIMIT = "process_limit";
+
     private final ExerciseBuilder exerciseBuilder;
     private final SubmissionProcessor submissionProcessor;
     private final Zipper zipper;
@@ -117,6 +133,95 @@ public abstract class AbstractLanguagePlugin implements LanguagePlugin {
         return new Configuration(projectRoot);
     }
 
+    /**
+     * Returns how much of the output of the project's test processes is kept. The plugin's
+     * {@link #getDefaultOutputLimits()} can be overridden with the output_head_bytes and
+     * output_tail_bytes options of the project's .tmcproject.yml.
+     */
+    protected OutputLimits getOutputLimits(Path projectRoot) {
+        OutputLimits defaults = getDefaultOutputLimits();
+        Configuration configuration = getConfiguration(projectRoot);
+        Integer headBytes = getInteger(configuration, OUTPUT_HEAD_BYTES);
+        Integer tailBytes = getInteger(configuration, OUTPUT_TAIL_BYTES);
+        if (headBytes == null && tailBytes == null) {
+            return defaults;
+        }
+        OutputLimits base = defaults.isUnlimited() ? OutputLimits.DEFAULT : defaults;
+        return OutputLimits.of(
+                headBytes != null ? headBytes : base.getHeadBytes(),
+                tailBytes != null ? tailBytes : base.getTailBytes());
+    }
+
+    /**
+     * Returns how much of the output of test processes is kept when the project doesn't
+     * configure it.
+     */
+    protected OutputLimits getDefaultOutputLimits() {
+        return OutputLimits.DEFAULT;
+    }
+
+    /**
+     * Returns the limits the project's test processes run within, configured with the
+     * address_space_limit_mb, cpu_time_limit_seconds, open_files_limit and process_limit
+     * options of the project's .tmcproject.yml. Test processes have no limits by default.
+     */
+    protected ResourceLimits getResourceLimits(Path projectRoot) {
+        Configuration configuration = getConfiguration(projectRoot);
+        ResourceLimits limits = ResourceLimits.NONE;
+        Integer addressSpaceMegabytes = getInteger(configuration, ADDRESS_SPACE_LIMIT_MB);
+        if (addressSpaceMegabytes != null && addressSpaceMegabytes > 0) {
+            limits = limits.withAddressSpaceBytes(addressSpaceMegabytes * 1024L * 1024L);
+        }
+        Integer cpuSeconds = getInteger(configuration, CPU_TIME_LIMIT_SECONDS);
+        if (cpuSeconds != null && cpuSeconds > 0) {
+            limits = limits.withCpuSeconds(cpuSeconds);
+        }
+        Integer openFiles = getInteger(configuration, OPEN_FILES_LIMIT);
+        if (openFiles != null && openFiles > 0) {
+            limits = limits.withOpenFiles(openFiles);
+        }
+        Integer processes = getInteger(configuration, PROCESS_LIMIT);
+        if (processes != null && processes > 0) {
+            limits = limits.withProcesses(processes);
+        }
+        return limits;
+    }
+
+    private static Integer getInteger(Configuration configuration, String key) {
+        ValueObject value = configuration.get(key);
+        if (value == null || value.asInteger() == null || value.asInteger() < 0) {
+            return null;
+        }
+        return value.asInteger();
+    }
+
+    /**
+     * Returns the result of a test run that was cancelled before the tests finished.
+     */
+    protected RunResult runResultFromInterruptedProcess() {
+        return new RunResult(
+                RunResult.Status.TESTRUN_INTERRUPTED,
+                ImmutableList.<TestResult>of(),
+                ImmutableMap.<String, byte[]>of());
+    }
+
+    /**
+     * Returns the result of a test run whose process was killed before the tests finished,
+     * with the output of the process as the logs. Output that the process runner spilled to
+     * disk stays there, see {@link ProcessRunner#withSpilledOutput()}.
+     */
+    protected RunResult runResultFromInterruptedProcess(ProcessResult result) {
+        return RunResult.ofLogContents(
+                RunResult.Status.TESTRUN_INTERRUPTED,
+                ImmutableList.<TestResult>of(),
+                ImmutableMap.of(
+                        SpecialLogs.STDOUT,
+                        result.getOutputContent(),
+                        SpecialLogs.STDERR,
+                        result.getErrorOutputContent()),
+                result.resourceUsage);
+    }
+
     /**
      * Search a directory and its subdirectories for build files. If a directory
      * contains a build file, the directory is added to the list.
@@ -0,0 +1,275 @@
+package fi.helsinki.cs.tmc.langs.domain;
+
+import com.google.common.base.Preconditions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The contents of a log of a test run. Logs are kept in memory unless spilling is enabled
+ * with {@link #SPILL_PROPERTY}, in which case logs larger than
+ * {@link #DEFAULT_SPILL_THRESHOLD_BYTES} are collected into a temporary file instead.
+ *
+ * <p>The contents can be read as a stream or as a read-only buffer, which maps a spilled log
+ * into memory instead of reading it onto the heap. Closing a spilled log deletes its file;
+ * the files of logs that are never closed are only deleted when the JVM exits.
+ */
+public abstract class LogContent implements Closeable {
+
+    /**
+     * Set to true to spill large logs to temporary files.
+     */
+    public static final String SPILL_PROPERTY = "tmc.logs.spill";
+
+    /**
+     * When spilling is enabled, logs larger than this are spilled to disk by default.
+     */
+    public static final int DEFAULT_SPILL_THRESHOLD_BYTES = 256 * 1024;
+
+    private static final Logger log = LoggerFactory.getLogger(LogContent.class);
+
+    private LogContent() {
+    }
+
+    /**
+     * Returns the given bytes as a log kept in memory. The array is not copied.
+     */
+    public static LogContent of(byte[] bytes) {
+        Preconditions.checkNotNull(bytes);
+        return new InMemory(bytes);
+    }
+
+    /**
+     * Returns a stream that collects a log. If spilling is enabled, the log is spilled to
+     * disk once it grows larger than the default threshold.
+     */
+    public static Collector collector() {
+        int threshold = isSpillEnabled() ? DEFAULT_SPILL_THRESHOLD_BYTES : Integer.MAX_VALUE;
+        return new Collector(threshold);
+    }
+
+    /**
+     * Returns a stream that collects a log, spilling it to disk once it grows larger than
+     * {@code spillThresholdBytes}.
+     */
+    public static Collector collector(int spillThresholdBytes) {
+        Preconditions.checkArgument(
+                spillThresholdBytes >= 0, "spillThresholdBytes must not be negative");
+        return new Collector(spillThresholdBytes);
+    }
+
+    /**
+     * Returns whether large logs are spilled to disk, as set by {@link #SPILL_PROPERTY}.
+     */
+    public static boolean isSpillEnabled() {
+        return Boolean.getBoolean(SPILL_PROPERTY);
+    }
+
+    /**
+     * Returns the length of the log in bytes.
+     */
+    public abstract long size();
+
+    /**
+     * Returns whether the log is kept in memory rather than in a temporary file.
+     */
+    public abstract boolean isInMemory();
+
+    /**
+     * Opens a stream of the contents of the log.
+     */
+    public abstract InputStream openStream() throws IOException;
+
+    /**
+     * Returns the contents as a read-only buffer. A spilled log is mapped into memory.
+     */
+    public abstract ByteBuffer asReadOnlyBuffer() throws IOException;
+
+    /**
+     * Returns the contents as an array, reading a spilled log onto the heap.
+     */
+    public abstract byte[] toByteArray() throws IOException;
+
+    /**
+     * Deletes the file of a spilled log. A log kept in memory stays readable.
+     */
+    @Override
+    public void close() throws IOException {
+    }
+
+    private static final class InMemory extends LogContent {
+
+        private final byte[] bytes;
+
+        InMemory(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public long size() {
+            return bytes.length;
+        }
+
+        @Override
+        public boolean isInMemory() {
+            return true;
+        }
+
+        @Override
+        public InputStream openStream() {
+            return new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public ByteBuffer asReadOnlyBuffer() {
+            return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return "LogContent{size=" + bytes.length + "}";
+        }
+    }
+
+    private static final class Spilled extends LogContent {
+
+        private final Path file;
+        private final long size;
+
+        Spilled(Path file, long size) {
+            this.file = file;
+            this.size = size;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public boolean isInMemory() {
+            return false;
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            return Files.newInputStream(file);
+        }
+
+        @Override
+        public ByteBuffer asReadOnlyBuffer() throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+        }
+
+        @Override
+        public byte[] toByteArray() throws IOException {
+            return Files.readAllBytes(file);
+        }
+
+        @Override
+        public void close() throws IOException {
+            Files.deleteIfExists(file);
+        }
+
+        @Override
+        public String toString() {
+            return "LogContent{size=" + size + ", file=" + file + "}";
+        }
+    }
+
+    /**
+     * Collects a log in memory until it grows larger than the threshold, and in a temporary
+     * file after that.
+     */
+    public static final class Collector extends OutputStream {
+
+        private final int spillThresholdBytes;
+        private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        private Path file;
+        private OutputStream fileOutput;
+        private long size;
+        private boolean closed;
+
+        private Collector(int spillThresholdBytes) {
+            this.spillThresholdBytes = spillThresholdBytes;
+        }
+
+        @Override
+        public void write(int value) throws IOException {
+            write(new byte[] {(byte) value}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            Preconditions.checkState(!closed, "the log has already been collected");
+            if (fileOutput == null && size + length > spillThresholdBytes) {
+                spill();
+            }
+            if (fileOutput == null) {
+                memory.write(bytes, offset, length);
+            } else {
+                fileOutput.write(bytes, offset, length);
+            }
+            size += length;
+        }
+
+        private void spill() throws IOException {
+            file = Files.createTempFile("tmc-log-", ".log");
+            file.toFile().deleteOnExit();
+            log.debug("Spilling a log of over {} bytes to {}", spillThresholdBytes, file);
+            fileOutput = Files.newOutputStream(file);
+            memory.writeTo(fileOutput);
+            memory = null;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (fileOutput != null) {
+                fileOutput.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            if (fileOutput != null) {
+                fileOutput.close();
+            }
+        }
+
+        /**
+         * Closes the stream and returns the collected log.
+         */
+        public LogContent toLogContent() {
+            try {
+                close();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            if (fileOutput == null) {
+                return new InMemory(memory.toByteArray());
+            }
+            return new Spilled(file, size);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package fi.helsinki.cs.tmc.langs.domain;
+
+/**
+ * The resources used by a process and its descendants. Values that could not be measured on
+ * the platform are {@link #UNKNOWN}.
+ */
+public final class ResourceUsage {
+
+    public static final long UNKNOWN = -1;
+
+    public final long wallTimeMillis;
+    public final long userCpuMillis;
+    public final long systemCpuMillis;
+    public final long peakRssBytes;
+
+    /**
+     * Creates a new ResourceUsage.
+     */
+    public ResourceUsage(
+            long wallTimeMillis, long userCpuMillis, long systemCpuMillis, long peakRssBytes) {
+        this.wallTimeMillis = wallTimeMillis;
+        this.userCpuMillis = userCpuMillis;
+        this.systemCpuMillis = systemCpuMillis;
+        this.peakRssBytes = peakRssBytes;
+    }
+
+    /**
+     * Returns the usage of only the wall time of a process.
+     */
+    public static ResourceUsage ofWallTime(long wallTimeMillis) {
+        return new ResourceUsage(wallTimeMillis, UNKNOWN, UNKNOWN, UNKNOWN);
+    }
+
+    /**
+     * Combines the usage of two processes that ran at the same time: the wall time is the
+     * longer one, and the CPU times and the peak memory use are added together.
+     */
+    public static ResourceUsage concurrent(ResourceUsage first, ResourceUsage second) {
+        return new ResourceUsage(
+                Math.max(first.wallTimeMillis, second.wallTimeMillis),
+                add(first.userCpuMillis, second.userCpuMillis),
+                add(first.systemCpuMillis, second.systemCpuMillis),
+                add(first.peakRssBytes, second.peakRssBytes));
+    }
+
+    private static long add(long first, long second) {
+        if (first == UNKNOWN || second == UNKNOWN) {
+            return UNKNOWN;
+        }
+        return first + second;
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceUsage{"
+                + "wallTimeMillis=" + wallTimeMillis
+                + ", userCpuMillis=" + userCpuMillis
+                + ", systemCpuMillis=" + systemCpuMillis
+                + ", peakRssBytes=" + peakRssBytes
+                + '}';
+    }
+}
@@ -4,6 +4,10 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
 /**
  * The result of running an exercise's test suite against a submission.
  */
@@ -58,9 +62,27 @@ public final class RunResult {
      *
      * <p>See the SpecialLogs class for names of logs that TMC understands. The
      * result may also contain other custom log types.
+     *
+     * <p>This holds every log unless log spilling is turned on with
+     * {@link LogContent#SPILL_PROPERTY}. With spilling on, a log that was spilled to disk is
+     * left out of this map and only found in {@link #logContents}, so readers that may see
+     * spilled logs must use that instead.
      */
     public final ImmutableMap<String, byte[]> logs;
 
+    /**
+     * All logs from the test run, including the ones spilled to disk.
+     *
+     * <p>This is transient, so serializing a result by reflection writes only {@link #logs}
+     * and leaves out spilled logs. Spilled logs stay on disk until they are closed.
+     */
+    public final transient ImmutableMap<String, LogContent> logContents;
+
+    /**
+     * The resources used by the test run, or null if they weren't measured.
+     */
+    public final ResourceUsage resourceUsage;
+
     /**
      * Create a new RunResult to represent the results of run of the test suite.
      */
@@ -68,12 +90,74 @@ public final class RunResult {
             Status status,
             ImmutableList<TestResult> testResults,
             ImmutableMap<String, byte[]> logs) {
+        this(status, testResults, logs, null);
+    }
+
+    /**
+     * Create a new RunResult with the resources used by the test run.
+     */
+    public RunResult(
+            Status status,
+            ImmutableList<TestResult> testResults,
+            ImmutableMap<String, byte[]> logs,
+            ResourceUsage resourceUsage) {
+        this(status, testResults, logs, toLogContents(logs), resourceUsage);
+    }
+
+    private RunResult(
+            Status status,
+            ImmutableList<TestResult> testResults,
+            ImmutableMap<String, byte[]> logs,
+            ImmutableMap<String, LogContent> logContents,
+            ResourceUsage resourceUsage) {
         Preconditions.checkNotNull(status);
         Preconditions.checkNotNull(testResults);
         Preconditions.checkNotNull(logs);
         this.status = status;
         this.testResults = testResults;
         this.logs = logs;
+        this.logContents = logContents;
+        this.resourceUsage = resourceUsage;
+    }
+
+    /**
+     * Creates a new RunResult whose logs may have been spilled to disk. Spilled logs are
+     * left out of {@link #logs}.
+     */
+    public static RunResult ofLogContents(
+            Status status,
+            ImmutableList<TestResult> testResults,
+            ImmutableMap<String, LogContent> logContents,
+            ResourceUsage resourceUsage) {
+        Preconditions.checkNotNull(logContents);
+        ImmutableMap.Builder<String, byte[]> logs = ImmutableMap.builder();
+        for (Map.Entry<String, LogContent> log : logContents.entrySet()) {
+            if (log.getValue().isInMemory()) {
+                try {
+                    logs.put(log.getKey(), log.getValue().toByteArray());
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        }
+        return new RunResult(status, testResults, logs.build(), logContents, resourceUsage);
+    }
+
+    private static ImmutableMap<String, LogContent> toLogContents(
+            ImmutableMap<String, byte[]> logs) {
+        Preconditions.checkNotNull(logs);
+        ImmutableMap.Builder<String, LogContent> logContents = ImmutableMap.builder();
+        for (Map.Entry<String, byte[]> log : logs.entrySet()) {
+            logContents.put(log.getKey(), LogContent.of(log.getValue()));
+        }
+        return logContents.build();
+    }
+
+    /**
+     * Returns a copy of this result with the resources used by the test run.
+     */
+    public RunResult withResourceUsage(ResourceUsage resourceUsage) {
+        return new RunResult(status, testResults, logs, logContents, resourceUsage);
     }
 
     @Override
@@ -81,7 +165,8 @@ public final class RunResult {
         return "RunResult{"
                 + "status=" + status
                 + ", testResults=" + testResults
-                + ", logKeys=" + logs.keySet()
+                + ", logKeys=" + logContents.keySet()
+                + ", resourceUsage=" + resourceUsage
                 + '}';
     }
 }
@@ -45,6 +45,19 @@ public final class ValueObject {
         return (Boolean) this.value;
     }
 
+    /**
+     * Returns the value of this object as an Integer.
+     *
+     * @return Value as an Integer. Null if value isn't an Integer.
+     */
+    public Integer asInteger() {
+        if (!(value instanceof Integer)) {
+            log.error("Couldn't convert configuration {} to Integer.", value.toString());
+            return null;
+        }
+        return (Integer) this.value;
+    }
+
     public List<String> asList() {
         if (!(value instanceof List)) {
             log.error("Couldn't convert configuration {} to List.", value.toString());
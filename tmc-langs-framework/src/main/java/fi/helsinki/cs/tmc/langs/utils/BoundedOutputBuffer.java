@@ -0,0 +1,245 @@
+package fi.helsinki.cs.tmc.langs.utils;
+
+import fi.helsinki.cs.tmc.langs.domain.LogContent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Collects the output of a process within {@link OutputLimits}: the first bytes are kept as
+ * they are written and the last bytes in a ring buffer, and the bytes that fall out of both
+ * are only counted. Where bytes were dropped, the kept output is cut on UTF-8 character
+ * boundaries, so that no character is only partly kept.
+ *
+ * <p>The first bytes can also be written straight to a {@link LogContent.Collector}, which may
+ * spill them to disk. The kept output is then read with {@link #toLogContent()}, and the last
+ * character of the first bytes may be cut in the log.
+ *
+ * <p>The buffer is written by the thread reading the output and may be read by another.
+ */
+public final class BoundedOutputBuffer {
+
+    // A UTF-8 character cut off at the end of the head is at most three bytes long.
+    private static final int HEAD_END_BYTES = 3;
+
+    private final OutputLimits limits;
+    private final ByteArrayOutputStream memoryHead;
+    private final LogContent.Collector collectedHead;
+    private final OutputStream head;
+    private final byte[] headEnd = new byte[HEAD_END_BYTES];
+    private int headEndSize;
+    private long headSize;
+    private byte[] tail;
+    private int tailStart;
+    private int tailSize;
+    private long truncatedBytes;
+    private long totalBytes;
+
+    public BoundedOutputBuffer(OutputLimits limits) {
+        this.limits = limits;
+        this.memoryHead = new ByteArrayOutputStream();
+        this.collectedHead = null;
+        this.head = memoryHead;
+    }
+
+    /**
+     * Creates a buffer that writes the first bytes to the collector.
+     */
+    BoundedOutputBuffer(OutputLimits limits, LogContent.Collector collector) {
+        this.limits = limits;
+        this.memoryHead = null;
+        this.collectedHead = collector;
+        this.head = collector;
+    }
+
+    public synchronized void write(byte[] bytes, int offset, int length) {
+        totalBytes += length;
+        if (limits.isUnlimited()) {
+            writeHead(bytes, offset, length);
+            return;
+        }
+        int toHead = (int) Math.min(length, limits.getHeadBytes() - headSize);
+        writeHead(bytes, offset, toHead);
+        if (toHead < length) {
+            writeTail(bytes, offset + toHead, length - toHead);
+        }
+    }
+
+    private void writeHead(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            return;
+        }
+        try {
+            head.write(bytes, offset, length);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        headSize += length;
+        int kept = Math.min(headEndSize, HEAD_END_BYTES - Math.min(length, HEAD_END_BYTES));
+        System.arraycopy(headEnd, headEndSize - kept, headEnd, 0, kept);
+        int added = Math.min(length, HEAD_END_BYTES);
+        System.arraycopy(bytes, offset + length - added, headEnd, kept, added);
+        headEndSize = kept + added;
+    }
+
+    /**
+     * Writes the bytes to the end of the ring, overwriting its oldest bytes once it's full.
+     * The bytes are copied in at most two chunks, one up to the end of the array and one from
+     * its start.
+     */
+    private void writeTail(byte[] bytes, int offset, int length) {
+        int capacity = limits.getTailBytes();
+        if (capacity == 0) {
+            truncatedBytes += length;
+            return;
+        }
+        if (tail == null) {
+            tail = new byte[capacity];
+        }
+        if (length >= capacity) {
+            truncatedBytes += tailSize + length - capacity;
+            System.arraycopy(bytes, offset + length - capacity, tail, 0, capacity);
+            tailStart = 0;
+            tailSize = capacity;
+            return;
+        }
+        int end = (tailStart + tailSize) % capacity;
+        int first = Math.min(length, capacity - end);
+        System.arraycopy(bytes, offset, tail, end, first);
+        System.arraycopy(bytes, offset + first, tail, 0, length - first);
+        int overwritten = Math.max(0, tailSize + length - capacity);
+        tailStart = (tailStart + overwritten) % capacity;
+        tailSize = Math.min(capacity, tailSize + length);
+        truncatedBytes += overwritten;
+    }
+
+    /**
+     * Returns the number of bytes written to the buffer, kept or not.
+     */
+    synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Returns the number of bytes dropped from the middle of the output, including the parts
+     * of characters that were cut off.
+     */
+    public synchronized long getTruncatedBytes() {
+        if (truncatedBytes == 0) {
+            return 0;
+        }
+        return truncatedBytes + headCut() + incompleteStart(tailBytes());
+    }
+
+    /**
+     * Returns the number of bytes of a UTF-8 character cut off at the end of the head.
+     */
+    private int headCut() {
+        byte[] end = Arrays.copyOf(headEnd, headEndSize);
+        return end.length - completeLength(end);
+    }
+
+    /**
+     * Returns the kept output, with a line telling how many bytes were dropped between the
+     * first and the last bytes.
+     */
+    @Override
+    public synchronized String toString() {
+        if (memoryHead == null) {
+            throw new IllegalStateException("The output was written to a collector");
+        }
+        byte[] headBytes = memoryHead.toByteArray();
+        byte[] tailBytes = tailBytes();
+        if (truncatedBytes == 0) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            output.write(headBytes, 0, headBytes.length);
+            output.write(tailBytes, 0, tailBytes.length);
+            return new String(output.toByteArray(), StandardCharsets.UTF_8);
+        }
+        int headLength = headBytes.length - headCut();
+        int tailOffset = incompleteStart(tailBytes);
+        return new String(headBytes, 0, headLength, StandardCharsets.UTF_8)
+                + truncationLine()
+                + new String(
+                        tailBytes,
+                        tailOffset,
+                        tailBytes.length - tailOffset,
+                        StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the rest of the kept output to the collector and returns the collected log.
+     */
+    synchronized LogContent toLogContent() {
+        if (collectedHead == null) {
+            throw new IllegalStateException("The output was not written to a collector");
+        }
+        byte[] tailBytes = tailBytes();
+        try {
+            if (truncatedBytes == 0) {
+                collectedHead.write(tailBytes);
+            } else {
+                int tailOffset = incompleteStart(tailBytes);
+                collectedHead.write(truncationLine().getBytes(StandardCharsets.UTF_8));
+                collectedHead.write(tailBytes, tailOffset, tailBytes.length - tailOffset);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return collectedHead.toLogContent();
+    }
+
+    private String truncationLine() {
+        return "\n... (" + getTruncatedBytes() + " bytes truncated)\n";
+    }
+
+    private byte[] tailBytes() {
+        byte[] bytes = new byte[tailSize];
+        if (tailSize > 0) {
+            int first = Math.min(tailSize, tail.length - tailStart);
+            System.arraycopy(tail, tailStart, bytes, 0, first);
+            System.arraycopy(tail, 0, bytes, first, tailSize - first);
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the length of the bytes without a UTF-8 character cut off at their end.
+     */
+    private static int completeLength(byte[] bytes) {
+        int lead = bytes.length - 1;
+        while (lead >= 0 && lead > bytes.length - 4 && isContinuation(bytes[lead])) {
+            lead--;
+        }
+        if (lead < 0 || (bytes[lead] & 0xC0) != 0xC0) {
+            return bytes.length;
+        }
+        int sequenceLength = 2;
+        if ((bytes[lead] & 0xF0) == 0xF0) {
+            sequenceLength = 4;
+        } else if ((bytes[lead] & 0xE0) == 0xE0) {
+            sequenceLength = 3;
+        }
+        return bytes.length - lead < sequenceLength ? lead : bytes.length;
+    }
+
+    /**
+     * Returns the number of bytes at the start of the bytes that continue a UTF-8 character
+     * that started before them.
+     */
+    private static int incompleteStart(byte[] bytes) {
+        int start = 0;
+        while (start < bytes.length && start < 3 && isContinuation(bytes[start])) {
+            start++;
+        }
+        return start;
+    }
+
+    private static boolean isContinuation(byte value) {
+        return (value & 0xC0) == 0x80;
+    }
+}
@@ -0,0 +1,61 @@
+package fi.helsinki.cs.tmc.langs.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A {@link ProcessOutputListener} that receives the output as UTF-8 lines without their line
+ * terminators. Lines longer than {@link #MAX_LINE_BYTES} are passed on in parts, and a last
+ * line without a terminator is passed on when its stream closes.
+ */
+public abstract class LineListener implements ProcessOutputListener {
+
+    static final int MAX_LINE_BYTES = 64 * 1024;
+
+    private final Map<Stream, ByteArrayOutputStream> lines = new EnumMap<>(Stream.class);
+
+    public LineListener() {
+        for (Stream stream : Stream.values()) {
+            lines.put(stream, new ByteArrayOutputStream());
+        }
+    }
+
+    /**
+     * Called with each line of the stream.
+     */
+    protected abstract void onLine(Stream stream, String line);
+
+    @Override
+    public final void onOutput(Stream stream, byte[] bytes, int offset, int length) {
+        ByteArrayOutputStream line = lines.get(stream);
+        for (int i = offset; i < offset + length; i++) {
+            if (bytes[i] == '\n') {
+                passOn(stream, line);
+            } else {
+                line.write(bytes[i]);
+                if (line.size() >= MAX_LINE_BYTES) {
+                    passOn(stream, line);
+                }
+            }
+        }
+    }
+
+    @Override
+    public final void onClose(Stream stream) {
+        ByteArrayOutputStream line = lines.get(stream);
+        if (line.size() > 0) {
+            passOn(stream, line);
+        }
+    }
+
+    private void passOn(Stream stream, ByteArrayOutputStream line) {
+        String text = new String(line.toByteArray(), StandardCharsets.UTF_8);
+        line.reset();
+        if (text.endsWith("\r")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        onLine(stream, text);
+    }
+}
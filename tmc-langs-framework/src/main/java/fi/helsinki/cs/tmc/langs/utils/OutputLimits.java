@@ -0,0 +1,58 @@
+package fi.helsinki.cs.tmc.langs.utils;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * How much of the output of a process is kept. Bounded limits keep the first and the last
+ * bytes of each output stream and drop the bytes in between.
+ */
+public final class OutputLimits {
+
+    /**
+     * Keeps all output.
+     */
+    public static final OutputLimits UNLIMITED = new OutputLimits(-1, -1);
+
+    /**
+     * Keeps the first and the last megabyte of each output stream.
+     */
+    public static final OutputLimits DEFAULT = of(1024 * 1024, 1024 * 1024);
+
+    private final int headBytes;
+    private final int tailBytes;
+
+    private OutputLimits(int headBytes, int tailBytes) {
+        this.headBytes = headBytes;
+        this.tailBytes = tailBytes;
+    }
+
+    /**
+     * Returns limits keeping the first {@code headBytes} and the last {@code tailBytes} bytes
+     * of each output stream.
+     */
+    public static OutputLimits of(int headBytes, int tailBytes) {
+        Preconditions.checkArgument(headBytes >= 0, "headBytes must not be negative");
+        Preconditions.checkArgument(tailBytes >= 0, "tailBytes must not be negative");
+        return new OutputLimits(headBytes, tailBytes);
+    }
+
+    public boolean isUnlimited() {
+        return headBytes < 0;
+    }
+
+    public int getHeadBytes() {
+        return headBytes;
+    }
+
+    public int getTailBytes() {
+        return tailBytes;
+    }
+
+    @Override
+    public String toString() {
+        if (isUnlimited()) {
+            return "OutputLimits{unlimited}";
+        }
+        return "OutputLimits{headBytes=" + headBytes + ", tailBytes=" + tailBytes + "}";
+    }
+}
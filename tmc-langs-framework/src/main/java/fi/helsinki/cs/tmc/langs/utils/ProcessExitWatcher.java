@@ -0,0 +1,117 @@
+package fi.helsinki.cs.tmc.langs.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Notices when processes exit and runs the timers of {@link ProcessRunner}s.
+ *
+ * <p>On JDKs with {@code Process.onExit()} the exits are noticed by the JDK's own process
+ * reaper. Otherwise each running process is waited for in a pooled daemon thread, as Java 8
+ * can't wait for a process without blocking a thread.
+ */
+final class ProcessExitWatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessExitWatcher.class);
+
+    private static final Method onExit = findOnExit();
+
+    private static final ExecutorService waiters =
+            Executors.newCachedThreadPool(new DaemonThreadFactory("tmc-process-exit-"));
+
+    private static final ScheduledExecutorService timer =
+            Executors.newSingleThreadScheduledExecutor(
+                    new DaemonThreadFactory("tmc-process-timer-"));
+
+    private ProcessExitWatcher() {
+    }
+
+    private static Method findOnExit() {
+        try {
+            return Process.class.getMethod("onExit");
+        } catch (NoSuchMethodException ex) {
+            log.debug("No Process.onExit, waiting for processes in threads");
+            return null;
+        }
+    }
+
+    /**
+     * Returns a future of the exit value of the process.
+     */
+    static CompletableFuture<Integer> onExit(final Process process) {
+        if (onExit != null) {
+            try {
+                @SuppressWarnings("unchecked")
+                CompletionStage<Process> exit = (CompletionStage<Process>) onExit.invoke(process);
+                return exit.toCompletableFuture().thenApply(new ExitValue());
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                log.debug("Process.onExit failed, waiting for the process in a thread", ex);
+            }
+        }
+        final CompletableFuture<Integer> exit = new CompletableFuture<>();
+        Runnable waiter =
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            exit.complete(process.waitFor());
+                        } catch (InterruptedException ex) {
+                            exit.completeExceptionally(ex);
+                        }
+                    }
+                };
+        waiters.execute(waiter);
+        return exit;
+    }
+
+    /**
+     * Runs the task in a pooled thread after the delay.
+     */
+    static ScheduledFuture<?> schedule(final Runnable task, long delay, TimeUnit unit) {
+        Runnable inPooledThread =
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        waiters.execute(task);
+                    }
+                };
+        return timer.schedule(inPooledThread, delay, unit);
+    }
+
+    private static final class ExitValue implements Function<Process, Integer> {
+
+        @Override
+        public Integer apply(Process process) {
+            return process.exitValue();
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package fi.helsinki.cs.tmc.langs.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The executor shared by all {@link ProcessRunner}s for draining the output of processes.
+ *
+ * <p>On JDKs with virtual threads every stream is drained in a virtual thread of its own.
+ * Otherwise the streams are drained by a bounded pool of daemon threads that are reused
+ * between processes. When all of the pooled threads are busy, a stream gets a thread of its
+ * own instead of waiting in a queue, as a process can block on a stream nobody drains.
+ *
+ * <p>The pool therefore only bounds the threads that are kept around, not the threads that
+ * are started. Before Java 21, running more processes at once than the pool has room for
+ * (two streams each) starts a new unpooled thread for every stream beyond it, so thread
+ * creation still grows with the number of concurrent processes. Callers that need a hard
+ * bound must limit how many processes they run at once.
+ */
+final class ProcessOutputExecutor {
+
+    /**
+     * The system property holding the number of pooled threads. Defaults to 64.
+     */
+    static final String MAX_THREADS_PROPERTY = "tmc.process.output.threads";
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessOutputExecutor.class);
+
+    private static final int DEFAULT_MAX_THREADS = 64;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private static final ExecutorService executor = create();
+
+    private ProcessOutputExecutor() {
+    }
+
+    static ExecutorService get() {
+        return executor;
+    }
+
+    private static ExecutorService create() {
+        try {
+            ExecutorService virtualThreads =
+                    (ExecutorService)
+                            Executors.class
+                                    .getMethod("newVirtualThreadPerTaskExecutor")
+                                    .invoke(null);
+            log.info("Draining process output in virtual threads");
+            return virtualThreads;
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            // No virtual threads before Java 21.
+        }
+        int maxThreads =
+                Math.max(1, Integer.getInteger(MAX_THREADS_PROPERTY, DEFAULT_MAX_THREADS));
+        final ThreadFactory threadFactory = new DaemonThreadFactory();
+        RejectedExecutionHandler ownThread =
+                new RejectedExecutionHandler() {
+                    @Override
+                    public void rejectedExecution(Runnable task, ThreadPoolExecutor pool) {
+                        log.debug("All process output threads are busy, starting another");
+                        threadFactory.newThread(task).start();
+                    }
+                };
+        return new ThreadPoolExecutor(
+                0,
+                maxThreads,
+                KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(),
+                threadFactory,
+                ownThread);
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "tmc-process-output-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
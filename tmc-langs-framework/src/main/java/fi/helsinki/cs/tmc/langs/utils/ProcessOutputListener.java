@@ -0,0 +1,26 @@
+package fi.helsinki.cs.tmc.langs.utils;
+
+/**
+ * Receives the output of a process run by a {@link ProcessRunner} while the process runs.
+ *
+ * <p>Each stream is read in a thread of its own, so the methods may be called concurrently
+ * for the standard output and the standard error. A listener that wants to stop the process
+ * early cancels the future returned by {@link ProcessRunner#start()}.
+ */
+public interface ProcessOutputListener {
+
+    enum Stream {
+        STDOUT,
+        STDERR
+    }
+
+    /**
+     * Called with each chunk read from the stream. The bytes are only valid during the call.
+     */
+    void onOutput(Stream stream, byte[] bytes, int offset, int length);
+
+    /**
+     * Called once the stream has been read to the end.
+     */
+    void onClose(Stream stream);
+}
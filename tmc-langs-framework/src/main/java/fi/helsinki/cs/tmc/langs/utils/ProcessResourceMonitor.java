@@ -0,0 +1,330 @@
+package fi.helsinki.cs.tmc.langs.utils;
+
+import fi.helsinki.cs.tmc.langs.domain.ResourceUsage;
+
+import com.google.common.base.Optional;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the resources used by a process and its descendants while it runs.
+ *
+ * <p>On Linux the CPU times and memory use of the process tree are sampled from /proc every
+ * {@link #SAMPLE_INTERVAL_MILLIS} milliseconds. The tree is walked from the process through
+ * the children files of its threads, so only the stats of the tree are read. On kernels
+ * without the children files all processes are listed instead. The CPU times include the
+ * descendants the tree has already waited for, but as the process itself can't be sampled
+ * after it exits, the usage of its last moments is missed. Elsewhere, or when
+ * {@link #ENABLED_PROPERTY} is false, only the wall time is measured.
+ */
+final class ProcessResourceMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessResourceMonitor.class);
+
+    /**
+     * Set to false to measure only the wall time of processes, without sampling /proc.
+     */
+    static final String ENABLED_PROPERTY = "tmc.process.monitor";
+
+    static final long SAMPLE_INTERVAL_MILLIS = 500;
+
+    private static final Path PROC = Paths.get("/proc");
+
+    private static final boolean childrenListed = findChildrenFiles();
+
+    // The indices of the fields read from /proc/[pid]/stat.
+    private static final int PARENT = 0;
+    private static final int USER = 1;
+    private static final int SYSTEM = 2;
+    private static final int CHILDREN_USER = 3;
+    private static final int CHILDREN_SYSTEM = 4;
+    private static final int RSS = 5;
+
+    private static final ScheduledExecutorService sampler =
+            Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable task) {
+                            Thread thread = new Thread(task, "tmc-process-monitor");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+
+    private static long ticksPerSecond;
+    private static long pageSize;
+
+    private final long startNanos;
+    private final Optional<Long> pid;
+    private ScheduledFuture<?> sampling;
+    private long userTicks;
+    private long systemTicks;
+    private long peakRssPages;
+    private long peakRssBytes;
+
+    private ProcessResourceMonitor(long startNanos, Optional<Long> pid) {
+        this.startNanos = startNanos;
+        this.pid = pid;
+    }
+
+    /**
+     * Starts measuring the process, whose wall time is measured from {@code startNanos} of
+     * {@link System#nanoTime()}.
+     */
+    static ProcessResourceMonitor start(Process process, long startNanos) {
+        Optional<Long> pid = Optional.absent();
+        if (isEnabled() && Files.isDirectory(PROC.resolve("self"))) {
+            pid = ProcessTree.pid(process);
+        }
+        final ProcessResourceMonitor monitor = new ProcessResourceMonitor(startNanos, pid);
+        if (pid.isPresent()) {
+            Runnable sample =
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            monitor.sample();
+                        }
+                    };
+            monitor.sampling =
+                    sampler.scheduleAtFixedRate(
+                            sample, 0, SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return monitor;
+    }
+
+    /**
+     * Stops measuring and returns the resources used by the process.
+     */
+    ResourceUsage stop() {
+        long wallTimeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        if (sampling == null) {
+            return ResourceUsage.ofWallTime(wallTimeMillis);
+        }
+        sampling.cancel(false);
+        synchronized (this) {
+            long ticks = getTicksPerSecond();
+            return new ResourceUsage(
+                    wallTimeMillis,
+                    userTicks * 1000 / ticks,
+                    systemTicks * 1000 / ticks,
+                    Math.max(peakRssPages * getPageSize(), peakRssBytes));
+        }
+    }
+
+    private synchronized void sample() {
+        Map<Long, long[]> stats = readStats();
+        if (!stats.containsKey(pid.get())) {
+            return;
+        }
+        long user = 0;
+        long system = 0;
+        long rss = 0;
+        for (long[] stat : stats.values()) {
+            user += stat[USER] + stat[CHILDREN_USER];
+            system += stat[SYSTEM] + stat[CHILDREN_SYSTEM];
+            rss += stat[RSS];
+        }
+        userTicks = Math.max(userTicks, user);
+        systemTicks = Math.max(systemTicks, system);
+        peakRssPages = Math.max(peakRssPages, rss);
+        peakRssBytes = Math.max(peakRssBytes, readPeakRssBytes(pid.get()));
+    }
+
+    /**
+     * Reads the statistics of the process and its descendants, including the ones that have
+     * exited but not been waited for.
+     */
+    private Map<Long, long[]> readStats() {
+        if (!childrenListed) {
+            return readStatsOfAllProcesses();
+        }
+        Map<Long, long[]> tree = new HashMap<>();
+        Deque<Long> queue = new ArrayDeque<>();
+        queue.add(pid.get());
+        while (!queue.isEmpty()) {
+            Long process = queue.remove();
+            if (tree.containsKey(process)) {
+                continue;
+            }
+            Path processDir = PROC.resolve(process.toString());
+            Optional<long[]> stat = readStat(processDir);
+            if (stat.isPresent()) {
+                tree.put(process, stat.get());
+                queue.addAll(readChildren(processDir));
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Reads the ids of the children of each thread of the process.
+     */
+    private static List<Long> readChildren(Path processDir) {
+        List<Long> children = new ArrayList<>();
+        try (DirectoryStream<Path> tasks = Files.newDirectoryStream(processDir.resolve("task"))) {
+            for (Path task : tasks) {
+                String ids =
+                        new String(
+                                Files.readAllBytes(task.resolve("children")),
+                                StandardCharsets.UTF_8);
+                for (String id : ids.trim().split("\\s+")) {
+                    if (!id.isEmpty()) {
+                        children.add(Long.parseLong(id));
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            // The process or one of its threads exited while the children were read.
+        }
+        return children;
+    }
+
+    /**
+     * Reads the statistics of all processes of the system and picks the process and its
+     * descendants from them.
+     */
+    private Map<Long, long[]> readStatsOfAllProcesses() {
+        Map<Long, long[]> all = new HashMap<>();
+        try (DirectoryStream<Path> processes = Files.newDirectoryStream(PROC, "[0-9]*")) {
+            for (Path process : processes) {
+                Optional<long[]> stat = readStat(process);
+                if (stat.isPresent()) {
+                    all.put(Long.parseLong(process.getFileName().toString()), stat.get());
+                }
+            }
+        } catch (IOException ex) {
+            log.debug("Unable to list processes", ex);
+        }
+
+        Map<Long, List<Long>> children = new HashMap<>();
+        for (Map.Entry<Long, long[]> process : all.entrySet()) {
+            Long parent = process.getValue()[PARENT];
+            if (!children.containsKey(parent)) {
+                children.put(parent, new ArrayList<Long>());
+            }
+            children.get(parent).add(process.getKey());
+        }
+        Map<Long, long[]> tree = new HashMap<>();
+        Set<Long> visited = new HashSet<>();
+        Deque<Long> queue = new ArrayDeque<>();
+        queue.add(pid.get());
+        while (!queue.isEmpty()) {
+            Long process = queue.remove();
+            if (!visited.add(process) || !all.containsKey(process)) {
+                continue;
+            }
+            tree.put(process, all.get(process));
+            if (children.containsKey(process)) {
+                queue.addAll(children.get(process));
+            }
+        }
+        return tree;
+    }
+
+    private static Optional<long[]> readStat(Path processDir) {
+        try {
+            String stat =
+                    new String(
+                            Files.readAllBytes(processDir.resolve("stat")),
+                            StandardCharsets.UTF_8);
+            // The fields after the parenthesized command, starting from the state.
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            return Optional.of(
+                    new long[] {
+                        Long.parseLong(fields[1]),
+                        Long.parseLong(fields[11]),
+                        Long.parseLong(fields[12]),
+                        Long.parseLong(fields[13]),
+                        Long.parseLong(fields[14]),
+                        Long.parseLong(fields[21])
+                    });
+        } catch (IOException | RuntimeException ex) {
+            // The process has exited.
+            return Optional.absent();
+        }
+    }
+
+    private static boolean findChildrenFiles() {
+        try (DirectoryStream<Path> tasks =
+                Files.newDirectoryStream(PROC.resolve("self").resolve("task"))) {
+            for (Path task : tasks) {
+                return Files.exists(task.resolve("children"));
+            }
+        } catch (IOException | RuntimeException ex) {
+            // No /proc.
+        }
+        return false;
+    }
+
+    private static boolean isEnabled() {
+        return !"false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY));
+    }
+
+    private static long readPeakRssBytes(long pid) {
+        try {
+            for (String line :
+                    Files.readAllLines(
+                            PROC.resolve(Long.toString(pid)).resolve("status"),
+                            StandardCharsets.UTF_8)) {
+                if (line.startsWith("VmHWM:")) {
+                    String[] fields = line.substring("VmHWM:".length()).trim().split("\\s+");
+                    return Long.parseLong(fields[0]) * 1024;
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            // The process has exited.
+        }
+        return 0;
+    }
+
+    private static synchronized long getTicksPerSecond() {
+        if (ticksPerSecond <= 0) {
+            ticksPerSecond = getconf("CLK_TCK", 100);
+        }
+        return ticksPerSecond;
+    }
+
+    private static synchronized long getPageSize() {
+        if (pageSize <= 0) {
+            pageSize = getconf("PAGESIZE", 4096);
+        }
+        return pageSize;
+    }
+
+    private static long getconf(String name, long defaultValue) {
+        try {
+            Process getconf = new ProcessBuilder("getconf", name).start();
+            getconf.getOutputStream().close();
+            String value = IOUtils.toString(getconf.getInputStream(), StandardCharsets.UTF_8);
+            getconf.waitFor();
+            return Long.parseLong(value.trim());
+        } catch (IOException | NumberFormatException ex) {
+            log.debug("Unable to read {}, using {}", name, defaultValue, ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return defaultValue;
+    }
+}
@@ -1,16 +1,164 @@
 package fi.helsinki.cs.tmc.langs.utils;
 
-public final class ProcessResult {
+import fi.helsinki.cs.tmc.langs.domain.LogContent;
+import fi.helsinki.cs.tmc.langs.domain.ResourceUsage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public final class ProcessResult implements Closeable {
     public final int statusCode;
+
+    /**
+     * The output of the process. If the output was spilled to disk by a runner made with
+     * {@link ProcessRunner#withSpilledOutput()}, this is empty and the output is only in
+     * {@link #getOutputContent()}.
+     */
     public final String output;
+
+    /**
+     * The error output of the process, empty if it was spilled to disk.
+     */
     public final String errorOutput;
 
+    /**
+     * Whether the process was killed for running longer than its timeout. The output holds
+     * what the process printed before it was killed.
+     */
+    public final boolean timedOut;
+
+    /**
+     * The number of bytes dropped from the middle of the output to keep it within the
+     * {@link OutputLimits} of the process.
+     */
+    public final long outputTruncatedBytes;
+
+    /**
+     * The number of bytes dropped from the middle of the error output.
+     */
+    public final long errorOutputTruncatedBytes;
+
+    /**
+     * The resources used by the process and its descendants, or null if they weren't measured.
+     */
+    public final ResourceUsage resourceUsage;
+
+    private final LogContent outputContent;
+    private final LogContent errorOutputContent;
+
     /**
      * This is returned by Process Runner and has information about the result of the process.
      */
     public ProcessResult(int statusCode, String output, String errorOutput) {
+        this(statusCode, output, errorOutput, false);
+    }
+
+    /**
+     * Creates the result of a process that may have been killed for timing out.
+     */
+    public ProcessResult(int statusCode, String output, String errorOutput, boolean timedOut) {
+        this(statusCode, output, errorOutput, timedOut, 0, 0);
+    }
+
+    /**
+     * Creates the result of a process whose output may have been truncated.
+     */
+    public ProcessResult(
+            int statusCode,
+            String output,
+            String errorOutput,
+            boolean timedOut,
+            long outputTruncatedBytes,
+            long errorOutputTruncatedBytes) {
+        this(
+                statusCode,
+                output,
+                errorOutput,
+                timedOut,
+                outputTruncatedBytes,
+                errorOutputTruncatedBytes,
+                null);
+    }
+
+    /**
+     * Creates the result of a process whose resource usage was measured.
+     */
+    public ProcessResult(
+            int statusCode,
+            String output,
+            String errorOutput,
+            boolean timedOut,
+            long outputTruncatedBytes,
+            long errorOutputTruncatedBytes,
+            ResourceUsage resourceUsage) {
+        this(
+                statusCode,
+                output,
+                errorOutput,
+                timedOut,
+                outputTruncatedBytes,
+                errorOutputTruncatedBytes,
+                resourceUsage,
+                null,
+                null);
+    }
+
+    /**
+     * Creates the result of a process whose output was collected as logs, which may have
+     * been spilled to disk.
+     */
+    ProcessResult(
+            int statusCode,
+            String output,
+            String errorOutput,
+            boolean timedOut,
+            long outputTruncatedBytes,
+            long errorOutputTruncatedBytes,
+            ResourceUsage resourceUsage,
+            LogContent outputContent,
+            LogContent errorOutputContent) {
         this.statusCode = statusCode;
         this.output = output;
         this.errorOutput = errorOutput;
+        this.timedOut = timedOut;
+        this.outputTruncatedBytes = outputTruncatedBytes;
+        this.errorOutputTruncatedBytes = errorOutputTruncatedBytes;
+        this.resourceUsage = resourceUsage;
+        this.outputContent = outputContent;
+        this.errorOutputContent = errorOutputContent;
+    }
+
+    /**
+     * Returns the output of the process as a log, which holds all of the output even if it
+     * was spilled to disk.
+     */
+    public LogContent getOutputContent() {
+        return outputContent != null
+                ? outputContent
+                : LogContent.of(output.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the error output of the process as a log.
+     */
+    public LogContent getErrorOutputContent() {
+        return errorOutputContent != null
+                ? errorOutputContent
+                : LogContent.of(errorOutput.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Deletes the output that was spilled to disk. Call this when the output is not passed on
+     * in a run result.
+     */
+    @Override
+    public void close() throws IOException {
+        if (outputContent != null) {
+            outputContent.close();
+        }
+        if (errorOutputContent != null) {
+            errorOutputContent.close();
+        }
     }
 }
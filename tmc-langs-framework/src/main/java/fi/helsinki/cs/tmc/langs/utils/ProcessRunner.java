@@ -1,82 +1,472 @@
 package fi.helsinki.cs.tmc.langs.utils;
 
-import org.apache.commons.io.IOUtils;
+import fi.helsinki.cs.tmc.langs.domain.LogContent;
+import fi.helsinki.cs.tmc.langs.domain.ResourceUsage;
+
+import com.google.common.base.Throwables;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 /**
  * Used to run subprocesses with a timeout and capture their output.
  *
- * <p>TODO: make cancellable
+ * <p>The process is either run in the calling thread with {@link #call()}, which is cancelled
+ * by interrupting the thread, or started with {@link #start()}, whose future is cancelled
+ * directly. When the process times out or the run is cancelled, the process is killed together
+ * with all of its descendants. The resources used by the process are measured with a
+ * {@link ProcessResourceMonitor}.
  */
 public final class ProcessRunner implements Callable<ProcessResult> {
 
+    /**
+     * The system property holding the default timeout of processes in seconds. Processes have
+     * no timeout by default.
+     */
+    public static final String TIMEOUT_PROPERTY = "tmc.process.timeout";
+
     private static final Logger log = LoggerFactory.getLogger(ProcessRunner.class);
 
+    /**
+     * How long to wait for the output of a killed process, whose output may still be held
+     * open by a descendant that could not be killed.
+     */
+    private static final long OUTPUT_WAIT_MILLIS = 5000;
+
+    private static final int READ_BUFFER_SIZE = 8192;
+
     private final String[] command;
     private final Path workDir;
+    private final long timeoutMillis;
+    private final OutputLimits outputLimits;
+    private final ResourceLimits resourceLimits;
+    private final ProcessOutputListener outputListener;
+    private final boolean spillOutput;
 
+    /**
+     * Creates a runner with the default timeout given by {@link #TIMEOUT_PROPERTY} that keeps
+     * all output.
+     */
     public ProcessRunner(String[] command, Path workDir) {
+        this(command, workDir, OutputLimits.UNLIMITED);
+    }
+
+    /**
+     * Creates a runner with the default timeout given by {@link #TIMEOUT_PROPERTY} that keeps
+     * the output within the limits.
+     */
+    public ProcessRunner(String[] command, Path workDir, OutputLimits outputLimits) {
+        this(
+                command,
+                workDir,
+                getDefaultTimeoutMillis(),
+                TimeUnit.MILLISECONDS,
+                outputLimits);
+    }
+
+    /**
+     * Creates a runner that kills the process if it runs longer than the timeout. A timeout
+     * of zero or less means no timeout.
+     */
+    public ProcessRunner(String[] command, Path workDir, long timeout, TimeUnit unit) {
+        this(command, workDir, timeout, unit, OutputLimits.UNLIMITED);
+    }
+
+    /**
+     * Creates a runner with a timeout that keeps the output within the limits.
+     */
+    public ProcessRunner(
+            String[] command,
+            Path workDir,
+            long timeout,
+            TimeUnit unit,
+            OutputLimits outputLimits) {
+        this(
+                command,
+                workDir,
+                unit.toMillis(timeout),
+                outputLimits,
+                ResourceLimits.NONE,
+                null,
+                false);
+    }
+
+    private ProcessRunner(
+            String[] command,
+            Path workDir,
+            long timeoutMillis,
+            OutputLimits outputLimits,
+            ResourceLimits resourceLimits,
+            ProcessOutputListener outputListener,
+            boolean spillOutput) {
         this.command = command;
         this.workDir = workDir;
+        this.timeoutMillis = timeoutMillis;
+        this.outputLimits = outputLimits;
+        this.resourceLimits = resourceLimits;
+        this.outputListener = outputListener;
+        this.spillOutput = spillOutput;
+    }
+
+    /**
+     * Returns a runner that runs the process and its descendants within the limits.
+     */
+    public ProcessRunner withResourceLimits(ResourceLimits resourceLimits) {
+        return new ProcessRunner(
+                command,
+                workDir,
+                timeoutMillis,
+                outputLimits,
+                resourceLimits,
+                outputListener,
+                spillOutput);
     }
 
+    /**
+     * Returns a runner that passes the output of the process to the listener as it is read,
+     * in addition to collecting it into the result. A listener that throws an exception is not
+     * called again for the stream.
+     */
+    public ProcessRunner withOutputListener(ProcessOutputListener outputListener) {
+        return new ProcessRunner(
+                command,
+                workDir,
+                timeoutMillis,
+                outputLimits,
+                resourceLimits,
+                outputListener,
+                spillOutput);
+    }
+
+    /**
+     * Returns a runner that collects the output as it is read into logs, which are spilled to
+     * disk when {@link LogContent#SPILL_PROPERTY} is set and the output is large. The output
+     * of the result is then read with {@link ProcessResult#getOutputContent()}, as its string
+     * fields are empty for spilled output, and the result should be closed if its output is
+     * not passed on.
+     */
+    public ProcessRunner withSpilledOutput() {
+        return new ProcessRunner(
+                command,
+                workDir,
+                timeoutMillis,
+                outputLimits,
+                resourceLimits,
+                outputListener,
+                true);
+    }
+
+    /**
+     * Returns the default timeout of processes in milliseconds, or zero if there is none.
+     */
+    public static long getDefaultTimeoutMillis() {
+        return TimeUnit.SECONDS.toMillis(Math.max(0, Long.getLong(TIMEOUT_PROPERTY, 0)));
+    }
+
+    /**
+     * Runs the process, blocking the calling thread until the process has exited and its
+     * output has been read. Interrupting the thread kills the process.
+     */
     @Override
     public ProcessResult call() throws IOException, InterruptedException {
-        Process process = null;
+        CompletableFuture<ProcessResult> result = start();
         try {
-            ProcessBuilder processBuilder = new ProcessBuilder(command);
-            processBuilder.directory(workDir.toFile());
-            process = processBuilder.start();
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+            Throwables.propagateIfInstanceOf(e.getCause(), InterruptedException.class);
+            throw Throwables.propagate(e.getCause());
+        }
+    }
 
-            StringWriter stdoutWriter = new StringWriter();
-            StringWriter stderrWriter = new StringWriter();
+    /**
+     * Starts the process and returns the future of its result without blocking the calling
+     * thread. Cancelling the future kills the process together with all of its descendants.
+     */
+    public CompletableFuture<ProcessResult> start() {
+        if (!resourceLimits.isUnlimited()) {
+            log.debug("Running {} with {}", Arrays.toString(command), resourceLimits);
+        }
+        ProcessBuilder processBuilder = new ProcessBuilder(resourceLimits.apply(command));
+        processBuilder.directory(workDir.toFile());
+        long startNanos = System.nanoTime();
+        try {
+            return new RunningProcess(processBuilder.start(), startNanos).start();
+        } catch (IOException e) {
+            CompletableFuture<ProcessResult> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
 
-            Thread stdoutReaderThread = startReadingThread(process.getInputStream(), stdoutWriter);
-            Thread stderrReaderThread = startReadingThread(process.getErrorStream(), stderrWriter);
+    private CompletableFuture<Void> startReading(
+            InputStream inputStream,
+            BoundedOutputBuffer buffer,
+            ProcessOutputListener.Stream stream) {
+        return CompletableFuture.runAsync(
+                new ProcessOutputReader(inputStream, buffer, stream),
+                ProcessOutputExecutor.get());
+    }
 
-            int statusCode = process.waitFor();
-            stdoutReaderThread.join();
-            stderrReaderThread.join();
+    /**
+     * A started process whose exit, timeout and cancellation complete its result.
+     */
+    private final class RunningProcess {
+
+        private final Process process;
+        private final ProcessResourceMonitor monitor;
+        private final BoundedOutputBuffer stdout = newBuffer();
+        private final BoundedOutputBuffer stderr = newBuffer();
+        private final CompletableFuture<ProcessResult> result = new CompletableFuture<>();
+        private volatile boolean timedOut;
+        private ScheduledFuture<?> timeout;
+
+        RunningProcess(Process process, long startNanos) {
+            this.process = process;
+            this.monitor = ProcessResourceMonitor.start(process, startNanos);
+        }
 
-            return new ProcessResult(statusCode, stdoutWriter.toString(), stderrWriter.toString());
-        } finally {
-            if (process != null) {
+        CompletableFuture<ProcessResult> start() {
+            final CompletableFuture<Void> output =
+                    CompletableFuture.allOf(
+                            startReading(
+                                    process.getInputStream(),
+                                    stdout,
+                                    ProcessOutputListener.Stream.STDOUT),
+                            startReading(
+                                    process.getErrorStream(),
+                                    stderr,
+                                    ProcessOutputListener.Stream.STDERR));
+            if (timeoutMillis > 0) {
+                Runnable timeOut =
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                timeOut();
+                            }
+                        };
+                timeout =
+                        ProcessExitWatcher.schedule(
+                                timeOut, timeoutMillis, TimeUnit.MILLISECONDS);
+            }
+            BiConsumer<ProcessResult, Throwable> cancellation =
+                    new BiConsumer<ProcessResult, Throwable>() {
+                        @Override
+                        public void accept(ProcessResult processResult, Throwable error) {
+                            if (result.isCancelled()) {
+                                cancel();
+                            }
+                        }
+                    };
+            result.whenComplete(cancellation);
+            BiConsumer<Integer, Throwable> exit =
+                    new BiConsumer<Integer, Throwable>() {
+                        @Override
+                        public void accept(Integer statusCode, Throwable error) {
+                            if (error != null) {
+                                fail(error);
+                            } else {
+                                exited(statusCode, output);
+                            }
+                        }
+                    };
+            ProcessExitWatcher.onExit(process).whenComplete(exit);
+            return result;
+        }
+
+        private void timeOut() {
+            if (!process.isAlive()) {
+                return;
+            }
+            log.warn("Process {} timed out after {} ms", Arrays.toString(command), timeoutMillis);
+            timedOut = true;
+            ProcessTree.kill(process);
+        }
+
+        private void cancel() {
+            if (process.isAlive()) {
+                log.info("Process {} was cancelled", Arrays.toString(command));
+                ProcessTree.kill(process);
+            }
+            stop();
+        }
+
+        private void fail(Throwable error) {
+            ProcessTree.kill(process);
+            stop();
+            result.completeExceptionally(error);
+        }
+
+        private void stop() {
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            monitor.stop();
+        }
+
+        /**
+         * Completes the result once the output has been read, or after a while if the process
+         * was killed, as a descendant that could not be killed may still hold the output open.
+         */
+        private void exited(final int statusCode, final CompletableFuture<Void> output) {
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            final ResourceUsage resourceUsage = monitor.stop();
+            log.debug("Process {} used {}", Arrays.toString(command), resourceUsage);
+            if (timedOut) {
+                Runnable stopWaiting =
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                if (output.complete(null)) {
+                                    log.warn(
+                                            "Output of {} is still open, ignoring the rest",
+                                            Arrays.toString(command));
+                                }
+                            }
+                        };
+                ProcessExitWatcher.schedule(stopWaiting, OUTPUT_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            BiConsumer<Void, Throwable> outputRead =
+                    new BiConsumer<Void, Throwable>() {
+                        @Override
+                        public void accept(Void ignored, Throwable error) {
+                            if (error != null) {
+                                log.error(error.toString());
+                            }
+                            finish(statusCode, resourceUsage);
+                        }
+                    };
+            output.whenComplete(outputRead);
+        }
+
+        private void finish(int statusCode, ResourceUsage resourceUsage) {
+            log.debug(
+                    "Process {} wrote {} bytes of output and {} bytes of error output",
+                    Arrays.toString(command),
+                    stdout.getTotalBytes(),
+                    stderr.getTotalBytes());
+            if (stdout.getTruncatedBytes() > 0 || stderr.getTruncatedBytes() > 0) {
+                log.info(
+                        "Truncated {} bytes of output and {} bytes of error output of {}",
+                        stdout.getTruncatedBytes(),
+                        stderr.getTruncatedBytes(),
+                        Arrays.toString(command));
+            }
+            try {
                 process.getOutputStream().close();
-                process.destroy();
+            } catch (IOException e) {
+                log.error(e.toString());
+            }
+            process.destroy();
+            if (!spillOutput) {
+                result.complete(
+                        new ProcessResult(
+                                statusCode,
+                                stdout.toString(),
+                                stderr.toString(),
+                                timedOut,
+                                stdout.getTruncatedBytes(),
+                                stderr.getTruncatedBytes(),
+                                resourceUsage));
+                return;
             }
+            LogContent outputContent = stdout.toLogContent();
+            LogContent errorOutputContent = stderr.toLogContent();
+            result.complete(
+                    new ProcessResult(
+                            statusCode,
+                            toText(outputContent),
+                            toText(errorOutputContent),
+                            timedOut,
+                            stdout.getTruncatedBytes(),
+                            stderr.getTruncatedBytes(),
+                            resourceUsage,
+                            outputContent,
+                            errorOutputContent));
         }
     }
 
-    private Thread startReadingThread(InputStream inputStream, StringWriter stringWriter) {
-        Thread thread = new Thread(new ProcessOutputReader(inputStream, stringWriter));
-        thread.start();
-        return thread;
+    private BoundedOutputBuffer newBuffer() {
+        if (spillOutput) {
+            return new BoundedOutputBuffer(outputLimits, LogContent.collector());
+        }
+        return new BoundedOutputBuffer(outputLimits);
+    }
+
+    /**
+     * Returns the log as text if it is kept in memory, and nothing if it was spilled.
+     */
+    private static String toText(LogContent content) {
+        if (!content.isInMemory()) {
+            return "";
+        }
+        try {
+            return new String(content.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     private class ProcessOutputReader implements Runnable {
 
         private InputStream inputStream;
-        private StringWriter stringWriter;
+        private BoundedOutputBuffer buffer;
+        private ProcessOutputListener.Stream stream;
+        private boolean listening = outputListener != null;
 
-        public ProcessOutputReader(InputStream inputStream, StringWriter stringWriter) {
+        public ProcessOutputReader(
+                InputStream inputStream,
+                BoundedOutputBuffer buffer,
+                ProcessOutputListener.Stream stream) {
             this.inputStream = inputStream;
-            this.stringWriter = stringWriter;
+            this.buffer = buffer;
+            this.stream = stream;
         }
 
         @Override
         public void run() {
             try {
-                IOUtils.copy(inputStream, stringWriter, "UTF-8");
+                byte[] bytes = new byte[READ_BUFFER_SIZE];
+                int read;
+                while ((read = inputStream.read(bytes)) != -1) {
+                    buffer.write(bytes, 0, read);
+                    if (listening) {
+                        try {
+                            outputListener.onOutput(stream, bytes, 0, read);
+                        } catch (RuntimeException e) {
+                            log.error("Output listener of {} failed", Arrays.toString(command), e);
+                            listening = false;
+                        }
+                    }
+                }
             } catch (IOException e) {
                 log.error(e.toString());
             }
+            if (listening) {
+                try {
+                    outputListener.onClose(stream);
+                } catch (RuntimeException e) {
+                    log.error("Output listener of {} failed", Arrays.toString(command), e);
+                }
+            }
             try {
                 inputStream.close();
             } catch (IOException e) {
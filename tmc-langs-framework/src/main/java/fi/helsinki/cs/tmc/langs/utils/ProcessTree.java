@@ -0,0 +1,232 @@
+package fi.helsinki.cs.tmc.langs.utils;
+
+import com.google.common.base.Optional;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Kills a process together with all of its descendants.
+ *
+ * <p>On JDKs with {@code ProcessHandle} the descendants are found and killed through it.
+ * Java 8 has no API for the children of a process, so there they are found from /proc, or
+ * with ps where there is no /proc, and killed with SIGKILL on Unix-like systems. Elsewhere
+ * only the process itself is killed.
+ */
+final class ProcessTree {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessTree.class);
+
+    private static final Path PROC = Paths.get("/proc");
+    private static final int KILL_ROUNDS = 3;
+
+    private static final Method pidMethod = findMethod("java.lang.Process", "pid");
+    private static final Method toHandle = findMethod("java.lang.Process", "toHandle");
+    private static final Method handleDescendants =
+            findMethod("java.lang.ProcessHandle", "descendants");
+    private static final Method handleDestroyForcibly =
+            findMethod("java.lang.ProcessHandle", "destroyForcibly");
+
+    private ProcessTree() {
+    }
+
+    private static Method findMethod(String className, String name) {
+        try {
+            return Class.forName(className).getMethod(name);
+        } catch (ClassNotFoundException | NoSuchMethodException ex) {
+            log.debug("No {}.{}, using the Java 8 fallback", className, name);
+            return null;
+        }
+    }
+
+    /**
+     * Kills the descendants of the process and then the process itself. The descendants are
+     * killed first, as they can no longer be found once the process is gone.
+     */
+    static void kill(Process process) {
+        if (toHandle != null && handleDescendants != null && handleDestroyForcibly != null) {
+            try {
+                killDescendantsWithHandles(process);
+                process.destroyForcibly();
+                return;
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                log.debug("ProcessHandle failed, finding the descendants of {}", process, ex);
+            }
+        }
+        Optional<Long> pid = pid(process);
+        if (pid.isPresent()) {
+            for (int round = 0; round < KILL_ROUNDS; round++) {
+                List<Long> descendants = descendants(pid.get());
+                if (descendants.isEmpty()) {
+                    break;
+                }
+                log.info("Killing {} descendants of process {}", descendants.size(), pid.get());
+                signalKill(descendants);
+            }
+        }
+        process.destroyForcibly();
+    }
+
+    private static void killDescendantsWithHandles(Process process)
+            throws ReflectiveOperationException {
+        Object handle = toHandle.invoke(process);
+        for (int round = 0; round < KILL_ROUNDS; round++) {
+            List<Object> descendants =
+                    ((Stream<?>) handleDescendants.invoke(handle))
+                            .collect(Collectors.<Object>toList());
+            if (descendants.isEmpty()) {
+                break;
+            }
+            log.info("Killing {} descendants of process {}", descendants.size(), process);
+            for (Object descendant : descendants) {
+                handleDestroyForcibly.invoke(descendant);
+            }
+        }
+    }
+
+    /**
+     * Returns the id of the process. On JDKs with {@code Process.pid()} it is asked from the
+     * process, and on Java 8 it is read from the process implementation, which only has it on
+     * Unix-like systems.
+     */
+    static Optional<Long> pid(Process process) {
+        if (pidMethod != null) {
+            try {
+                return Optional.of((Long) pidMethod.invoke(process));
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                log.debug("Process.pid failed, reading the pid field", ex);
+            }
+        }
+        try {
+            Field field = process.getClass().getDeclaredField("pid");
+            field.setAccessible(true);
+            return Optional.of(((Number) field.get(process)).longValue());
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            log.warn("Unable to find the id of process {}", process, ex);
+            return Optional.absent();
+        }
+    }
+
+    /**
+     * Returns the ids of the live descendants of the process, parents before their children.
+     */
+    static List<Long> descendants(long pid) {
+        Map<Long, List<Long>> children = new HashMap<>();
+        for (Map.Entry<Long, Long> process : parents().entrySet()) {
+            if (!children.containsKey(process.getValue())) {
+                children.put(process.getValue(), new ArrayList<Long>());
+            }
+            children.get(process.getValue()).add(process.getKey());
+        }
+
+        List<Long> descendants = new ArrayList<>();
+        Deque<Long> queue = new ArrayDeque<>();
+        queue.add(pid);
+        while (!queue.isEmpty()) {
+            List<Long> processChildren = children.get(queue.remove());
+            if (processChildren != null) {
+                for (Long child : processChildren) {
+                    if (!descendants.contains(child)) {
+                        descendants.add(child);
+                        queue.add(child);
+                    }
+                }
+            }
+        }
+        return descendants;
+    }
+
+    /**
+     * Maps the ids of the live processes of the system to the ids of their parents.
+     */
+    private static Map<Long, Long> parents() {
+        if (Files.isDirectory(PROC.resolve("self"))) {
+            return parentsFromProc();
+        }
+        return parentsFromPs();
+    }
+
+    private static Map<Long, Long> parentsFromProc() {
+        Map<Long, Long> parents = new HashMap<>();
+        try (DirectoryStream<Path> processes = Files.newDirectoryStream(PROC, "[0-9]*")) {
+            for (Path process : processes) {
+                try {
+                    String stat =
+                            new String(
+                                    Files.readAllBytes(process.resolve("stat")),
+                                    StandardCharsets.UTF_8);
+                    // The fields after the parenthesized command are the state and the parent.
+                    String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+                    if (!fields[0].equals("Z")) {
+                        parents.put(
+                                Long.parseLong(process.getFileName().toString()),
+                                Long.parseLong(fields[1]));
+                    }
+                } catch (IOException | RuntimeException ex) {
+                    // The process exited while the processes were listed.
+                }
+            }
+        } catch (IOException ex) {
+            log.warn("Unable to list processes", ex);
+        }
+        return parents;
+    }
+
+    private static Map<Long, Long> parentsFromPs() {
+        Map<Long, Long> parents = new HashMap<>();
+        try {
+            Process ps = new ProcessBuilder("ps", "-A", "-o", "pid=", "-o", "ppid=").start();
+            ps.getOutputStream().close();
+            ps.getErrorStream().close();
+            for (String line : IOUtils.readLines(ps.getInputStream(), StandardCharsets.UTF_8)) {
+                String[] fields = line.trim().split("\\s+");
+                if (fields.length == 2) {
+                    parents.put(Long.parseLong(fields[0]), Long.parseLong(fields[1]));
+                }
+            }
+            ps.waitFor();
+        } catch (IOException | NumberFormatException ex) {
+            log.warn("Unable to list processes", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return parents;
+    }
+
+    private static void signalKill(List<Long> pids) {
+        List<String> command = new ArrayList<>();
+        command.add("kill");
+        command.add("-KILL");
+        for (Long pid : pids) {
+            command.add(pid.toString());
+        }
+        try {
+            Process kill = new ProcessBuilder(command).redirectErrorStream(true).start();
+            kill.getOutputStream().close();
+            IOUtils.toByteArray(kill.getInputStream());
+            kill.waitFor();
+        } catch (IOException ex) {
+            log.warn("Unable to kill processes {}", pids, ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package fi.helsinki.cs.tmc.langs.utils;
+
+import com.google.common.base.Preconditions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The operating system limits of a process, inherited by all of its descendants. A limit of
+ * {@link #UNLIMITED} leaves the limit as it is.
+ *
+ * <p>The limits are applied by running the command through {@code prlimit} when it is
+ * available and through {@code sh} and {@code ulimit} otherwise. Note that the process limit
+ * counts all processes of the user, not just the descendants of the process, and that an
+ * address space limit must leave room for whatever a JVM reserves at startup.
+ */
+public final class ResourceLimits {
+
+    public static final long UNLIMITED = -1;
+
+    /**
+     * Leaves all limits as they are.
+     */
+    public static final ResourceLimits NONE =
+            new ResourceLimits(UNLIMITED, UNLIMITED, UNLIMITED, UNLIMITED);
+
+    private static final Logger log = LoggerFactory.getLogger(ResourceLimits.class);
+
+    private static Boolean prlimitAvailable;
+
+    private final long addressSpaceBytes;
+    private final long cpuSeconds;
+    private final long openFiles;
+    private final long processes;
+
+    private ResourceLimits(
+            long addressSpaceBytes, long cpuSeconds, long openFiles, long processes) {
+        this.addressSpaceBytes = addressSpaceBytes;
+        this.cpuSeconds = cpuSeconds;
+        this.openFiles = openFiles;
+        this.processes = processes;
+    }
+
+    /**
+     * Returns these limits with the given limit for the virtual memory of each process.
+     */
+    public ResourceLimits withAddressSpaceBytes(long addressSpaceBytes) {
+        checkLimit(addressSpaceBytes);
+        return new ResourceLimits(addressSpaceBytes, cpuSeconds, openFiles, processes);
+    }
+
+    /**
+     * Returns these limits with the given limit for the CPU time of each process.
+     */
+    public ResourceLimits withCpuSeconds(long cpuSeconds) {
+        checkLimit(cpuSeconds);
+        return new ResourceLimits(addressSpaceBytes, cpuSeconds, openFiles, processes);
+    }
+
+    /**
+     * Returns these limits with the given limit for the open files of each process.
+     */
+    public ResourceLimits withOpenFiles(long openFiles) {
+        checkLimit(openFiles);
+        return new ResourceLimits(addressSpaceBytes, cpuSeconds, openFiles, processes);
+    }
+
+    /**
+     * Returns these limits with the given limit for the processes of the user.
+     */
+    public ResourceLimits withProcesses(long processes) {
+        checkLimit(processes);
+        return new ResourceLimits(addressSpaceBytes, cpuSeconds, openFiles, processes);
+    }
+
+    private static void checkLimit(long limit) {
+        Preconditions.checkArgument(
+                limit > 0 || limit == UNLIMITED, "a limit must be positive or UNLIMITED");
+    }
+
+    public long getAddressSpaceBytes() {
+        return addressSpaceBytes;
+    }
+
+    public long getCpuSeconds() {
+        return cpuSeconds;
+    }
+
+    public long getOpenFiles() {
+        return openFiles;
+    }
+
+    public long getProcesses() {
+        return processes;
+    }
+
+    public boolean isUnlimited() {
+        return addressSpaceBytes == UNLIMITED
+                && cpuSeconds == UNLIMITED
+                && openFiles == UNLIMITED
+                && processes == UNLIMITED;
+    }
+
+    /**
+     * Returns the command that runs the given command within these limits.
+     */
+    String[] apply(String[] command) {
+        if (isUnlimited()) {
+            return command;
+        }
+        return isPrlimitAvailable() ? applyWithPrlimit(command) : applyWithUlimit(command);
+    }
+
+    String[] applyWithPrlimit(String[] command) {
+        List<String> limited = new ArrayList<>();
+        limited.add("prlimit");
+        addOption(limited, "--as=", addressSpaceBytes);
+        addOption(limited, "--cpu=", cpuSeconds);
+        addOption(limited, "--nofile=", openFiles);
+        addOption(limited, "--nproc=", processes);
+        limited.add("--");
+        limited.addAll(Arrays.asList(command));
+        return limited.toArray(new String[limited.size()]);
+    }
+
+    private static void addOption(List<String> options, String option, long limit) {
+        if (limit != UNLIMITED) {
+            options.add(option + limit);
+        }
+    }
+
+    String[] applyWithUlimit(String[] command) {
+        StringBuilder script = new StringBuilder();
+        if (addressSpaceBytes != UNLIMITED) {
+            // ulimit -v takes kibibytes.
+            script.append("ulimit -v ").append(Math.max(1, addressSpaceBytes / 1024));
+            script.append(" || exit 126; ");
+        }
+        if (cpuSeconds != UNLIMITED) {
+            script.append("ulimit -t ").append(cpuSeconds).append(" || exit 126; ");
+        }
+        if (openFiles != UNLIMITED) {
+            script.append("ulimit -n ").append(openFiles).append(" || exit 126; ");
+        }
+        if (processes != UNLIMITED) {
+            // Bash calls the process limit -u and dash -p.
+            script.append("{ ulimit -u ").append(processes);
+            script.append(" || ulimit -p ").append(processes);
+            script.append("; } 2>/dev/null || exit 126; ");
+        }
+        script.append("exec \"$@\"");
+
+        List<String> limited = new ArrayList<>();
+        limited.add("sh");
+        limited.add("-c");
+        limited.add(script.toString());
+        limited.add("sh");
+        limited.addAll(Arrays.asList(command));
+        return limited.toArray(new String[limited.size()]);
+    }
+
+    private static synchronized boolean isPrlimitAvailable() {
+        if (prlimitAvailable == null) {
+            prlimitAvailable = false;
+            String path = System.getenv("PATH");
+            if (path != null) {
+                for (String dir : path.split(File.pathSeparator)) {
+                    Path prlimit = Paths.get(dir, "prlimit");
+                    if (Files.isExecutable(prlimit)) {
+                        prlimitAvailable = true;
+                        break;
+                    }
+                }
+            }
+            log.debug("prlimit available: {}", prlimitAvailable);
+        }
+        return prlimitAvailable;
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceLimits{"
+                + "addressSpaceBytes=" + addressSpaceBytes
+                + ", cpuSeconds=" + cpuSeconds
+                + ", openFiles=" + openFiles
+                + ", processes=" + processes
+                + '}';
+    }
+}
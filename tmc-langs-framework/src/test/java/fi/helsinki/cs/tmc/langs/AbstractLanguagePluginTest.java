@@ -1,5 +1,7 @@
 package fi.helsinki.cs.tmc.langs;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import static org.mockito.Mockito.mock;
@@ -12,14 +14,19 @@ import fi.helsinki.cs.tmc.langs.domain.RunResult;
 import fi.helsinki.cs.tmc.langs.io.StudentFilePolicy;
 import fi.helsinki.cs.tmc.langs.io.sandbox.StudentFileAwareSubmissionProcessor;
 import fi.helsinki.cs.tmc.langs.io.sandbox.SubmissionProcessor;
+import fi.helsinki.cs.tmc.langs.utils.OutputLimits;
+import fi.helsinki.cs.tmc.langs.utils.ResourceLimits;
 import fi.helsinki.cs.tmc.langs.utils.TestUtils;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 
+import org.apache.commons.io.FileUtils;
+
 import org.junit.Before;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -145,6 +152,50 @@ public class AbstractLanguagePluginTest {
         verify(exerciseBuilder).prepareSolutions(exerciseMap, path, path);
     }
 
+    @Test
+    public void outputLimitsDefaultToThoseOfThePlugin() {
+        Path project = TestUtils.getPath(getClass(), "dummy_project");
+
+        assertSame(OutputLimits.DEFAULT, stubPlugin().getOutputLimits(project));
+    }
+
+    @Test
+    public void outputLimitsCanBeConfiguredPerProject() throws Exception {
+        Path project = Files.createTempDirectory("tmc-output-limits");
+        try {
+            Files.write(
+                    project.resolve(".tmcproject.yml"),
+                    "output_head_bytes: 100\n".getBytes(StandardCharsets.UTF_8));
+
+            OutputLimits limits = stubPlugin().getOutputLimits(project);
+
+            assertEquals(100, limits.getHeadBytes());
+            assertEquals(OutputLimits.DEFAULT.getTailBytes(), limits.getTailBytes());
+        } finally {
+            FileUtils.deleteDirectory(project.toFile());
+        }
+    }
+
+    @Test
+    public void resourceLimitsCanBeConfiguredPerProject() throws Exception {
+        Path project = Files.createTempDirectory("tmc-resource-limits");
+        try {
+            Files.write(
+                    project.resolve(".tmcproject.yml"),
+                    "address_space_limit_mb: 512\nprocess_limit: 50\n"
+                            .getBytes(StandardCharsets.UTF_8));
+
+            ResourceLimits limits = stubPlugin().getResourceLimits(project);
+
+            assertEquals(512L * 1024 * 1024, limits.getAddressSpaceBytes());
+            assertEquals(50, limits.getProcesses());
+            assertEquals(ResourceLimits.UNLIMITED, limits.getCpuSeconds());
+            assertEquals(ResourceLimits.UNLIMITED, limits.getOpenFiles());
+        } finally {
+            FileUtils.deleteDirectory(project.toFile());
+        }
+    }
+
     @Test
     public void prepareSubmissionDelegatesRequestToSubmissionProcessor() {
         Path source = Paths.get("source");
@@ -153,4 +204,8 @@ public class AbstractLanguagePluginTest {
         plugin.prepareSubmission(source, target);
         verify(submissionProcessor).moveFiles(source, target);
     }
+
+    private StubLanguagePlugin stubPlugin() {
+        return (StubLanguagePlugin) plugin;
+    }
 }
@@ -0,0 +1,95 @@
+package fi.helsinki.cs.tmc.langs.domain;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
+import java.util.Arrays;
+
+public class LogContentTest {
+
+    @Test
+    public void smallLogsAreKeptInMemory() throws IOException {
+        LogContent.Collector collector = LogContent.collector(4);
+        collector.write(new byte[] {1, 2, 3, 4});
+
+        LogContent content = collector.toLogContent();
+
+        assertTrue(content.isInMemory());
+        assertEquals(4, content.size());
+        assertArrayEquals(new byte[] {1, 2, 3, 4}, content.toByteArray());
+    }
+
+    @Test
+    public void largeLogsAreSpilledToDisk() throws IOException {
+        byte[] bytes = new byte[1000];
+        Arrays.fill(bytes, (byte) 'x');
+        bytes[999] = 'y';
+        LogContent.Collector collector = LogContent.collector(100);
+        collector.write(bytes, 0, 50);
+        collector.write(bytes, 50, 950);
+
+        LogContent content = collector.toLogContent();
+
+        assertFalse(content.isInMemory());
+        assertEquals(1000, content.size());
+        try (InputStream stream = content.openStream()) {
+            assertArrayEquals(bytes, IOUtils.toByteArray(stream));
+        }
+        ByteBuffer buffer = content.asReadOnlyBuffer();
+        assertEquals(1000, buffer.remaining());
+        assertEquals('y', buffer.get(999));
+    }
+
+    @Test
+    public void closingDeletesSpilledLog() throws IOException {
+        LogContent.Collector collector = LogContent.collector(0);
+        collector.write(new byte[] {1, 2});
+        LogContent content = collector.toLogContent();
+
+        content.close();
+
+        try (InputStream stream = content.openStream()) {
+            fail("The file of a closed log was still readable");
+        } catch (NoSuchFileException expected) {
+            // The file is gone.
+        }
+    }
+
+    @Test
+    public void logsAreNotSpilledUnlessEnabled() throws IOException {
+        byte[] large = new byte[LogContent.DEFAULT_SPILL_THRESHOLD_BYTES + 1];
+
+        LogContent.Collector collector = LogContent.collector();
+        collector.write(large);
+        assertTrue(collector.toLogContent().isInMemory());
+
+        System.setProperty(LogContent.SPILL_PROPERTY, "true");
+        try {
+            collector = LogContent.collector();
+            collector.write(large);
+            try (LogContent content = collector.toLogContent()) {
+                assertFalse(content.isInMemory());
+            }
+        } finally {
+            System.clearProperty(LogContent.SPILL_PROPERTY);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void collectedLogCanNotBeWrittenTo() throws IOException {
+        LogContent.Collector collector = LogContent.collector();
+        collector.toLogContent();
+
+        collector.write(1);
+    }
+}
@@ -0,0 +1,33 @@
+package fi.helsinki.cs.tmc.langs.domain;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ResourceUsageTest {
+
+    @Test
+    public void concurrentUsageAddsCpuAndMemory() {
+        ResourceUsage usage =
+                ResourceUsage.concurrent(
+                        new ResourceUsage(100, 50, 10, 1000),
+                        new ResourceUsage(200, 70, 20, 3000));
+
+        assertEquals(200, usage.wallTimeMillis);
+        assertEquals(120, usage.userCpuMillis);
+        assertEquals(30, usage.systemCpuMillis);
+        assertEquals(4000, usage.peakRssBytes);
+    }
+
+    @Test
+    public void unknownUsageStaysUnknown() {
+        ResourceUsage usage =
+                ResourceUsage.concurrent(
+                        ResourceUsage.ofWallTime(300), new ResourceUsage(200, 70, 20, 3000));
+
+        assertEquals(300, usage.wallTimeMillis);
+        assertEquals(ResourceUsage.UNKNOWN, usage.userCpuMillis);
+        assertEquals(ResourceUsage.UNKNOWN, usage.systemCpuMillis);
+        assertEquals(ResourceUsage.UNKNOWN, usage.peakRssBytes);
+    }
+}
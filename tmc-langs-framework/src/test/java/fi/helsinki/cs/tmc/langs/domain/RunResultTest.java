@@ -1,12 +1,19 @@
 package fi.helsinki.cs.tmc.langs.domain;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
 import org.junit.Test;
 
+import java.io.IOException;
+import java.util.Arrays;
+
 public class RunResultTest {
 
     private RunResult.Status status = RunResult.Status.PASSED;
@@ -22,6 +29,49 @@ public class RunResultTest {
         assertEquals(logs, result.logs);
     }
 
+    @Test
+    public void resourceUsageIsAbsentUnlessGiven() {
+        ResourceUsage usage = new ResourceUsage(100, 50, 10, 4096);
+        RunResult result = new RunResult(status, testResults, logs);
+
+        assertNull(result.resourceUsage);
+        assertSame(usage, result.withResourceUsage(usage).resourceUsage);
+        assertEquals(status, result.withResourceUsage(usage).status);
+    }
+
+    @Test
+    public void logsAreAlsoGivenAsContents() throws IOException {
+        RunResult result =
+                new RunResult(status, testResults, ImmutableMap.of("stdout", new byte[] {1}));
+
+        assertArrayEquals(new byte[] {1}, result.logContents.get("stdout").toByteArray());
+    }
+
+    @Test
+    public void spilledLogsAreOnlyGivenAsContents() throws IOException {
+        byte[] large = new byte[100];
+        Arrays.fill(large, (byte) 'x');
+        LogContent.Collector collector = LogContent.collector(10);
+        collector.write(large);
+        RunResult result =
+                RunResult.ofLogContents(
+                        status,
+                        testResults,
+                        ImmutableMap.of(
+                                "stdout",
+                                collector.toLogContent(),
+                                "stderr",
+                                LogContent.of(new byte[] {1})),
+                        null);
+
+        assertFalse(result.logs.containsKey("stdout"));
+        assertArrayEquals(new byte[] {1}, result.logs.get("stderr"));
+        assertArrayEquals(large, result.logContents.get("stdout").toByteArray());
+        assertEquals(
+                result.logContents,
+                result.withResourceUsage(new ResourceUsage(1, 1, 1, 1)).logContents);
+    }
+
     @Test(expected = NullPointerException.class)
     public void canNotSetNullStatus() {
         new RunResult(null, testResults, logs);
@@ -27,4 +27,13 @@ public class ValueObjectTest {
         assertEquals("String", valueObject.asString());
         assertNull(valueObject.asBoolean());
     }
+
+    @Test
+    public void testValueObjectWithInteger() throws IOException {
+        ValueObject valueObject = new ValueObject(4);
+
+        assertEquals(4, valueObject.get());
+        assertEquals(Integer.valueOf(4), valueObject.asInteger());
+        assertNull(valueObject.asString());
+    }
 }
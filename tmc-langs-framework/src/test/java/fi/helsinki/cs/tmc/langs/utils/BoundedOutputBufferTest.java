@@ -0,0 +1,127 @@
+package fi.helsinki.cs.tmc.langs.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import fi.helsinki.cs.tmc.langs.domain.LogContent;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class BoundedOutputBufferTest {
+
+    @Test
+    public void unlimitedBufferKeepsEverything() {
+        BoundedOutputBuffer buffer = new BoundedOutputBuffer(OutputLimits.UNLIMITED);
+        write(buffer, "first ");
+        write(buffer, "second");
+
+        assertEquals("first second", buffer.toString());
+        assertEquals(0, buffer.getTruncatedBytes());
+    }
+
+    @Test
+    public void outputWithinLimitsIsKept() {
+        BoundedOutputBuffer buffer = new BoundedOutputBuffer(OutputLimits.of(4, 4));
+        write(buffer, "abcdefgh");
+
+        assertEquals("abcdefgh", buffer.toString());
+        assertEquals(0, buffer.getTruncatedBytes());
+    }
+
+    @Test
+    public void middleOfOutputIsTruncated() {
+        BoundedOutputBuffer buffer = new BoundedOutputBuffer(OutputLimits.of(4, 3));
+        write(buffer, "abcd");
+        write(buffer, "efghij");
+        write(buffer, "klm");
+
+        assertEquals("abcd\n... (6 bytes truncated)\nklm", buffer.toString());
+        assertEquals(6, buffer.getTruncatedBytes());
+    }
+
+    @Test
+    public void outputWithoutTailKeepsOnlyHead() {
+        BoundedOutputBuffer buffer = new BoundedOutputBuffer(OutputLimits.of(2, 0));
+        write(buffer, "abcdef");
+
+        assertEquals("ab\n... (4 bytes truncated)\n", buffer.toString());
+        assertEquals(4, buffer.getTruncatedBytes());
+    }
+
+    @Test
+    public void writesLongerThanTheTailKeepTheirEnd() {
+        BoundedOutputBuffer buffer = new BoundedOutputBuffer(OutputLimits.of(2, 3));
+        write(buffer, "ab");
+        write(buffer, "cd");
+        write(buffer, "efghijkl");
+        write(buffer, "mn");
+
+        assertEquals("ab\n... (9 bytes truncated)\nlmn", buffer.toString());
+        assertEquals(14, buffer.getTotalBytes());
+    }
+
+    @Test
+    public void tailWrapsAroundTheRing() {
+        BoundedOutputBuffer buffer = new BoundedOutputBuffer(OutputLimits.of(0, 5));
+        for (String text : new String[] {"abc", "de", "fgh", "i", "jklm"}) {
+            write(buffer, text);
+        }
+
+        assertEquals("\n... (8 bytes truncated)\nijklm", buffer.toString());
+        assertEquals(8, buffer.getTruncatedBytes());
+    }
+
+    @Test
+    public void truncationDoesNotSplitCharacters() {
+        // Each character takes two bytes in UTF-8.
+        BoundedOutputBuffer buffer = new BoundedOutputBuffer(OutputLimits.of(3, 3));
+        write(buffer, "ääääää");
+
+        assertEquals("ä\n... (8 bytes truncated)\nä", buffer.toString());
+        assertEquals(8, buffer.getTruncatedBytes());
+    }
+
+    @Test
+    public void characterSplitBetweenHeadAndTailIsKeptWhenNothingIsTruncated() {
+        BoundedOutputBuffer buffer = new BoundedOutputBuffer(OutputLimits.of(1, 4));
+        write(buffer, "ää");
+
+        assertEquals("ää", buffer.toString());
+    }
+
+    @Test
+    public void collectedOutputIsTruncatedLikeText() throws IOException {
+        LogContent.Collector collector = LogContent.collector(2);
+        BoundedOutputBuffer buffer = new BoundedOutputBuffer(OutputLimits.of(4, 3), collector);
+        write(buffer, "abcd");
+        write(buffer, "efghij");
+        write(buffer, "klm");
+
+        try (LogContent content = buffer.toLogContent()) {
+            assertEquals(
+                    "abcd\n... (6 bytes truncated)\nklm",
+                    new String(content.toByteArray(), StandardCharsets.UTF_8));
+        }
+        assertEquals(6, buffer.getTruncatedBytes());
+    }
+
+    @Test
+    public void unlimitedCollectedOutputIsKeptWhole() throws IOException {
+        BoundedOutputBuffer buffer =
+                new BoundedOutputBuffer(OutputLimits.UNLIMITED, LogContent.collector(2));
+        write(buffer, "first ");
+        write(buffer, "second");
+
+        try (LogContent content = buffer.toLogContent()) {
+            assertEquals(
+                    "first second", new String(content.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void write(BoundedOutputBuffer buffer, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        buffer.write(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,71 @@
+package fi.helsinki.cs.tmc.langs.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import fi.helsinki.cs.tmc.langs.utils.ProcessOutputListener.Stream;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class LineListenerTest {
+
+    private final List<String> lines = new ArrayList<>();
+
+    private final LineListener listener =
+            new LineListener() {
+                @Override
+                protected void onLine(Stream stream, String line) {
+                    lines.add(stream + ": " + line);
+                }
+            };
+
+    @Test
+    public void linesAreJoinedAcrossChunks() {
+        write(Stream.STDOUT, "fir");
+        write(Stream.STDOUT, "st\nsecond\r\nthi");
+        write(Stream.STDOUT, "rd\n");
+
+        assertEquals(
+                ImmutableList.of("STDOUT: first", "STDOUT: second", "STDOUT: third"), lines);
+    }
+
+    @Test
+    public void streamsAreKeptApart() {
+        write(Stream.STDOUT, "out");
+        write(Stream.STDERR, "err\n");
+        write(Stream.STDOUT, "put\n");
+
+        assertEquals(ImmutableList.of("STDERR: err", "STDOUT: output"), lines);
+    }
+
+    @Test
+    public void lastLineIsPassedOnWhenStreamCloses() {
+        write(Stream.STDERR, "no newline");
+        listener.onClose(Stream.STDERR);
+        listener.onClose(Stream.STDOUT);
+
+        assertEquals(ImmutableList.of("STDERR: no newline"), lines);
+    }
+
+    @Test
+    public void longLinesAreSplit() {
+        char[] line = new char[LineListener.MAX_LINE_BYTES + 10];
+        Arrays.fill(line, 'a');
+        write(Stream.STDOUT, new String(line) + "\n");
+
+        assertEquals(2, lines.size());
+        assertEquals(8 + LineListener.MAX_LINE_BYTES, lines.get(0).length());
+        assertEquals("STDOUT: aaaaaaaaaa", lines.get(1));
+    }
+
+    private void write(Stream stream, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        listener.onOutput(stream, bytes, 0, bytes.length);
+    }
+}
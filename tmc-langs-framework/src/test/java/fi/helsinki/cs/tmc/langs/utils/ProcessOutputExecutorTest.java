@@ -0,0 +1,50 @@
+package fi.helsinki.cs.tmc.langs.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class ProcessOutputExecutorTest {
+
+    @Test
+    public void executorIsShared() {
+        assertSame(ProcessOutputExecutor.get(), ProcessOutputExecutor.get());
+    }
+
+    @Test
+    public void blockedTasksDoNotStarveOthers() throws Exception {
+        int tasks = 100;
+        final CountDownLatch started = new CountDownLatch(tasks);
+        final CountDownLatch release = new CountDownLatch(1);
+        Runnable blocking =
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        started.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                };
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < tasks; i++) {
+            futures.add(ProcessOutputExecutor.get().submit(blocking));
+        }
+
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        release.countDown();
+        for (Future<?> future : futures) {
+            assertEquals(null, future.get(10, TimeUnit.SECONDS));
+        }
+    }
+}
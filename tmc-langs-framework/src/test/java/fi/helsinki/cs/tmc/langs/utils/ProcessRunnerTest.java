@@ -1,13 +1,30 @@
 package fi.helsinki.cs.tmc.langs.utils;
 
+import fi.helsinki.cs.tmc.langs.domain.LogContent;
+import fi.helsinki.cs.tmc.langs.domain.ResourceUsage;
+
 import junit.framework.TestCase;
 
 import org.apache.commons.io.FileUtils;
 
 import org.junit.Test;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class ProcessRunnerTest extends TestCase {
 
@@ -53,4 +70,284 @@ public class ProcessRunnerTest extends TestCase {
         String error = runner.call().errorOutput;
         assertTrue(error.contains("version"));
     }
+
+    @Test
+    public void testProcessIsKilledAfterTimeout() throws Exception {
+        ProcessRunner runner =
+                new ProcessRunner(
+                        new String[]{"sh", "-c", "echo started; sleep 30"},
+                        this.folder,
+                        500,
+                        TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        ProcessResult result = runner.call();
+        assertTrue(result.timedOut);
+        assertTrue(result.output.contains("started"));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(20));
+    }
+
+    @Test
+    public void testProcessWithinTimeoutIsNotTimedOut() throws Exception {
+        ProcessRunner runner =
+                new ProcessRunner(
+                        new String[]{"java", "-version"}, this.folder, 1, TimeUnit.MINUTES);
+        ProcessResult result = runner.call();
+        assertFalse(result.timedOut);
+        assertEquals(0, result.statusCode);
+    }
+
+    @Test
+    public void testOutputIsTruncatedToLimits() throws Exception {
+        ProcessRunner runner =
+                new ProcessRunner(
+                        new String[]{"sh", "-c", "echo start; yes | head -n 100000; echo end"},
+                        this.folder,
+                        OutputLimits.of(6, 4));
+        ProcessResult result = runner.call();
+        assertTrue(result.output.startsWith("start\n"));
+        assertTrue(result.output.endsWith("\nend\n"));
+        assertTrue(result.output.contains("bytes truncated"));
+        assertEquals(200000, result.outputTruncatedBytes);
+        assertEquals(0, result.errorOutputTruncatedBytes);
+    }
+
+    @Test
+    public void testSpilledOutputIsOnlyInTheLog() throws Exception {
+        System.setProperty(LogContent.SPILL_PROPERTY, "true");
+        try {
+            ProcessRunner runner =
+                    new ProcessRunner(
+                                    new String[]{"sh", "-c", "yes | head -n 200000; echo err >&2"},
+                                    this.folder)
+                            .withSpilledOutput();
+            try (ProcessResult result = runner.call()) {
+                assertEquals("", result.output);
+                assertEquals("err\n", result.errorOutput);
+                assertFalse(result.getOutputContent().isInMemory());
+                assertEquals(400000, result.getOutputContent().size());
+                assertTrue(result.getErrorOutputContent().isInMemory());
+            }
+        } finally {
+            System.clearProperty(LogContent.SPILL_PROPERTY);
+        }
+    }
+
+    @Test
+    public void testDescendantsAreKilledAfterTimeout() throws Exception {
+        if (!Files.isDirectory(Paths.get("/proc/self"))) {
+            return;
+        }
+        ProcessRunner runner =
+                new ProcessRunner(
+                        new String[]{"sh", "-c", "sleep 30 & echo $! > child; wait"},
+                        this.folder,
+                        500,
+                        TimeUnit.MILLISECONDS);
+        assertTrue(runner.call().timedOut);
+        assertFalse(isAlive(readChildPid()));
+    }
+
+    @Test
+    public void testCancelledProcessIsKilled() throws Exception {
+        if (!Files.isDirectory(Paths.get("/proc/self"))) {
+            return;
+        }
+        ProcessRunner runner =
+                new ProcessRunner(
+                        new String[]{"sh", "-c", "sleep 30 & echo $! > child; wait"},
+                        this.folder);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<ProcessResult> future = executor.submit(runner);
+            long child = readChildPid();
+            future.cancel(true);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (isAlive(child) && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertFalse(isAlive(child));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testWallTimeIsMeasured() throws Exception {
+        ProcessRunner runner =
+                new ProcessRunner(new String[]{"sh", "-c", "sleep 0.3"}, this.folder);
+        ProcessResult result = runner.call();
+        assertTrue(result.resourceUsage.wallTimeMillis >= 300);
+    }
+
+    @Test
+    public void testCpuTimeOfDescendantsIsMeasured() throws Exception {
+        if (!Files.isDirectory(Paths.get("/proc/self"))) {
+            return;
+        }
+        Process process = new ProcessBuilder("true").start();
+        assertTrue(
+                "No pid found for " + process.getClass().getName() + ", nothing is sampled",
+                ProcessTree.pid(process).isPresent());
+        process.waitFor();
+
+        ProcessRunner runner =
+                new ProcessRunner(
+                        new String[]{
+                            "sh",
+                            "-c",
+                            "(i=0; while [ $i -lt 300000 ]; do i=$((i+1)); done); sleep 0.5"
+                        },
+                        this.folder);
+        ResourceUsage usage = runner.call().resourceUsage;
+        assertTrue(
+                "No CPU time measured: " + usage,
+                usage.userCpuMillis + usage.systemCpuMillis > 0);
+        assertTrue("No memory use measured: " + usage, usage.peakRssBytes > 0);
+    }
+
+    @Test
+    public void testOnlyWallTimeIsMeasuredWhenMonitoringIsDisabled() throws Exception {
+        System.setProperty(ProcessResourceMonitor.ENABLED_PROPERTY, "false");
+        try {
+            ProcessRunner runner =
+                    new ProcessRunner(new String[]{"sh", "-c", "sleep 0.1"}, this.folder);
+            ResourceUsage usage = runner.call().resourceUsage;
+            assertTrue(usage.wallTimeMillis >= 100);
+            assertEquals(ResourceUsage.UNKNOWN, usage.userCpuMillis);
+            assertEquals(ResourceUsage.UNKNOWN, usage.peakRssBytes);
+        } finally {
+            System.clearProperty(ProcessResourceMonitor.ENABLED_PROPERTY);
+        }
+    }
+
+    @Test
+    public void testStartReturnsBeforeProcessExits() throws Exception {
+        ProcessRunner runner =
+                new ProcessRunner(new String[]{"sh", "-c", "sleep 0.5; echo done"}, this.folder);
+        CompletableFuture<ProcessResult> future = runner.start();
+        assertFalse(future.isDone());
+        assertEquals("done\n", future.get(10, TimeUnit.SECONDS).output);
+    }
+
+    @Test
+    public void testStartedProcessesRunConcurrently() throws Exception {
+        List<CompletableFuture<ProcessResult>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            futures.add(new ProcessRunner(new String[]{"sleep", "1"}, this.folder).start());
+        }
+        for (CompletableFuture<ProcessResult> future : futures) {
+            assertEquals(0, future.get(10, TimeUnit.SECONDS).statusCode);
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+    }
+
+    @Test
+    public void testStartFailsForMissingCommand() throws Exception {
+        ProcessRunner runner =
+                new ProcessRunner(new String[]{"no-such-command-for-tmc"}, this.folder);
+        try {
+            runner.start().get(10, TimeUnit.SECONDS);
+            fail("Expected the command to fail");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testCancelledFutureKillsProcess() throws Exception {
+        if (!Files.isDirectory(Paths.get("/proc/self"))) {
+            return;
+        }
+        ProcessRunner runner =
+                new ProcessRunner(
+                        new String[]{"sh", "-c", "sleep 30 & echo $! > child; wait"},
+                        this.folder);
+        CompletableFuture<ProcessResult> future = runner.start();
+        long child = readChildPid();
+        future.cancel(true);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (isAlive(child) && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertFalse(isAlive(child));
+    }
+
+    @Test
+    public void testOutputIsStreamedWhileProcessRuns() throws Exception {
+        final CountDownLatch firstLine = new CountDownLatch(1);
+        LineListener listener =
+                new LineListener() {
+                    @Override
+                    protected void onLine(Stream stream, String line) {
+                        if (stream == Stream.STDOUT && line.equals("first")) {
+                            firstLine.countDown();
+                        }
+                    }
+                };
+        CompletableFuture<ProcessResult> future =
+                new ProcessRunner(
+                                new String[]{"sh", "-c", "echo first; sleep 2; echo second"},
+                                this.folder)
+                        .withOutputListener(listener)
+                        .start();
+
+        assertTrue(firstLine.await(10, TimeUnit.SECONDS));
+        assertFalse(future.isDone());
+        assertEquals("first\nsecond\n", future.get(10, TimeUnit.SECONDS).output);
+    }
+
+    @Test
+    public void testListenerCanStopProcessEarly() throws Exception {
+        final AtomicReference<Future<ProcessResult>> running = new AtomicReference<>();
+        LineListener listener =
+                new LineListener() {
+                    @Override
+                    protected void onLine(Stream stream, String line) {
+                        if (line.contains("FATAL")) {
+                            running.get().cancel(true);
+                        }
+                    }
+                };
+        CompletableFuture<ProcessResult> future =
+                new ProcessRunner(
+                                new String[]{"sh", "-c", "sleep 0.5; echo FATAL; sleep 30"},
+                                this.folder)
+                        .withOutputListener(listener)
+                        .start();
+        running.set(future);
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("Expected the process to be stopped");
+        } catch (CancellationException ex) {
+            assertTrue(future.isCancelled());
+        }
+    }
+
+    private long readChildPid() throws Exception {
+        Path pidFile = this.folder.resolve("child");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            if (Files.exists(pidFile)) {
+                String pid = new String(Files.readAllBytes(pidFile), StandardCharsets.UTF_8);
+                if (pid.endsWith("\n")) {
+                    return Long.parseLong(pid.trim());
+                }
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("Child process was not started");
+    }
+
+    private static boolean isAlive(long pid) {
+        try {
+            String stat =
+                    new String(
+                            Files.readAllBytes(Paths.get("/proc", Long.toString(pid), "stat")),
+                            StandardCharsets.UTF_8);
+            return !stat.substring(stat.lastIndexOf(')') + 2).startsWith("Z");
+        } catch (IOException ex) {
+            return false;
+        }
+    }
 }
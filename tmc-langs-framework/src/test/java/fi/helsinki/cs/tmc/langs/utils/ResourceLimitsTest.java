@@ -0,0 +1,60 @@
+package fi.helsinki.cs.tmc.langs.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class ResourceLimitsTest {
+
+    private static final String[] COMMAND = {"sh", "-c", "ulimit -n; ulimit -t"};
+
+    private final Path workDir = Paths.get(System.getProperty("java.io.tmpdir"));
+
+    @Test
+    public void commandIsUnchangedWithoutLimits() {
+        assertSame(COMMAND, ResourceLimits.NONE.apply(COMMAND));
+    }
+
+    @Test
+    public void prlimitIsGivenOnlyTheSetLimits() {
+        ResourceLimits limits =
+                ResourceLimits.NONE.withAddressSpaceBytes(1048576).withProcesses(20);
+
+        assertArrayEquals(
+                new String[] {
+                    "prlimit", "--as=1048576", "--nproc=20", "--", "sh", "-c", COMMAND[2]
+                },
+                limits.applyWithPrlimit(COMMAND));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void limitsMustBePositive() {
+        ResourceLimits.NONE.withCpuSeconds(0);
+    }
+
+    @Test
+    public void processRunsWithinLimits() throws Exception {
+        ResourceLimits limits = ResourceLimits.NONE.withOpenFiles(64).withCpuSeconds(30);
+
+        ProcessResult result =
+                new ProcessRunner(COMMAND, workDir).withResourceLimits(limits).call();
+
+        assertEquals("64\n30\n", result.output);
+    }
+
+    @Test
+    public void ulimitAppliesLimitsWithoutPrlimit() throws Exception {
+        ResourceLimits limits =
+                ResourceLimits.NONE.withOpenFiles(32).withCpuSeconds(20).withProcesses(1000);
+
+        ProcessResult result = new ProcessRunner(limits.applyWithUlimit(COMMAND), workDir).call();
+
+        assertEquals(0, result.statusCode);
+        assertEquals("32\n20\n", result.output);
+    }
+}
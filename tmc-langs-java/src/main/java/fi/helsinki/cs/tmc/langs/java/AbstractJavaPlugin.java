@@ -8,6 +8,7 @@ import fi.helsinki.cs.tmc.langs.domain.ExerciseDesc;
 import fi.helsinki.cs.tmc.langs.domain.RunResult;
 import fi.helsinki.cs.tmc.langs.domain.SpecialLogs;
 import fi.helsinki.cs.tmc.langs.domain.TestResult;
+import fi.helsinki.cs.tmc.langs.domain.ValueObject;
 import fi.helsinki.cs.tmc.langs.io.sandbox.SubmissionProcessor;
 import fi.helsinki.cs.tmc.langs.io.zip.StudentFileAwareUnzipper;
 import fi.helsinki.cs.tmc.langs.io.zip.StudentFileAwareZipper;
@@ -21,6 +22,7 @@ import fi.helsinki.cs.tmc.testscanner.TestMethod;
 import fi.helsinki.cs.tmc.testscanner.TestScanner;
 
 import com.google.common.base.Optional;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
@@ -44,9 +46,11 @@ public abstract class AbstractJavaPlugin extends AbstractLanguagePlugin {
 
     private static final Logger log = LoggerFactory.getLogger(AbstractJavaPlugin.class);
 
+    private static final String CHECKSTYLE_PARALLELISM = "checkstyle_parallelism";
+
     private final TestResultParser resultParser = new TestResultParser();
     private final Path testFolderPath;
-    private final LazyTestScanner testScanner;
+    private final TestScannerPool testScanners;
 
     /**
      * Creates a new AbstractJavaPlugin.
@@ -54,27 +58,61 @@ public abstract class AbstractJavaPlugin extends AbstractLanguagePlugin {
     public AbstractJavaPlugin(
             Path testFolderPath,
             SubmissionProcessor submissionProcessor,
-            LazyTestScanner testScanner) {
+            TestScannerPool testScanners) {
         super(
                 new ExerciseBuilder(),
                 submissionProcessor,
                 new StudentFileAwareZipper(),
                 new StudentFileAwareUnzipper());
         this.testFolderPath = testFolderPath;
-        this.testScanner = testScanner;
+        this.testScanners = testScanners;
     }
 
     protected abstract ClassPath getProjectClassPath(Path path) throws IOException;
 
+    /**
+     * Returns the class path of the project, computing it only once per context.
+     */
+    protected ClassPath getProjectClassPath(BuildContext context) throws IOException {
+        if (context.getClassPath() == null) {
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            context.setClassPath(getProjectClassPath(context.getProjectRoot()));
+            context.recordPhase("classpath", stopwatch);
+        }
+        return context.getClassPath();
+    }
+
     protected abstract CompileResult build(Path projectRootPath);
 
     protected abstract TestRunFileAndLogs createRunResultFile(Path path,
                                                               CompileResult compileResult)
             throws TestRunnerException, TestScannerException;
 
+    /**
+     * Runs the tests of the built project. The default implementation delegates to
+     * {@link #createRunResultFile(Path, CompileResult)}; plugins override this to reuse the
+     * class path and test scan stored in the context.
+     */
+    protected TestRunFileAndLogs createRunResultFile(BuildContext context)
+            throws TestRunnerException, TestScannerException {
+        return createRunResultFile(context.getProjectRoot(), context.getCompileResult());
+    }
+
     @Override
     public ValidationResult checkCodeStyle(Path path, Locale msgLocale) {
         try {
+            Optional<Path> cacheFile = getCheckstyleCacheFile(path);
+            if (cacheFile.isPresent()) {
+                try {
+                    return new IncrementalCheckstyleRunner(
+                                    cacheFile.get(),
+                                    IncrementalCheckstyleRunner.CHECKSTYLE,
+                                    getCheckstyleParallelism(path))
+                            .run(path, msgLocale);
+                } catch (IOException ex) {
+                    log.warn("Unable to check code style incrementally, checking all", ex);
+                }
+            }
             CheckstyleRunner runner = new CheckstyleRunner(path.toFile(), msgLocale);
 
             return runner.run();
@@ -84,6 +122,26 @@ public abstract class AbstractJavaPlugin extends AbstractLanguagePlugin {
         }
     }
 
+    /**
+     * Returns the file the checkstyle results of the project's sources are cached in, or
+     * absent if the whole project should be checked every time.
+     */
+    protected Optional<Path> getCheckstyleCacheFile(Path projectRoot) {
+        return Optional.absent();
+    }
+
+    /**
+     * Returns the number of checkstyle checks the sources may be split between, as configured
+     * with the checkstyle_parallelism option of the exercise's .tmcproject.yml.
+     */
+    private int getCheckstyleParallelism(Path projectRoot) {
+        ValueObject parallelism = getConfiguration(projectRoot).get(CHECKSTYLE_PARALLELISM);
+        if (parallelism != null && parallelism.asInteger() != null) {
+            return parallelism.asInteger();
+        }
+        return 1;
+    }
+
     @Override
     public Optional<ExerciseDesc> scanExercise(Path path, String exerciseName) {
         if (!isExerciseTypeCorrect(path)) {
@@ -97,19 +155,31 @@ public abstract class AbstractJavaPlugin extends AbstractLanguagePlugin {
 
     public Optional<ExerciseDesc> scanExercise(Path path, String exerciseName,
                                                CompileResult compileResult) {
+        return scanBuiltExercise(new BuildContext(path, compileResult), exerciseName);
+    }
+
+    /**
+     * Scans the exercise for tests. The tests found are stored in the context, so scanning
+     * again within the same run doesn't compile or scan anything.
+     */
+    protected Optional<ExerciseDesc> scanBuiltExercise(BuildContext context, String exerciseName) {
+        Path path = context.getProjectRoot();
         if (!isExerciseTypeCorrect(path)) {
             return Optional.absent();
         }
-        if (compileResult.getStatusCode() != 0) {
+        if (context.getCompileResult().getStatusCode() != 0) {
             return Optional.absent();
         }
+        if (context.getTests() != null) {
+            return Optional.of(ExerciseDesc.from(exerciseName, context.getTests()));
+        }
 
         SourceFiles sourceFiles = new SourceFiles();
         sourceFiles.addSource(path.resolve(testFolderPath).toFile());
 
         ClassPath classPath;
         try {
-            classPath = getProjectClassPath(path);
+            classPath = getProjectClassPath(context);
 
         } catch (IOException ex) {
             log.error("Unable to get classpath", ex);
@@ -119,32 +189,98 @@ public abstract class AbstractJavaPlugin extends AbstractLanguagePlugin {
         log.info("Determined classpath as {}", classPath.toString());
         log.info("Found following source files: {}", sourceFiles.toString());
 
-        TestScanner scanner = testScanner.get();
-        scanner.setClassPath(classPath.toString());
-        for (File sourceFile : sourceFiles.getSources()) {
-            scanner.addSource(sourceFile);
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        List<TestMethod> tests = findTests(path, sourceFiles.getSources(), classPath);
+        context.setTests(tests);
+        context.recordPhase("scan", stopwatch);
+
+        return Optional.of(ExerciseDesc.from(exerciseName, tests));
+    }
+
+    /**
+     * Scans the sources for test methods, unless they were already scanned with the same
+     * class path before.
+     */
+    private List<TestMethod> findTests(Path path, List<File> sources, ClassPath classPath) {
+        Optional<Path> cacheFile = getTestScanCacheFile(path);
+        TestScanCache cache = null;
+        String key = null;
+        if (cacheFile.isPresent()) {
+            cache = new TestScanCache(cacheFile.get());
+            try {
+                key = TestScanCache.key(path, sources, classPath);
+                Optional<List<TestMethod>> cached = cache.get(key);
+                if (cached.isPresent()) {
+                    log.info("Using cached test scan of {}", path);
+                    return cached.get();
+                }
+            } catch (IOException ex) {
+                log.warn("Unable to compute test scan cache key for {}", path, ex);
+                cache = null;
+            }
+        }
+
+        List<TestMethod> tests;
+        TestScanner scanner = testScanners.borrow();
+        try {
+            scanner.setClassPath(classPath.toString());
+            for (File sourceFile : sources) {
+                scanner.addSource(sourceFile);
+            }
+            tests = scanner.findTests();
+        } finally {
+            testScanners.release(scanner);
         }
 
-        List<TestMethod> tests = scanner.findTests();
-        scanner.clearSources();
+        if (cache != null) {
+            cache.put(key, tests);
+        }
+        return tests;
+    }
 
-        return Optional.of(ExerciseDesc.from(exerciseName, tests));
+    /**
+     * Returns the file the results of scanning the project's tests are cached in, or absent if
+     * the tests should be scanned every time.
+     */
+    protected Optional<Path> getTestScanCacheFile(Path projectRoot) {
+        return Optional.absent();
     }
 
     @Override
     public RunResult runTests(Path projectRootPath) {
+        Stopwatch stopwatch = Stopwatch.createStarted();
         CompileResult compileResult = build(projectRootPath);
-        if (compileResult.getStatusCode() != 0) {
-            return runResultFromFailedCompilation(compileResult);
+        BuildContext context = new BuildContext(projectRootPath, compileResult);
+        context.recordPhase("build", stopwatch);
+        try {
+            if (compileResult.getStatusCode() != 0) {
+                return runResultFromFailedCompilation(compileResult);
+            }
+            return runTests(context);
+        } finally {
+            log.info("Phase timings for {}: {}", projectRootPath, context.getPhaseTimings());
         }
+    }
 
+    private RunResult runTests(BuildContext context) {
         try {
-            TestRunFileAndLogs results = createRunResultFile(projectRootPath, compileResult);
-            RunResult result = resultParser.parseTestResult(results);
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            TestRunFileAndLogs results = createRunResultFile(context);
+            context.recordPhase("run", stopwatch);
+
+            stopwatch = Stopwatch.createStarted();
+            RunResult result =
+                    resultParser
+                            .parseTestResult(results)
+                            .withResourceUsage(results.getResourceUsage());
             results.getTestResultsFile().delete();
+            context.recordPhase("parse", stopwatch);
             return result;
         } catch (TestRunnerException ex) {
             log.error("Unable to create run result file", ex);
+            if (ex.getInterruptedProcess().isPresent()) {
+                return runResultFromInterruptedProcess(ex.getInterruptedProcess().get());
+            }
             return new RunResult(RunResult.Status.TESTRUN_INTERRUPTED,
                     ImmutableList.<TestResult>of(), ImmutableMap.<String, byte[]>of());
         } catch (TestScannerException ex) {
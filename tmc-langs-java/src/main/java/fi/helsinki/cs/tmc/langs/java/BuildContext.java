@@ -0,0 +1,75 @@
+package fi.helsinki.cs.tmc.langs.java;
+
+import fi.helsinki.cs.tmc.langs.domain.CompileResult;
+
+import fi.helsinki.cs.tmc.testscanner.TestMethod;
+
+import com.google.common.base.Stopwatch;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * State shared by the phases of building, scanning and testing an exercise once, so that the
+ * class path and the test scan are computed only once per run. Also records how long each
+ * phase took.
+ */
+public final class BuildContext {
+
+    private final Path projectRoot;
+    private final CompileResult compileResult;
+    private final Map<String, Long> phaseTimings = new LinkedHashMap<>();
+
+    private ClassPath classPath;
+    private List<TestMethod> tests;
+
+    public BuildContext(Path projectRoot, CompileResult compileResult) {
+        this.projectRoot = projectRoot;
+        this.compileResult = compileResult;
+    }
+
+    public Path getProjectRoot() {
+        return projectRoot;
+    }
+
+    public CompileResult getCompileResult() {
+        return compileResult;
+    }
+
+    /**
+     * Records the time elapsed on the stopwatch as the duration of the phase. Durations of
+     * phases that run more than once are summed.
+     */
+    public void recordPhase(String phase, Stopwatch stopwatch) {
+        long elapsed = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+        Long previous = phaseTimings.get(phase);
+        phaseTimings.put(phase, previous == null ? elapsed : previous + elapsed);
+    }
+
+    /**
+     * Returns the duration of each phase in milliseconds, in the order the phases ran.
+     */
+    public Map<String, Long> getPhaseTimings() {
+        return Collections.unmodifiableMap(phaseTimings);
+    }
+
+    ClassPath getClassPath() {
+        return classPath;
+    }
+
+    void setClassPath(ClassPath classPath) {
+        this.classPath = classPath;
+    }
+
+    List<TestMethod> getTests() {
+        return tests;
+    }
+
+    void setTests(List<TestMethod> tests) {
+        this.tests = tests;
+    }
+}
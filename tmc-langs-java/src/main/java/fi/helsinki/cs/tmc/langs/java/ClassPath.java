@@ -1,27 +1,41 @@
 package fi.helsinki.cs.tmc.langs.java;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
 
 /**
  * Helper class for generating ClassPath.
+ *
+ * <p>The components are kept in insertion order without duplicates. The string form is
+ * computed when first needed and cached until the next component is added.
  */
 public final class ClassPath {
 
     private static final Logger log = LoggerFactory.getLogger(ClassPath.class);
 
-    private final List<Path> subPaths = new ArrayList<>();
+    private static final String JAR_EXTENSION = ".jar";
+
+    private final Set<Path> subPaths = new LinkedHashSet<>();
+    private ImmutableList<Path> pathList;
+    private String classPathString;
 
     /**
      * Create a ClassPath where each provided Path is a component.
@@ -36,8 +50,9 @@ public final class ClassPath {
      * Add a given Path to the ClassPath.
      */
     public void add(Path path) {
-        if (!subPaths.contains(path)) {
-            subPaths.add(path);
+        if (subPaths.add(path)) {
+            pathList = null;
+            classPathString = null;
         }
     }
 
@@ -54,7 +69,10 @@ public final class ClassPath {
      * Returns the contents of this ClassPath as Path objects.
      */
     public List<Path> getPaths() {
-        return Collections.unmodifiableList(subPaths);
+        if (pathList == null) {
+            pathList = ImmutableList.copyOf(subPaths);
+        }
+        return pathList;
     }
 
     /**
@@ -74,9 +92,7 @@ public final class ClassPath {
             for (Path path : stream) {
                 if (Files.isDirectory(path)) {
                     addDirAndContents(path);
-                }
-
-                if (path.toString().endsWith("jar")) {
+                } else if (path.getFileName().toString().endsWith(JAR_EXTENSION)) {
                     add(path);
                 }
             }
@@ -86,18 +102,33 @@ public final class ClassPath {
         }
     }
 
-    @Override
-    public String toString() {
-        if (subPaths.isEmpty()) {
-            return "";
+    /**
+     * Writes a jar that contains nothing but a manifest whose Class-Path lists the components
+     * of this ClassPath. Putting the jar on the class path of a JVM is equivalent to putting
+     * the components there, which avoids passing class paths longer than the operating system
+     * allows on the command line.
+     */
+    public void writeManifestJar(Path jarFile) throws IOException {
+        List<String> urls = new ArrayList<>();
+        for (Path path : subPaths) {
+            urls.add(path.toAbsolutePath().toUri().toString());
         }
-
-        String classPath = subPaths.get(0).toString();
-
-        for (int i = 1; i < subPaths.size(); i++) {
-            classPath += File.pathSeparatorChar + subPaths.get(i).toString();
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, Joiner.on(' ').join(urls));
+
+        Files.createDirectories(jarFile.toAbsolutePath().getParent());
+        try (OutputStream out = Files.newOutputStream(jarFile);
+                JarOutputStream jar = new JarOutputStream(out, manifest)) {
+            jar.finish();
         }
+    }
 
-        return classPath;
+    @Override
+    public String toString() {
+        if (classPathString == null) {
+            classPathString = Joiner.on(File.pathSeparatorChar).join(subPaths);
+        }
+        return classPathString;
     }
 }
@@ -0,0 +1,516 @@
+package fi.helsinki.cs.tmc.langs.java;
+
+import fi.helsinki.cs.tmc.langs.abstraction.Strategy;
+import fi.helsinki.cs.tmc.langs.abstraction.ValidationError;
+import fi.helsinki.cs.tmc.langs.abstraction.ValidationResult;
+
+import fi.helsinki.cs.tmc.stylerunner.CheckstyleRunner;
+import fi.helsinki.cs.tmc.stylerunner.exception.TMCCheckstyleException;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import org.apache.commons.io.FileUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs checkstyle on the sources of a project, remembering the errors of each source file
+ * so that only the files that changed since the previous check are checked again.
+ *
+ * <p>The errors of a file are cached by the hash of the file, the hash of the checkstyle
+ * configuration and the locale of the messages. The configuration is read from the files in
+ * the project root whose name starts with ".tmcproject" or contains "checkstyle", and from
+ * the pom.xml or build.xml the project type and source directories are detected from;
+ * changing any of them invalidates the whole cache.
+ *
+ * <p>Checkstyle can only check whole projects, so the changed files are checked by copying
+ * them, the directory structure of the source directory and the configuration files into a
+ * scratch project and checking that. The build files are copied too, so that checkstyle sees
+ * the scratch project as the same type of project as the real one. When allowed to, the
+ * changed files are split by size into several scratch projects that are checked at the same
+ * time, each by a checkstyle checker of its own.
+ */
+final class IncrementalCheckstyleRunner {
+
+    /**
+     * Checks the style of a whole project.
+     */
+    interface StyleChecker {
+        ValidationResult check(Path projectRoot, Locale locale) throws TMCCheckstyleException;
+    }
+
+    static final StyleChecker CHECKSTYLE =
+            new StyleChecker() {
+                @Override
+                public ValidationResult check(Path projectRoot, Locale locale)
+                        throws TMCCheckstyleException {
+                    return new CheckstyleRunner(projectRoot.toFile(), locale).run();
+                }
+            };
+
+    private static final Logger log = LoggerFactory.getLogger(IncrementalCheckstyleRunner.class);
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String SOURCE_DIR = "src";
+    private static final String JAVA_EXTENSION = ".java";
+    private static final int MIN_SOURCES_PER_PARTITION = 4;
+    private static final Set<String> BUILD_FILES = ImmutableSet.of("pom.xml", "build.xml");
+
+    private static final Gson gson = new Gson();
+
+    private final Path cacheFile;
+    private final StyleChecker checker;
+    private final int parallelism;
+
+    /**
+     * Creates a runner that splits the sources to check between at most {@code parallelism}
+     * checks running at the same time.
+     */
+    IncrementalCheckstyleRunner(Path cacheFile, StyleChecker checker, int parallelism) {
+        this.cacheFile = cacheFile;
+        this.checker = checker;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Checks the project, rechecking only the sources that changed since the cached results
+     * were recorded. Returns null if checkstyle gave no result.
+     */
+    ValidationResult run(Path projectRoot, Locale locale)
+            throws TMCCheckstyleException, IOException {
+        Path root = projectRoot.toAbsolutePath().normalize();
+        SortedMap<String, Path> sources = findSources(root);
+        String configuration = configurationHash(root, locale);
+
+        CacheData cache = load(configuration);
+        SortedMap<String, String> hashes = new TreeMap<>();
+        Map<String, Integer> sizes = new HashMap<>();
+        SortedSet<String> changed = new TreeSet<>();
+        for (Map.Entry<String, Path> source : sources.entrySet()) {
+            byte[] contents = Files.readAllBytes(source.getValue());
+            String hash = Hashing.sha1().hashBytes(contents).toString();
+            hashes.put(source.getKey(), hash);
+            sizes.put(source.getKey(), contents.length);
+            FileEntry entry = cache.files.get(source.getKey());
+            if (entry == null || !entry.hash.equals(hash)) {
+                changed.add(source.getKey());
+            }
+        }
+        cache.files.keySet().retainAll(sources.keySet());
+
+        List<SortedSet<String>> partitions = partition(changed, sizes, parallelism);
+        if (changed.size() == sources.size() && partitions.size() <= 1) {
+            log.info("Checking the style of all {} sources of {}", sources.size(), root);
+            ValidationResult result = checker.check(projectRoot, locale);
+            if (result == null) {
+                return null;
+            }
+            cache.files.clear();
+            record(cache, result, root, sources.keySet(), hashes);
+        } else if (partitions.size() == 1) {
+            log.info("Checking the style of {} changed sources of {}", changed.size(), root);
+            if (!checkInScratchProject(root, changed, locale, cache, hashes)) {
+                return null;
+            }
+        } else if (!partitions.isEmpty()) {
+            log.info(
+                    "Checking the style of {} changed sources of {} in {} parallel checks",
+                    changed.size(),
+                    root,
+                    partitions.size());
+            if (!checkInParallel(root, partitions, locale, cache, hashes)) {
+                return null;
+            }
+        } else {
+            log.info("Using cached style check results of {}", root);
+        }
+        save(cache);
+        return cache.toValidationResult(projectRoot);
+    }
+
+    /**
+     * Checks each partition of the sources in a scratch project of its own, all at the same
+     * time. Returns false if any of the checks gave no result.
+     */
+    private boolean checkInParallel(
+            final Path root,
+            List<SortedSet<String>> partitions,
+            final Locale locale,
+            final CacheData cache,
+            final Map<String, String> hashes)
+            throws TMCCheckstyleException, IOException {
+        List<Callable<Boolean>> checks = new ArrayList<>();
+        for (final SortedSet<String> partition : partitions) {
+            Callable<Boolean> check =
+                    new Callable<Boolean>() {
+                        @Override
+                        public Boolean call() throws TMCCheckstyleException, IOException {
+                            return checkInScratchProject(root, partition, locale, cache, hashes);
+                        }
+                    };
+            checks.add(check);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(partitions.size());
+        try {
+            boolean complete = true;
+            for (Future<Boolean> future : executor.invokeAll(checks)) {
+                complete &= future.get();
+            }
+            return complete;
+        } catch (ExecutionException ex) {
+            Throwables.propagateIfInstanceOf(ex.getCause(), TMCCheckstyleException.class);
+            Throwables.propagateIfInstanceOf(ex.getCause(), IOException.class);
+            throw Throwables.propagate(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while checking code style");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks the given sources in a scratch project and records their errors in the cache.
+     * Returns false if checkstyle gave no result.
+     */
+    private boolean checkInScratchProject(
+            Path root,
+            SortedSet<String> sources,
+            Locale locale,
+            CacheData cache,
+            Map<String, String> hashes)
+            throws TMCCheckstyleException, IOException {
+        Path scratch = Files.createTempDirectory("tmc-checkstyle");
+        try {
+            createScratchProject(root, scratch, sources);
+            ValidationResult result = checker.check(scratch, locale);
+            if (result == null) {
+                return false;
+            }
+            synchronized (cache) {
+                record(cache, result, scratch, sources, hashes);
+            }
+            return true;
+        } finally {
+            FileUtils.deleteQuietly(scratch.toFile());
+        }
+    }
+
+    /**
+     * Splits the sources into at most {@code count} partitions balanced by their size, each
+     * holding at least {@link #MIN_SOURCES_PER_PARTITION} sources when there are more than
+     * one.
+     */
+    static List<SortedSet<String>> partition(
+            SortedSet<String> sources, final Map<String, Integer> sizes, int count) {
+        int maxPartitions =
+                (sources.size() + MIN_SOURCES_PER_PARTITION - 1) / MIN_SOURCES_PER_PARTITION;
+        int partitionCount = Math.min(count, maxPartitions);
+        if (partitionCount <= 1) {
+            return sources.isEmpty()
+                    ? Collections.<SortedSet<String>>emptyList()
+                    : Collections.singletonList(sources);
+        }
+
+        List<String> largestFirst = new ArrayList<>(sources);
+        Comparator<String> bySize =
+                new Comparator<String>() {
+                    @Override
+                    public int compare(String first, String second) {
+                        return Integer.compare(sizes.get(second), sizes.get(first));
+                    }
+                };
+        Collections.sort(largestFirst, bySize);
+        List<SortedSet<String>> partitions = new ArrayList<>();
+        long[] partitionSizes = new long[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions.add(new TreeSet<String>());
+        }
+        for (String source : largestFirst) {
+            int smallest = 0;
+            for (int i = 1; i < partitionCount; i++) {
+                if (partitionSizes[i] < partitionSizes[smallest]) {
+                    smallest = i;
+                }
+            }
+            partitionSizes[smallest] += sizes.get(source);
+            partitions.get(smallest).add(source);
+        }
+        return partitions;
+    }
+
+    /**
+     * Stores the errors of the checked sources in the cache. Errors of files that were not
+     * among the checked sources are kept under their path relative to the checked root.
+     */
+    private static void record(
+            CacheData cache,
+            ValidationResult result,
+            Path checkedRoot,
+            Iterable<String> checkedSources,
+            Map<String, String> hashes)
+            throws IOException {
+        cache.strategy = result.getStrategy() == null ? null : result.getStrategy().name();
+        for (String source : checkedSources) {
+            FileEntry entry = new FileEntry();
+            entry.hash = hashes.get(source);
+            cache.files.put(source, entry);
+        }
+
+        Map<File, List<ValidationError>> errors = result.getValidationErrors();
+        if (errors == null) {
+            return;
+        }
+        Path realRoot = checkedRoot.toRealPath();
+        for (Map.Entry<File, List<ValidationError>> fileErrors : errors.entrySet()) {
+            String source = relativize(checkedRoot, realRoot, fileErrors.getKey());
+            FileEntry entry = cache.files.get(source);
+            if (entry == null) {
+                entry = new FileEntry();
+                entry.hash = hashes.get(source);
+                cache.files.put(source, entry);
+            }
+            entry.reported = true;
+            if (fileErrors.getValue() != null) {
+                for (ValidationError error : fileErrors.getValue()) {
+                    entry.errors.add(ErrorEntry.from(error));
+                }
+            }
+        }
+    }
+
+    private static String relativize(Path root, Path realRoot, File file) {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        if (path.startsWith(root)) {
+            return root.relativize(path).toString();
+        }
+        if (path.startsWith(realRoot)) {
+            return realRoot.relativize(path).toString();
+        }
+        return path.toString();
+    }
+
+    private static void createScratchProject(Path root, Path scratch, Iterable<String> sources)
+            throws IOException {
+        for (Path configurationFile : findConfigurationFiles(root)) {
+            Files.copy(configurationFile, scratch.resolve(configurationFile.getFileName()));
+        }
+        final Path sourceDir = root.resolve(SOURCE_DIR);
+        final Path scratchSourceDir = scratch.resolve(SOURCE_DIR);
+        SimpleFileVisitor<Path> directoryCopier =
+                new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+                            throws IOException {
+                        String relativeDir = sourceDir.relativize(dir).toString();
+                        Files.createDirectories(scratchSourceDir.resolve(relativeDir));
+                        return FileVisitResult.CONTINUE;
+                    }
+                };
+        if (Files.isDirectory(sourceDir)) {
+            Files.walkFileTree(sourceDir, directoryCopier);
+        }
+        for (String source : sources) {
+            Files.copy(root.resolve(source), scratch.resolve(source));
+        }
+    }
+
+    private static SortedMap<String, Path> findSources(final Path root) throws IOException {
+        final SortedMap<String, Path> sources = new TreeMap<>();
+        Path sourceDir = root.resolve(SOURCE_DIR);
+        if (!Files.isDirectory(sourceDir)) {
+            return sources;
+        }
+        SimpleFileVisitor<Path> sourceFinder =
+                new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (attrs.isRegularFile()
+                                && file.getFileName().toString().endsWith(JAVA_EXTENSION)) {
+                            sources.put(root.relativize(file).toString(), file);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                };
+        Files.walkFileTree(sourceDir, sourceFinder);
+        return sources;
+    }
+
+    private static List<Path> findConfigurationFiles(Path root) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (Files.isRegularFile(file)
+                        && (name.startsWith(".tmcproject")
+                                || name.toLowerCase(Locale.ROOT).contains("checkstyle")
+                                || BUILD_FILES.contains(name))) {
+                    files.add(file);
+                }
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    private static String configurationHash(Path root, Locale locale) throws IOException {
+        Hasher hasher = Hashing.sha1().newHasher();
+        hasher.putString(locale.toString(), StandardCharsets.UTF_8);
+        for (Path file : findConfigurationFiles(root)) {
+            hasher.putString(file.getFileName().toString(), StandardCharsets.UTF_8);
+            hasher.putBytes(Files.readAllBytes(file));
+        }
+        return hasher.hash().toString();
+    }
+
+    private CacheData load(String configuration) {
+        if (Files.exists(cacheFile)) {
+            try (Reader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+                CacheData data = gson.fromJson(reader, CacheData.class);
+                if (data != null
+                        && data.version == FORMAT_VERSION
+                        && configuration.equals(data.configuration)
+                        && data.files != null) {
+                    return data;
+                }
+            } catch (IOException | JsonParseException ex) {
+                log.warn("Unable to read checkstyle cache {}", cacheFile, ex);
+            }
+        }
+        CacheData data = new CacheData();
+        data.configuration = configuration;
+        return data;
+    }
+
+    private void save(CacheData cache) {
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            try (Writer writer = Files.newBufferedWriter(cacheFile, StandardCharsets.UTF_8)) {
+                gson.toJson(cache, writer);
+            }
+        } catch (IOException ex) {
+            log.warn("Unable to write checkstyle cache {}", cacheFile, ex);
+        }
+    }
+
+    private static final class CacheData {
+        int version = FORMAT_VERSION;
+        String configuration;
+        String strategy;
+        SortedMap<String, FileEntry> files = new TreeMap<>();
+
+        ValidationResult toValidationResult(Path projectRoot) {
+            Map<File, List<ValidationError>> errors = new LinkedHashMap<>();
+            for (Map.Entry<String, FileEntry> file : files.entrySet()) {
+                if (file.getValue().reported) {
+                    errors.put(
+                            projectRoot.resolve(file.getKey()).toFile(),
+                            new ArrayList<ValidationError>(file.getValue().errors));
+                }
+            }
+            return new CachedValidationResult(
+                    strategy == null ? null : Strategy.valueOf(strategy), errors);
+        }
+    }
+
+    private static final class FileEntry {
+        String hash;
+        boolean reported;
+        List<ErrorEntry> errors = new ArrayList<>();
+    }
+
+    private static final class ErrorEntry implements ValidationError {
+        int column;
+        int line;
+        String message;
+        String sourceName;
+
+        static ErrorEntry from(ValidationError error) {
+            ErrorEntry entry = new ErrorEntry();
+            entry.column = error.getColumn();
+            entry.line = error.getLine();
+            entry.message = error.getMessage();
+            entry.sourceName = error.getSourceName();
+            return entry;
+        }
+
+        @Override
+        public int getColumn() {
+            return column;
+        }
+
+        @Override
+        public int getLine() {
+            return line;
+        }
+
+        @Override
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String getSourceName() {
+            return sourceName;
+        }
+    }
+
+    private static final class CachedValidationResult implements ValidationResult {
+        private final Strategy strategy;
+        private final Map<File, List<ValidationError>> validationErrors;
+
+        CachedValidationResult(
+                Strategy strategy, Map<File, List<ValidationError>> validationErrors) {
+            this.strategy = strategy;
+            this.validationErrors = validationErrors;
+        }
+
+        @Override
+        public Strategy getStrategy() {
+            return strategy;
+        }
+
+        @Override
+        public Map<File, List<ValidationError>> getValidationErrors() {
+            return validationErrors;
+        }
+    }
+}
@@ -2,26 +2,43 @@ package fi.helsinki.cs.tmc.langs.java;
 
 import fi.helsinki.cs.tmc.langs.domain.RunResult;
 import fi.helsinki.cs.tmc.langs.domain.TestResult;
-import fi.helsinki.cs.tmc.testrunner.TestCaseList;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.gson.Gson;
-
-import org.apache.commons.io.FileUtils;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
+/**
+ * Parses the result file written by the TMC test runner.
+ *
+ * <p>The file is read as a stream, converting each test case as it is read, so that only the
+ * converted results are kept in memory. Tests that fail with huge messages or deep stack
+ * traces can produce result files of several megabytes, so messages and stack traces are
+ * truncated to {@link #MAX_MESSAGE_LENGTH} characters and {@link #MAX_STACK_TRACE_LENGTH}
+ * frames.
+ */
 public final class TestResultParser {
 
     private static final Logger log = LoggerFactory.getLogger(TestResultParser.class);
 
+    static final int MAX_MESSAGE_LENGTH = 64 * 1024;
+    static final int MAX_STACK_TRACE_LENGTH = 256;
+
+    private static final String STATUS_PASSED = "PASSED";
+    private static final String STATUS_FAILED = "FAILED";
+
     /**
      * Parse tmc-testrunner output file for RunResult information.
      *
@@ -29,11 +46,10 @@ public final class TestResultParser {
      * @return RunResult object containing information about the tests.
      */
     public RunResult parseTestResult(TestRunFileAndLogs resultsFile) {
-        try {
-            return parseTestResult(
-                    FileUtils.readFileToString(resultsFile.getTestResultsFile(), "UTF-8"),
-                    resultsFile.getStdout(),
-                    resultsFile.getStderr());
+        try (Reader reader =
+                Files.newBufferedReader(
+                        resultsFile.getTestResultsFile().toPath(), StandardCharsets.UTF_8)) {
+            return parseTestResult(reader, resultsFile.getStdout(), resultsFile.getStderr());
         } catch (IOException e) {
             log.error("Unable to parse test results from {}", resultsFile, e);
             // The testrun VM crashed, most likely due to System.exit command in tested code.
@@ -51,51 +67,175 @@ public final class TestResultParser {
      * @return              Parsed RunResult
      */
     public RunResult parseTestResult(String resultsJson, byte[] stdout, byte[] stderr) {
-        List<TestResult> testResults = new ArrayList<>();
+        try {
+            return parseTestResult(new StringReader(resultsJson), stdout, stderr);
+        } catch (IOException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
 
-        TestCaseList testCaseRecords = new Gson().fromJson(resultsJson, TestCaseList.class);
+    private RunResult parseTestResult(Reader results, byte[] stdout, byte[] stderr)
+            throws IOException {
+        ImmutableList.Builder<TestResult> testResults = ImmutableList.builder();
         boolean passed = true;
 
-        for (fi.helsinki.cs.tmc.testrunner.TestCase tc : testCaseRecords) {
-            testResults.add(convertTestCaseResult(tc));
-
-            if (tc.status == fi.helsinki.cs.tmc.testrunner.TestCase.Status.FAILED) {
+        JsonReader reader = new JsonReader(results);
+        reader.setLenient(true);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            TestCase testCase = readTestCase(reader);
+            testResults.add(testCase.toTestResult());
+            if (STATUS_FAILED.equals(testCase.status)) {
                 passed = false;
             }
         }
+        reader.endArray();
 
         RunResult.Status status = passed ? RunResult.Status.PASSED : RunResult.Status.TESTS_FAILED;
 
         return new RunResult(
                 status,
-                ImmutableList.copyOf(testResults),
+                testResults.build(),
                 ImmutableMap.of("stdout", stdout, "stderr", stderr));
     }
 
-    private TestResult convertTestCaseResult(fi.helsinki.cs.tmc.testrunner.TestCase testCase) {
-        List<String> exception = new ArrayList<>();
-        List<String> points = new ArrayList<>();
+    private TestCase readTestCase(JsonReader reader) throws IOException {
+        TestCase testCase = new TestCase();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (field) {
+                case "className":
+                    testCase.className = reader.nextString();
+                    break;
+                case "methodName":
+                    testCase.methodName = reader.nextString();
+                    break;
+                case "pointNames":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        testCase.points.add(reader.nextString());
+                    }
+                    reader.endArray();
+                    break;
+                case "status":
+                    testCase.status = reader.nextString();
+                    break;
+                case "message":
+                    testCase.message = truncate(reader.nextString());
+                    break;
+                case "exception":
+                    readException(reader, testCase.exception);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return testCase;
+    }
 
-        if (testCase.exception != null) {
-            if (testCase.exception.message != null) {
-                exception.add(testCase.exception.message);
+    /**
+     * Reads the message and stack trace of the exception the test failed with. The cause of
+     * the exception isn't shown, so it's skipped.
+     */
+    private void readException(JsonReader reader, List<String> exception) throws IOException {
+        String message = null;
+        List<String> stackTrace = new ArrayList<>();
+        int omittedFrames = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if (field.equals("message")) {
+                message = truncate(reader.nextString());
+            } else if (field.equals("stackTrace")) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (stackTrace.size() < MAX_STACK_TRACE_LENGTH) {
+                        stackTrace.add(readStackTraceElement(reader));
+                    } else {
+                        reader.skipValue();
+                        omittedFrames++;
+                    }
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
             }
-            for (StackTraceElement stackTrace : testCase.exception.stackTrace) {
-                exception.add(stackTrace.toString());
+        }
+        reader.endObject();
+
+        if (message != null) {
+            exception.add(message);
+        }
+        exception.addAll(stackTrace);
+        if (omittedFrames > 0) {
+            exception.add("... " + omittedFrames + " more");
+        }
+    }
+
+    private String readStackTraceElement(JsonReader reader) throws IOException {
+        String declaringClass = "null";
+        String methodName = "null";
+        String fileName = null;
+        int lineNumber = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (field) {
+                case "declaringClass":
+                    declaringClass = reader.nextString();
+                    break;
+                case "methodName":
+                    methodName = reader.nextString();
+                    break;
+                case "fileName":
+                    fileName = reader.nextString();
+                    break;
+                case "lineNumber":
+                    lineNumber = reader.nextInt();
+                    break;
+                default:
+                    reader.skipValue();
             }
         }
+        reader.endObject();
+        return new StackTraceElement(declaringClass, methodName, fileName, lineNumber).toString();
+    }
 
-        Collections.addAll(points, testCase.pointNames);
+    private static String truncate(String text) {
+        if (text.length() <= MAX_MESSAGE_LENGTH) {
+            return text;
+        }
+        return text.substring(0, MAX_MESSAGE_LENGTH)
+                + "... (" + (text.length() - MAX_MESSAGE_LENGTH) + " characters truncated)";
+    }
 
-        String name = testCase.className + " " + testCase.methodName;
-        boolean passed = testCase.status == fi.helsinki.cs.tmc.testrunner.TestCase.Status.PASSED;
-        String message = testCase.message == null ? "" : testCase.message;
+    private static final class TestCase {
+        String className;
+        String methodName;
+        List<String> points = new ArrayList<>();
+        String status;
+        String message;
+        List<String> exception = new ArrayList<>();
 
-        return new TestResult(
-                name,
-                passed,
-                ImmutableList.copyOf(points),
-                message,
-                ImmutableList.copyOf(exception));
+        TestResult toTestResult() {
+            return new TestResult(
+                    className + " " + methodName,
+                    STATUS_PASSED.equals(status),
+                    ImmutableList.copyOf(points),
+                    message == null ? "" : message,
+                    ImmutableList.copyOf(exception));
+        }
     }
 }
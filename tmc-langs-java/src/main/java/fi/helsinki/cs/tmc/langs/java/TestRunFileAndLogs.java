@@ -1,5 +1,7 @@
 package fi.helsinki.cs.tmc.langs.java;
 
+import fi.helsinki.cs.tmc.langs.domain.ResourceUsage;
+
 import java.io.File;
 
 /**
@@ -13,10 +15,21 @@ public class TestRunFileAndLogs {
 
     private byte[] stderr;
 
+    private ResourceUsage resourceUsage;
+
     public TestRunFileAndLogs(File testResultsFile, byte[] stdout, byte[] stderr) {
+        this(testResultsFile, stdout, stderr, null);
+    }
+
+    /**
+     * Creates the results of a test run whose resource usage was measured.
+     */
+    public TestRunFileAndLogs(
+            File testResultsFile, byte[] stdout, byte[] stderr, ResourceUsage resourceUsage) {
         this.testResultsFile = testResultsFile;
         this.stdout = stdout;
         this.stderr = stderr;
+        this.resourceUsage = resourceUsage;
     }
 
     public File getTestResultsFile() {
@@ -30,4 +43,11 @@ public class TestRunFileAndLogs {
     public byte[] getStdout() {
         return stdout;
     }
+
+    /**
+     * Returns the resources used by the test run, or null if they weren't measured.
+     */
+    public ResourceUsage getResourceUsage() {
+        return resourceUsage;
+    }
 }
@@ -0,0 +1,116 @@
+package fi.helsinki.cs.tmc.langs.java;
+
+import fi.helsinki.cs.tmc.testscanner.TestMethod;
+
+import com.google.common.base.Optional;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Stores the test methods found by the last test scan of an exercise in a file next to its
+ * build output.
+ *
+ * <p>The result is keyed by a hash of the test sources and the class path they were scanned
+ * with. Test sources rarely change after the exercise has been published, so most scans can
+ * be answered from the cache.
+ */
+final class TestScanCache {
+
+    private static final Logger log = LoggerFactory.getLogger(TestScanCache.class);
+
+    private static final Gson gson = new Gson();
+
+    private final Path cacheFile;
+
+    TestScanCache(Path cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Returns the cached test methods if they were scanned with the same key.
+     */
+    Optional<List<TestMethod>> get(String key) {
+        if (!Files.exists(cacheFile)) {
+            return Optional.absent();
+        }
+        try (Reader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+            CacheEntry entry = gson.fromJson(reader, CacheEntry.class);
+            if (entry != null && key.equals(entry.key) && entry.tests != null) {
+                return Optional.<List<TestMethod>>of(entry.tests);
+            }
+        } catch (IOException | JsonParseException ex) {
+            log.warn("Unable to read test scan cache {}", cacheFile, ex);
+        }
+        return Optional.absent();
+    }
+
+    /**
+     * Stores the test methods under the key, replacing the previous entry. Failures are only
+     * logged, as the tests can always be scanned again.
+     */
+    void put(String key, List<TestMethod> tests) {
+        CacheEntry entry = new CacheEntry();
+        entry.key = key;
+        entry.tests = new ArrayList<>(tests);
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            try (Writer writer = Files.newBufferedWriter(cacheFile, StandardCharsets.UTF_8)) {
+                gson.toJson(entry, writer);
+            }
+        } catch (IOException ex) {
+            log.warn("Unable to write test scan cache {}", cacheFile, ex);
+        }
+    }
+
+    /**
+     * Computes the cache key for scanning the sources with the class path. The contents of
+     * directories on the class path are not included, as the compiled classes of the exercise
+     * change with every build without affecting which tests there are.
+     */
+    static String key(Path projectRoot, Collection<File> sources, ClassPath classPath)
+            throws IOException {
+        Path root = projectRoot.toAbsolutePath().normalize();
+        SortedMap<String, File> sortedSources = new TreeMap<>();
+        for (File source : sources) {
+            Path sourcePath = source.toPath().toAbsolutePath().normalize();
+            sortedSources.put(root.relativize(sourcePath).toString(), source);
+        }
+
+        Hasher hasher = Hashing.sha1().newHasher();
+        for (SortedMap.Entry<String, File> source : sortedSources.entrySet()) {
+            hasher.putString(source.getKey(), StandardCharsets.UTF_8);
+            hasher.putBytes(Files.readAllBytes(source.getValue().toPath()));
+        }
+        for (Path path : classPath.getPaths()) {
+            hasher.putString(path.toString(), StandardCharsets.UTF_8);
+            if (Files.isRegularFile(path)) {
+                hasher.putLong(Files.size(path));
+                hasher.putLong(Files.getLastModifiedTime(path).toMillis());
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    private static final class CacheEntry {
+        String key;
+        List<TestMethod> tests;
+    }
+}
@@ -0,0 +1,69 @@
+package fi.helsinki.cs.tmc.langs.java;
+
+import fi.helsinki.cs.tmc.testscanner.TestScanner;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A bounded pool of test scanners.
+ *
+ * <p>A scanner holds the sources and class path of the scan in progress, so each concurrent
+ * scan needs a scanner of its own. Scanners are created only when needed, to avoid issues where
+ * no java compiler is present, and are reused afterwards. When all scanners are in use,
+ * {@link #borrow()} waits until one is released.
+ */
+public final class TestScannerPool {
+
+    private final Semaphore permits;
+    private final Deque<TestScanner> idleScanners = new ArrayDeque<>();
+
+    /**
+     * Creates a pool with one scanner per available processor at most.
+     */
+    public TestScannerPool() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a pool with at most the given number of scanners.
+     */
+    public TestScannerPool(int maxScanners) {
+        Preconditions.checkArgument(maxScanners > 0, "maxScanners must be positive");
+        this.permits = new Semaphore(maxScanners, true);
+    }
+
+    /**
+     * Takes a scanner for exclusive use, waiting if all scanners are in use. The scanner must
+     * be handed back with {@link #release(TestScanner)}.
+     */
+    public TestScanner borrow() {
+        permits.acquireUninterruptibly();
+        try {
+            synchronized (idleScanners) {
+                TestScanner scanner = idleScanners.poll();
+                if (scanner != null) {
+                    return scanner;
+                }
+            }
+            return new TestScanner();
+        } catch (RuntimeException | Error e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a borrowed scanner to the pool.
+     */
+    public void release(TestScanner scanner) {
+        scanner.clearSources();
+        synchronized (idleScanners) {
+            idleScanners.push(scanner);
+        }
+        permits.release();
+    }
+}
@@ -2,17 +2,20 @@ package fi.helsinki.cs.tmc.langs.java.ant;
 
 import fi.helsinki.cs.tmc.langs.domain.CompileResult;
 import fi.helsinki.cs.tmc.langs.domain.ExerciseDesc;
+import fi.helsinki.cs.tmc.langs.domain.ResourceUsage;
 import fi.helsinki.cs.tmc.langs.domain.ValueObject;
 import fi.helsinki.cs.tmc.langs.io.StudentFilePolicy;
 import fi.helsinki.cs.tmc.langs.io.sandbox.StudentFileAwareSubmissionProcessor;
 import fi.helsinki.cs.tmc.langs.java.AbstractJavaPlugin;
+import fi.helsinki.cs.tmc.langs.java.BuildContext;
 import fi.helsinki.cs.tmc.langs.java.ClassPath;
-import fi.helsinki.cs.tmc.langs.java.LazyTestScanner;
 import fi.helsinki.cs.tmc.langs.java.TestRunFileAndLogs;
+import fi.helsinki.cs.tmc.langs.java.TestScannerPool;
 import fi.helsinki.cs.tmc.langs.java.exception.TestRunnerException;
 import fi.helsinki.cs.tmc.langs.java.exception.TestScannerException;
 import fi.helsinki.cs.tmc.langs.utils.ProcessResult;
 import fi.helsinki.cs.tmc.langs.utils.ProcessRunner;
+import fi.helsinki.cs.tmc.langs.utils.ResourceLimits;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
@@ -37,6 +40,15 @@ import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A {@link fi.helsinki.cs.tmc.langs.LanguagePlugin} that defines the behaviour
@@ -50,6 +62,9 @@ public class AntPlugin extends AbstractJavaPlugin {
     private static final Path BUILD_FILE = Paths.get("build.xml");
     private static final Path BUILD_LOG_FILE = Paths.get("build_log.txt");
     private static final Path BUILD_ERROR_LOG_FILE = Paths.get("build_errors.txt");
+    private static final Path TEST_SCAN_CACHE_FILE = Paths.get("build", "tmc-test-scan.json");
+    private static final Path CHECKSTYLE_CACHE_FILE =
+            Paths.get("build", "tmc-checkstyle-cache.json");
 
     private static final String ANT_BUILD_FILE_PROPERTY = "ant.file";
     private static final String ANT_JAVAC_FORK_PROPERTY = "javac.fork";
@@ -58,17 +73,44 @@ public class AntPlugin extends AbstractJavaPlugin {
     private static final String ANT_COMPILE_TEST_TARGET = "compile-test";
     private static final String ANT_CLEAN_TARGET = "clean";
     private static final String RUNTIME_PARAMS = "runtime_params";
+    private static final String TEST_PARALLELISM = "test_parallelism";
+
+    /**
+     * Set to false to always build with Ant, even when the exercise could be compiled in
+     * process.
+     */
+    static final String IN_PROCESS_COMPILE_PROPERTY = "tmc.ant.inprocess";
 
     private static final int STATUS_CODE_SUCCESS = 0;
     private static final int STATUS_CODE_ERROR = 1;
 
     private static final Logger log = LoggerFactory.getLogger(AntPlugin.class);
 
+    /**
+     * Runs the test runners of partitioned test runs. The threads only wait for the runners,
+     * so idle ones are reused between runs rather than bounded.
+     */
+    private static final ExecutorService partitionExecutor =
+            Executors.newCachedThreadPool(
+                    new ThreadFactory() {
+                        private final AtomicInteger count = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable task) {
+                            Thread thread =
+                                    new Thread(
+                                            task,
+                                            "tmc-test-partition-" + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+
     /**
      * Create a new AntPlugin.
      */
     public AntPlugin() {
-        super(TEST_DIR, new StudentFileAwareSubmissionProcessor(), new LazyTestScanner());
+        super(TEST_DIR, new StudentFileAwareSubmissionProcessor(), new TestScannerPool());
     }
 
     @Override
@@ -88,7 +130,9 @@ public class AntPlugin extends AbstractJavaPlugin {
     }
 
     /**
-     * Runs the build.xml file for the the given exercise.
+     * Compiles the given exercise. Exercises with the standard layout are compiled in process,
+     * others by running their build.xml file. If pooled test runner JVMs are enabled, one is
+     * started for the exercise while it compiles.
      *
      * @param path The file path of the exercise directory.
      * @return true if build success, else return false.
@@ -98,6 +142,31 @@ public class AntPlugin extends AbstractJavaPlugin {
 
         log.info("Building project at {}", path);
 
+        if (TestRunnerJvmPool.isEnabled()) {
+            TestRunnerJvmPool.getDefault()
+                    .prestart(
+                            TestRunnerArgumentBuilder.createJvmArgumentList(
+                                    getJvmOptions(path), path),
+                            getProjectClassPath(path));
+        }
+
+        if (isInProcessCompileEnabled()) {
+            Optional<InProcessJavaCompiler> compiler = InProcessJavaCompiler.forProject(path);
+            if (compiler.isPresent()) {
+                log.info("Compiling project at {} in process", path);
+                try {
+                    return compiler.get()
+                            .compile(
+                                    path,
+                                    path.resolve(BUILD_LOG_FILE),
+                                    path.resolve(BUILD_ERROR_LOG_FILE));
+                } catch (IOException ioException) {
+                    log.info("Error building project at {}", path, ioException);
+                    throw Throwables.propagate(ioException);
+                }
+            }
+        }
+
         File buildFile = path.resolve(BUILD_FILE).toFile();
         Project buildProject = new Project();
 
@@ -154,6 +223,20 @@ public class AntPlugin extends AbstractJavaPlugin {
         }
     }
 
+    private static boolean isInProcessCompileEnabled() {
+        return !"false".equalsIgnoreCase(System.getProperty(IN_PROCESS_COMPILE_PROPERTY));
+    }
+
+    @Override
+    protected Optional<Path> getTestScanCacheFile(Path projectRoot) {
+        return Optional.of(projectRoot.resolve(TEST_SCAN_CACHE_FILE));
+    }
+
+    @Override
+    protected Optional<Path> getCheckstyleCacheFile(Path projectRoot) {
+        return Optional.of(projectRoot.resolve(CHECKSTYLE_CACHE_FILE));
+    }
+
     @Override
     protected ClassPath getProjectClassPath(Path path) {
         ClassPath classPath = new ClassPath(path.toAbsolutePath());
@@ -189,11 +272,18 @@ public class AntPlugin extends AbstractJavaPlugin {
     protected TestRunFileAndLogs createRunResultFile(Path projectBasePath,
                                                      CompileResult compileResult)
             throws TestRunnerException, TestScannerException {
+        return createRunResultFile(new BuildContext(projectBasePath, compileResult));
+    }
+
+    @Override
+    protected TestRunFileAndLogs createRunResultFile(BuildContext context)
+            throws TestRunnerException, TestScannerException {
+        Path projectBasePath = context.getProjectRoot();
 
         log.info("Running tests for project at {}", projectBasePath);
 
         Optional<ExerciseDesc> exercise =
-                scanExercise(projectBasePath, projectBasePath.toString() + TEST_DIR, compileResult);
+                scanBuiltExercise(context, projectBasePath.toString() + TEST_DIR);
         if (!exercise.isPresent()) {
             log.error("Unable to create run result file due to absent ExerciseDesc");
             throw new TestScannerException();
@@ -201,25 +291,49 @@ public class AntPlugin extends AbstractJavaPlugin {
 
         Path testDir = projectBasePath.resolve(TEST_DIR);
         Path resultFile = projectBasePath.resolve(RESULT_FILE);
-        ClassPath classPath = getProjectClassPath(projectBasePath);
-        TestRunnerArgumentBuilder argumentBuilder =
-                new TestRunnerArgumentBuilder(
-                        getJvmOptions(projectBasePath),
-                        projectBasePath,
-                        testDir,
-                        resultFile,
-                        classPath,
-                        exercise.get());
-
-        ProcessRunner runner =  new ProcessRunner(argumentBuilder.getCommand(), projectBasePath);
+        ClassPath classPath;
+        try {
+            classPath = getProjectClassPath(context);
+        } catch (IOException e) {
+            throw new TestRunnerException(e);
+        }
+        String jvmOptions = getJvmOptions(projectBasePath);
 
+        List<ExerciseDesc> partitions =
+                TestPartitions.partition(exercise.get(), getTestParallelism(projectBasePath));
         try {
-            ProcessResult result = runner.call();
+            ProcessResult result;
+            if (partitions.size() > 1) {
+                result =
+                        runPartitions(
+                                projectBasePath,
+                                testDir,
+                                resultFile,
+                                classPath,
+                                jvmOptions,
+                                partitions);
+            } else {
+                result =
+                        runTestRunner(
+                                projectBasePath,
+                                new TestRunnerArgumentBuilder(
+                                        jvmOptions,
+                                        projectBasePath,
+                                        testDir,
+                                        resultFile,
+                                        classPath,
+                                        exercise.get()));
+            }
+            if (result.timedOut) {
+                log.warn("Tests for project at {} timed out", projectBasePath);
+                throw new TestRunnerException(result);
+            }
             log.info("Successfully ran tests for project at {}", projectBasePath);
             return new TestRunFileAndLogs(
                 resultFile.toFile(),
                 result.output.getBytes(Charset.forName("UTF-8")),
-                result.errorOutput.getBytes(Charset.forName("UTF-8"))
+                result.errorOutput.getBytes(Charset.forName("UTF-8")),
+                result.resourceUsage
             );
         } catch (InterruptedException | IOException e) {
             log.error("Failed to run tests", e);
@@ -227,6 +341,140 @@ public class AntPlugin extends AbstractJavaPlugin {
         }
     }
 
+    /**
+     * Runs each partition of the tests in a test runner of its own, all at the same time, and
+     * merges their results into the result file. The output of the runners is concatenated in
+     * partition order, and their resource usage is combined if it was measured for all of them.
+     * If a runner left no results, for example because its JVM died, the run is treated as
+     * interrupted and its output is kept for the logs.
+     */
+    private ProcessResult runPartitions(
+            final Path projectBasePath,
+            Path testDir,
+            Path resultFile,
+            ClassPath classPath,
+            String jvmOptions,
+            List<ExerciseDesc> partitions)
+            throws IOException, InterruptedException, TestRunnerException {
+        log.info(
+                "Running tests for project at {} in {} partitions",
+                projectBasePath,
+                partitions.size());
+
+        List<Path> partitionFiles = new ArrayList<>();
+        List<Callable<ProcessResult>> runs = new ArrayList<>();
+        for (ExerciseDesc partition : partitions) {
+            Path partitionFile =
+                    projectBasePath.resolve("results-" + (partitionFiles.size() + 1) + ".txt");
+            partitionFiles.add(partitionFile);
+            final TestRunnerArgumentBuilder argumentBuilder =
+                    new TestRunnerArgumentBuilder(
+                            jvmOptions,
+                            projectBasePath,
+                            testDir,
+                            partitionFile,
+                            classPath,
+                            partition);
+            Callable<ProcessResult> run =
+                    new Callable<ProcessResult>() {
+                        @Override
+                        public ProcessResult call() throws IOException, InterruptedException {
+                            return runTestRunner(projectBasePath, argumentBuilder);
+                        }
+                    };
+            runs.add(run);
+        }
+
+        StringBuilder output = new StringBuilder();
+        StringBuilder errorOutput = new StringBuilder();
+        int statusCode = STATUS_CODE_SUCCESS;
+        boolean timedOut = false;
+        ResourceUsage resourceUsage = null;
+        try {
+            List<Future<ProcessResult>> futures = partitionExecutor.invokeAll(runs);
+            for (Future<ProcessResult> future : futures) {
+                ProcessResult result = future.get();
+                output.append(result.output);
+                errorOutput.append(result.errorOutput);
+                if (result.statusCode != STATUS_CODE_SUCCESS) {
+                    statusCode = result.statusCode;
+                }
+                timedOut |= result.timedOut;
+                if (future == futures.get(0)) {
+                    resourceUsage = result.resourceUsage;
+                } else if (resourceUsage != null && result.resourceUsage != null) {
+                    resourceUsage = ResourceUsage.concurrent(resourceUsage, result.resourceUsage);
+                } else {
+                    resourceUsage = null;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+            Throwables.propagateIfInstanceOf(e.getCause(), InterruptedException.class);
+            throw Throwables.propagate(e.getCause());
+        }
+
+        ProcessResult result =
+                new ProcessResult(
+                        statusCode,
+                        output.toString(),
+                        errorOutput.toString(),
+                        timedOut,
+                        0,
+                        0,
+                        resourceUsage);
+        if (!TestPartitions.merge(partitionFiles, resultFile) && !timedOut) {
+            log.warn("A test runner for project at {} left no results", projectBasePath);
+            throw new TestRunnerException(result);
+        }
+        return result;
+    }
+
+    private ProcessResult runTestRunner(
+            Path projectBasePath, TestRunnerArgumentBuilder argumentBuilder)
+            throws IOException, InterruptedException {
+        ResourceLimits resourceLimits = getResourceLimits(projectBasePath);
+        // The pooled JVMs are not started within the limits of the project.
+        if (TestRunnerJvmPool.isEnabled() && resourceLimits.isUnlimited()) {
+            Optional<ProcessResult> warmResult = runInPooledJvm(projectBasePath, argumentBuilder);
+            if (warmResult.isPresent()) {
+                return warmResult.get();
+            }
+        }
+        return new ProcessRunner(
+                        argumentBuilder.getCommand(),
+                        projectBasePath,
+                        getOutputLimits(projectBasePath))
+                .withResourceLimits(resourceLimits)
+                .call();
+    }
+
+    private Optional<ProcessResult> runInPooledJvm(
+            Path projectBasePath, TestRunnerArgumentBuilder argumentBuilder) {
+        log.info("Running tests for project at {} in a pooled JVM", projectBasePath);
+        return TestRunnerJvmPool.getDefault()
+                .run(
+                        projectBasePath,
+                        argumentBuilder.getJvmArguments(),
+                        argumentBuilder.getSystemProperties(),
+                        argumentBuilder.getClassPath(),
+                        argumentBuilder.getMainClass(),
+                        argumentBuilder.getTestCaseArguments(),
+                        getOutputLimits(projectBasePath));
+    }
+
+    /**
+     * Returns the number of test runners the tests may be split between, as configured with
+     * the test_parallelism option of the exercise's .tmcproject.yml.
+     */
+    private int getTestParallelism(Path projectBasePath) {
+        ValueObject parallelism = getConfiguration(projectBasePath).get(TEST_PARALLELISM);
+        if (parallelism != null && parallelism.asInteger() != null) {
+            return parallelism.asInteger();
+        }
+        return 1;
+    }
+
     private String getJvmOptions(Path projectBasePath) {
         String jvmEnv = System.getenv("JVM_OPTIONS");
         if (!Strings.isNullOrEmpty(jvmEnv)) {
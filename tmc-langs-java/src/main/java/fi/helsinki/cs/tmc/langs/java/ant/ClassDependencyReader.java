@@ -0,0 +1,129 @@
+package fi.helsinki.cs.tmc.langs.java.ant;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the names of the classes a compiled class refers to from its constant pool.
+ *
+ * <p>Both class references and the types mentioned in field, method and generic signatures
+ * are included. Classes in the java packages are left out, as they never change between
+ * compilations.
+ */
+final class ClassDependencyReader {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    private static final Pattern DESCRIPTOR_TYPE = Pattern.compile("L([\\w/$]+)[;<]");
+
+    private ClassDependencyReader() {
+    }
+
+    /**
+     * Returns the binary names of the classes referred to by the given class file.
+     */
+    static Set<String> readDependencies(Path classFile) throws IOException {
+        try (DataInputStream in =
+                new DataInputStream(new BufferedInputStream(Files.newInputStream(classFile)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a class file: " + classFile);
+            }
+            in.readUnsignedShort();
+            in.readUnsignedShort();
+
+            int count = in.readUnsignedShort();
+            String[] utf8 = new String[count];
+            List<Integer> classNameIndices = new ArrayList<>();
+            for (int i = 1; i < count; i++) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                    case CONSTANT_UTF8:
+                        utf8[i] = in.readUTF();
+                        break;
+                    case CONSTANT_CLASS:
+                        classNameIndices.add(in.readUnsignedShort());
+                        break;
+                    case CONSTANT_STRING:
+                    case CONSTANT_METHOD_TYPE:
+                    case CONSTANT_MODULE:
+                    case CONSTANT_PACKAGE:
+                        in.skipBytes(2);
+                        break;
+                    case CONSTANT_METHOD_HANDLE:
+                        in.skipBytes(3);
+                        break;
+                    case CONSTANT_INTEGER:
+                    case CONSTANT_FLOAT:
+                    case CONSTANT_FIELDREF:
+                    case CONSTANT_METHODREF:
+                    case CONSTANT_INTERFACE_METHODREF:
+                    case CONSTANT_NAME_AND_TYPE:
+                    case CONSTANT_DYNAMIC:
+                    case CONSTANT_INVOKE_DYNAMIC:
+                        in.skipBytes(4);
+                        break;
+                    case CONSTANT_LONG:
+                    case CONSTANT_DOUBLE:
+                        in.skipBytes(8);
+                        i++;
+                        break;
+                    default:
+                        throw new IOException(
+                                "Unknown constant pool tag " + tag + " in " + classFile);
+                }
+            }
+
+            Set<String> dependencies = new TreeSet<>();
+            for (int index : classNameIndices) {
+                String name = utf8[index];
+                if (name != null && !name.startsWith("[")) {
+                    addDependency(dependencies, name);
+                }
+            }
+            // Array classes and the types in descriptors and signatures are all in L...; form.
+            for (String value : utf8) {
+                if (value == null) {
+                    continue;
+                }
+                Matcher matcher = DESCRIPTOR_TYPE.matcher(value);
+                while (matcher.find()) {
+                    addDependency(dependencies, matcher.group(1));
+                }
+            }
+            return dependencies;
+        }
+    }
+
+    private static void addDependency(Set<String> dependencies, String internalName) {
+        if (!internalName.startsWith("java/")) {
+            dependencies.add(internalName.replace('/', '.'));
+        }
+    }
+}
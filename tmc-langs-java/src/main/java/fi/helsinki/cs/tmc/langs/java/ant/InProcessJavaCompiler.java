@@ -0,0 +1,652 @@
+package fi.helsinki.cs.tmc.langs.java.ant;
+
+import fi.helsinki.cs.tmc.langs.domain.CompileResult;
+import fi.helsinki.cs.tmc.langs.java.ClassPath;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Strings;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+/**
+ * Compiles Ant exercises that use the standard NetBeans project layout with the system Java
+ * compiler inside the current JVM, instead of running the build.xml with Ant.
+ *
+ * <p>Only exercises whose build.xml does nothing but import the generated
+ * nbproject/build-impl.xml, or that have no build.xml but both src and test directories, are
+ * compiled here. Sources in src are compiled to build/classes and sources in test to
+ * build/test/classes, both against the jars in lib. Everything else is left to Ant.
+ *
+ * <p>Compilation is incremental: only sources that changed since the previous compilation and
+ * the sources depending on them are recompiled, see {@link IncrementalCompilationState}.
+ *
+ * <p>The file manager, which indexes the jars on the class path, is kept between compilations
+ * as long as the jars in lib have the same paths, sizes and modification times. When they
+ * change, the old file manager is closed, so a replaced jar is read again. The jars of the
+ * latest project stay open until then. Compilations running while the shared file manager is
+ * in use get one of their own, which is closed when they end.
+ *
+ * <p>Annotation processing is disabled, so processors in the exercise's jars never run inside
+ * this JVM.
+ */
+final class InProcessJavaCompiler {
+
+    private static final Logger log = LoggerFactory.getLogger(InProcessJavaCompiler.class);
+
+    private static final Path BUILD_FILE = Paths.get("build.xml");
+    private static final Path PROJECT_PROPERTIES = Paths.get("nbproject", "project.properties");
+    private static final String BUILD_IMPL_FILE = "nbproject/build-impl.xml";
+
+    private static final Path SRC_DIR = Paths.get("src");
+    private static final Path TEST_DIR = Paths.get("test");
+    private static final Path LIB_DIR = Paths.get("lib");
+    private static final Path CLASSES_DIR = Paths.get("build", "classes");
+    private static final Path TEST_CLASSES_DIR = Paths.get("build", "test", "classes");
+
+    private static final Path TOOLS_JAR = Paths.get("tools.jar");
+
+    private static final String DEFAULT_SOURCE_VERSION = "1.8";
+    private static final String DEFAULT_ENCODING = "UTF-8";
+
+    private static final String STATE_SUFFIX = "-compile-state.json";
+
+    private static final Pattern PROPERTY_REFERENCE = Pattern.compile("\\$\\{([^}]+)\\}");
+
+    private static final Set<String> SKIPPED_RESOURCE_SUFFIXES =
+            new HashSet<>(Arrays.asList(".java", ".form"));
+
+    private static final Object fileManagerLock = new Object();
+    private static StandardJavaFileManager sharedFileManager;
+    private static String sharedFileManagerKey;
+    private static boolean sharedFileManagerInUse;
+
+    private final JavaCompiler compiler;
+    private final Settings settings;
+
+    private InProcessJavaCompiler(JavaCompiler compiler, Settings settings) {
+        this.compiler = compiler;
+        this.settings = settings;
+    }
+
+    /**
+     * Returns a compiler for the project if it uses the standard layout and a system Java
+     * compiler is available.
+     */
+    static Optional<InProcessJavaCompiler> forProject(Path projectRoot) {
+        if (!Files.isDirectory(projectRoot.resolve(SRC_DIR))) {
+            return Optional.absent();
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            log.info("No system java compiler available, compiling with ant");
+            return Optional.absent();
+        }
+        try {
+            Optional<Settings> settings = readSettings(projectRoot);
+            if (!settings.isPresent()) {
+                return Optional.absent();
+            }
+            return Optional.of(new InProcessJavaCompiler(compiler, settings.get()));
+        } catch (IOException ex) {
+            log.warn("Unable to inspect build configuration of {}", projectRoot, ex);
+            return Optional.absent();
+        }
+    }
+
+    /**
+     * Compiles the project's sources and tests and copies their resources to the build
+     * directory. Compiler messages are also written to the given log files, like the Ant
+     * build does.
+     */
+    CompileResult compile(Path projectRoot, Path buildLog, Path errorLog) throws IOException {
+        StringWriter output = new StringWriter();
+        StringWriter errors = new StringWriter();
+
+        ClassPath libraries = new ClassPath();
+        libraries.addDirAndContents(projectRoot.resolve(LIB_DIR));
+        Path toolsJar = Paths.get(System.getProperty("java.home"), "..", "lib", "tools.jar");
+        if (Files.exists(toolsJar)) {
+            libraries.add(toolsJar);
+        }
+
+        Path classesDir = projectRoot.resolve(CLASSES_DIR);
+        DirectoryResult result =
+                compileDirectory(
+                        projectRoot.resolve(SRC_DIR),
+                        classesDir,
+                        libraries,
+                        DirectoryResult.NOTHING_CHANGED,
+                        output,
+                        errors);
+
+        Path testDir = projectRoot.resolve(TEST_DIR);
+        if (result.success && Files.isDirectory(testDir)) {
+            ClassPath testClassPath = new ClassPath(classesDir);
+            testClassPath.add(libraries);
+            result =
+                    compileDirectory(
+                            testDir,
+                            projectRoot.resolve(TEST_CLASSES_DIR),
+                            testClassPath,
+                            result,
+                            output,
+                            errors);
+        }
+
+        byte[] stdout = output.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] stderr = errors.toString().getBytes(StandardCharsets.UTF_8);
+        Files.write(buildLog, stdout);
+        Files.write(errorLog, stderr);
+        return new CompileResult(result.success ? 0 : 1, stdout, stderr);
+    }
+
+    /**
+     * Compiles the sources in the directory that changed since the previous compilation,
+     * along with the sources depending on them or on the classes changed in {@code upstream}.
+     */
+    private DirectoryResult compileDirectory(
+            Path sourceDir,
+            Path outputDir,
+            ClassPath classPath,
+            DirectoryResult upstream,
+            StringWriter output,
+            StringWriter errors)
+            throws IOException {
+        final Map<String, Path> sources = new TreeMap<>();
+        final List<Path> resources = new ArrayList<>();
+        final Path root = sourceDir.toAbsolutePath().normalize();
+        Files.walkFileTree(
+                root,
+                new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        String name = file.getFileName().toString();
+                        if (name.endsWith(".java")) {
+                            sources.put(root.relativize(file).toString(), file);
+                        } else if (!isSkippedResource(name)) {
+                            resources.add(file);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+
+        Files.createDirectories(outputDir);
+        copyResources(root, outputDir, resources);
+
+        List<File> classPathFiles = new ArrayList<>();
+        classPathFiles.add(outputDir.toFile());
+        for (Path path : classPath.getPaths()) {
+            classPathFiles.add(path.toFile());
+        }
+        List<String> options =
+                Arrays.asList(
+                        "-g",
+                        "-proc:none",
+                        "-encoding",
+                        settings.encoding,
+                        "-source",
+                        settings.sourceVersion,
+                        "-target",
+                        settings.targetVersion);
+
+        Path stateFile = outputDir.resolveSibling("." + outputDir.getFileName() + STATE_SUFFIX);
+        IncrementalCompilationState state =
+                IncrementalCompilationState.load(
+                        stateFile, configurationHash(options, classPath));
+        Map<String, String> hashes = new TreeMap<>();
+        for (Map.Entry<String, Path> source : sources.entrySet()) {
+            hashes.put(
+                    source.getKey(),
+                    Hashing.sha1().hashBytes(Files.readAllBytes(source.getValue())).toString());
+        }
+
+        boolean rebuild = upstream.rebuilt || !state.isPreviousStateFound();
+        Set<String> changedClasses = new HashSet<>(upstream.changedClasses);
+        for (String removed : state.findRemovedSources(sources.keySet())) {
+            deleteClasses(outputDir, state.getClasses(removed));
+            changedClasses.addAll(state.getClasses(removed));
+            state.remove(removed);
+        }
+        Set<String> stale;
+        if (rebuild) {
+            stale = sources.keySet();
+        } else {
+            stale = state.findStaleSources(sources, hashes, changedClasses);
+        }
+        for (String source : stale) {
+            deleteClasses(outputDir, state.getClasses(source));
+        }
+
+        if (stale.isEmpty()) {
+            state.save();
+            return new DirectoryResult(true, false, changedClasses);
+        }
+
+        output.write(
+                "Compiling "
+                        + stale.size()
+                        + " source file"
+                        + (stale.size() == 1 ? "" : "s")
+                        + " to "
+                        + outputDir
+                        + "\n");
+
+        List<File> units = new ArrayList<>();
+        for (String source : stale) {
+            units.add(sources.get(source).toFile());
+        }
+        IncrementalCompilationState.delete(stateFile);
+        final Map<String, List<String>> compiledClasses = new HashMap<>();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        boolean success;
+        StandardJavaFileManager fileManager = acquireFileManager(classPath);
+        try {
+            fileManager.setLocation(
+                    StandardLocation.CLASS_OUTPUT, Arrays.asList(outputDir.toFile()));
+            fileManager.setLocation(StandardLocation.CLASS_PATH, classPathFiles);
+            // Unchanged classes are taken from the output directory, not recompiled.
+            fileManager.setLocation(StandardLocation.SOURCE_PATH, Collections.<File>emptyList());
+            JavaFileManager recordingFileManager =
+                    new ForwardingJavaFileManager<StandardJavaFileManager>(fileManager) {
+                        @Override
+                        public JavaFileObject getJavaFileForOutput(
+                                Location location,
+                                String className,
+                                JavaFileObject.Kind kind,
+                                FileObject sibling)
+                                throws IOException {
+                            if (kind == JavaFileObject.Kind.CLASS && sibling != null) {
+                                String source =
+                                        root.relativize(Paths.get(sibling.toUri())).toString();
+                                if (!compiledClasses.containsKey(source)) {
+                                    compiledClasses.put(source, new ArrayList<String>());
+                                }
+                                compiledClasses.get(source).add(className);
+                            }
+                            return super.getJavaFileForOutput(
+                                    location, className, kind, sibling);
+                        }
+                    };
+            JavaCompiler.CompilationTask task =
+                    compiler.getTask(
+                            output,
+                            recordingFileManager,
+                            diagnostics,
+                            options,
+                            null,
+                            fileManager.getJavaFileObjectsFromFiles(units));
+            success = task.call();
+        } finally {
+            releaseFileManager(fileManager);
+        }
+
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            StringWriter target =
+                    diagnostic.getKind() == Diagnostic.Kind.ERROR ? errors : output;
+            target.write(format(diagnostic));
+        }
+        if (!success) {
+            return new DirectoryResult(false, rebuild, changedClasses);
+        }
+
+        for (String source : stale) {
+            List<String> classes = compiledClasses.get(source);
+            if (classes == null) {
+                classes = Collections.emptyList();
+            }
+            Set<String> dependencies = new HashSet<>();
+            for (String className : classes) {
+                dependencies.addAll(
+                        ClassDependencyReader.readDependencies(classFile(outputDir, className)));
+            }
+            state.update(source, hashes.get(source), classes, dependencies);
+            changedClasses.addAll(classes);
+        }
+        state.save();
+        return new DirectoryResult(true, rebuild, changedClasses);
+    }
+
+    /**
+     * Returns the shared file manager if it is free and was created for the same jars, or a
+     * new one otherwise. The shared file manager is replaced if it is free.
+     */
+    private StandardJavaFileManager acquireFileManager(ClassPath classPath) throws IOException {
+        String key = jarsHash(classPath);
+        synchronized (fileManagerLock) {
+            if (sharedFileManagerInUse) {
+                return compiler.getStandardFileManager(null, Locale.ROOT, null);
+            }
+            if (sharedFileManager == null || !key.equals(sharedFileManagerKey)) {
+                if (sharedFileManager != null) {
+                    log.debug("Jars on the class path changed, replacing the file manager");
+                    sharedFileManager.close();
+                }
+                sharedFileManager = compiler.getStandardFileManager(null, Locale.ROOT, null);
+                sharedFileManagerKey = key;
+            }
+            sharedFileManagerInUse = true;
+            return sharedFileManager;
+        }
+    }
+
+    private static void releaseFileManager(StandardJavaFileManager fileManager)
+            throws IOException {
+        synchronized (fileManagerLock) {
+            if (fileManager == sharedFileManager) {
+                sharedFileManagerInUse = false;
+                return;
+            }
+        }
+        fileManager.close();
+    }
+
+    private static String jarsHash(ClassPath classPath) throws IOException {
+        Hasher hasher = Hashing.sha1().newHasher();
+        for (Path path : classPath.getPaths()) {
+            if (Files.isRegularFile(path)) {
+                hasher.putString(path.toAbsolutePath().toString(), StandardCharsets.UTF_8);
+                hasher.putLong(Files.size(path));
+                hasher.putLong(Files.getLastModifiedTime(path).toMillis());
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    private static String configurationHash(List<String> options, ClassPath classPath)
+            throws IOException {
+        Hasher hasher = Hashing.sha1().newHasher();
+        hasher.putString(System.getProperty("java.version"), StandardCharsets.UTF_8);
+        for (String option : options) {
+            hasher.putString(option, StandardCharsets.UTF_8);
+        }
+        for (Path path : classPath.getPaths()) {
+            hasher.putString(path.toString(), StandardCharsets.UTF_8);
+            if (Files.isRegularFile(path)) {
+                hasher.putLong(Files.size(path));
+                hasher.putLong(Files.getLastModifiedTime(path).toMillis());
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    private static Path classFile(Path outputDir, String className) {
+        return outputDir.resolve(className.replace('.', File.separatorChar) + ".class");
+    }
+
+    private static void deleteClasses(Path outputDir, List<String> classes) throws IOException {
+        for (String className : classes) {
+            Files.deleteIfExists(classFile(outputDir, className));
+        }
+    }
+
+    private static String format(Diagnostic<? extends JavaFileObject> diagnostic) {
+        StringBuilder message = new StringBuilder();
+        if (diagnostic.getSource() != null) {
+            message.append(diagnostic.getSource().getName());
+            if (diagnostic.getLineNumber() != Diagnostic.NOPOS) {
+                message.append(':').append(diagnostic.getLineNumber());
+            }
+            message.append(": ");
+        }
+        message.append(diagnostic.getKind().toString().toLowerCase(Locale.ROOT))
+                .append(": ")
+                .append(diagnostic.getMessage(Locale.getDefault()))
+                .append('\n');
+        return message.toString();
+    }
+
+    private static boolean isSkippedResource(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && SKIPPED_RESOURCE_SUFFIXES.contains(name.substring(dot));
+    }
+
+    private static void copyResources(Path sourceDir, Path outputDir, List<Path> resources)
+            throws IOException {
+        for (Path resource : resources) {
+            Path target = outputDir.resolve(sourceDir.relativize(resource));
+            if (Files.exists(target)
+                    && Files.getLastModifiedTime(target)
+                                    .compareTo(Files.getLastModifiedTime(resource))
+                            >= 0) {
+                continue;
+            }
+            Files.createDirectories(target.getParent());
+            Files.copy(resource, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads the compiler settings of the project, or returns absent if the project's build
+     * can't be reproduced without Ant.
+     */
+    private static Optional<Settings> readSettings(Path projectRoot) throws IOException {
+        Path buildFile = projectRoot.resolve(BUILD_FILE);
+        if (!Files.exists(buildFile)) {
+            if (!Files.isDirectory(projectRoot.resolve(TEST_DIR))) {
+                return Optional.absent();
+            }
+            return Optional.of(new Settings(null, null, null));
+        }
+        if (!isGeneratedBuildFile(buildFile)) {
+            log.info("Custom build file at {}, compiling with ant", buildFile);
+            return Optional.absent();
+        }
+
+        Path propertiesFile = projectRoot.resolve(PROJECT_PROPERTIES);
+        if (!Files.exists(propertiesFile)) {
+            return Optional.absent();
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(propertiesFile, StandardCharsets.ISO_8859_1)) {
+            properties.load(reader);
+        }
+
+        boolean standardLayout =
+                isPath(properties, "src.dir", SRC_DIR)
+                        && isPath(properties, "test.src.dir", TEST_DIR)
+                        && isPath(properties, "build.classes.dir", CLASSES_DIR)
+                        && isPath(properties, "build.test.classes.dir", TEST_CLASSES_DIR)
+                        && Strings.isNullOrEmpty(resolve(properties, "javac.compilerargs"));
+        if (!standardLayout) {
+            log.info("Non-standard project layout at {}, compiling with ant", projectRoot);
+            return Optional.absent();
+        }
+        if (!isLibraryClassPath(projectRoot, properties, "javac.classpath")
+                || !isLibraryClassPath(projectRoot, properties, "javac.test.classpath")) {
+            log.info("Class path of {} is not just the jars in lib, compiling with ant",
+                    projectRoot);
+            return Optional.absent();
+        }
+        return Optional.of(
+                new Settings(
+                        resolve(properties, "javac.source"),
+                        resolve(properties, "javac.target"),
+                        resolve(properties, "source.encoding")));
+    }
+
+    /**
+     * Checks that the build file only imports the generated nbproject/build-impl.xml and
+     * doesn't define or override any targets of its own.
+     */
+    private static boolean isGeneratedBuildFile(Path buildFile) throws IOException {
+        Element project;
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(
+                    "http://apache.org/xml/features/disallow-doctype-decl", true);
+            project = factory.newDocumentBuilder().parse(buildFile.toFile()).getDocumentElement();
+        } catch (ParserConfigurationException | SAXException ex) {
+            log.debug("Unable to parse {}", buildFile, ex);
+            return false;
+        }
+
+        boolean importsBuildImpl = false;
+        NodeList children = project.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node child = children.item(i);
+            if (child.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+            String name = child.getNodeName();
+            if ("import".equals(name)
+                    && BUILD_IMPL_FILE.equals(((Element) child).getAttribute("file"))) {
+                importsBuildImpl = true;
+            } else if (!"description".equals(name)) {
+                return false;
+            }
+        }
+        return importsBuildImpl;
+    }
+
+    /**
+     * Checks that every entry of the class path property resolves to the build output or to a
+     * jar in lib, which are the only entries the in-process compiler puts on the class path.
+     * The tools.jar of the JDK is allowed too, as it's added when it exists.
+     */
+    private static boolean isLibraryClassPath(
+            Path projectRoot, Properties properties, String key) {
+        Optional<String> value = resolveFully(properties, key);
+        if (!value.isPresent()) {
+            return false;
+        }
+        Path root = projectRoot.toAbsolutePath().normalize();
+        for (String entry : value.get().split("[:;]")) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+            Path path = root.resolve(entry.trim()).normalize();
+            if (!path.startsWith(root.resolve(LIB_DIR))
+                    && !path.equals(root.resolve(CLASSES_DIR))
+                    && !TOOLS_JAR.equals(path.getFileName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Resolves the property like {@link #resolve}, but returns absent if it refers to a
+     * property that is not defined in the project or as a system property. A missing property
+     * resolves to an empty value.
+     */
+    private static Optional<String> resolveFully(Properties properties, String key) {
+        String value = properties.getProperty(key, "");
+        for (int depth = 0; depth < 10; depth++) {
+            Matcher matcher = PROPERTY_REFERENCE.matcher(value);
+            if (!matcher.find()) {
+                return Optional.of(value.trim());
+            }
+            StringBuffer resolved = new StringBuffer();
+            do {
+                String name = matcher.group(1);
+                String replacement = properties.getProperty(name, System.getProperty(name));
+                if (replacement == null) {
+                    log.debug("Unresolved property {} in {}", name, key);
+                    return Optional.absent();
+                }
+                matcher.appendReplacement(resolved, Matcher.quoteReplacement(replacement));
+            } while (matcher.find());
+            matcher.appendTail(resolved);
+            value = resolved.toString();
+        }
+        return Optional.absent();
+    }
+
+    private static boolean isPath(Properties properties, String key, Path expected) {
+        String value = resolve(properties, key);
+        return value != null && Paths.get(value).normalize().equals(expected);
+    }
+
+    private static String resolve(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        for (int depth = 0; value != null && depth < 10; depth++) {
+            Matcher matcher = PROPERTY_REFERENCE.matcher(value);
+            if (!matcher.find()) {
+                return value.trim();
+            }
+            StringBuffer resolved = new StringBuffer();
+            do {
+                String replacement = properties.getProperty(matcher.group(1), "");
+                matcher.appendReplacement(resolved, Matcher.quoteReplacement(replacement));
+            } while (matcher.find());
+            matcher.appendTail(resolved);
+            value = resolved.toString();
+        }
+        return value == null ? null : value.trim();
+    }
+
+    private static final class DirectoryResult {
+        static final DirectoryResult NOTHING_CHANGED =
+                new DirectoryResult(true, false, Collections.<String>emptySet());
+
+        final boolean success;
+        final boolean rebuilt;
+        final Set<String> changedClasses;
+
+        DirectoryResult(boolean success, boolean rebuilt, Set<String> changedClasses) {
+            this.success = success;
+            this.rebuilt = rebuilt;
+            this.changedClasses = changedClasses;
+        }
+    }
+
+    private static final class Settings {
+        final String sourceVersion;
+        final String targetVersion;
+        final String encoding;
+
+        Settings(String sourceVersion, String targetVersion, String encoding) {
+            this.sourceVersion =
+                    Strings.isNullOrEmpty(sourceVersion) ? DEFAULT_SOURCE_VERSION : sourceVersion;
+            this.targetVersion =
+                    Strings.isNullOrEmpty(targetVersion) ? this.sourceVersion : targetVersion;
+            this.encoding = Strings.isNullOrEmpty(encoding) ? DEFAULT_ENCODING : encoding;
+        }
+    }
+}
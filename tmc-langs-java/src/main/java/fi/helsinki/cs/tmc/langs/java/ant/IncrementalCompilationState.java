@@ -0,0 +1,212 @@
+package fi.helsinki.cs.tmc.langs.java.ant;
+
+import com.google.common.base.Joiner;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Remembers, for every source file of a source directory, the hash of its contents, the
+ * classes compiled from it and the classes it depends on. Used to only recompile the sources
+ * that changed and the sources that depend on them.
+ *
+ * <p>Compile-time constants are inlined by javac and don't show up as dependencies in the
+ * class files, so a source also counts as a dependent of a class if it mentions the class's
+ * simple name.
+ */
+final class IncrementalCompilationState {
+
+    private static final Logger log = LoggerFactory.getLogger(IncrementalCompilationState.class);
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final Gson gson = new Gson();
+
+    private final Path stateFile;
+    private final StateData data;
+    private final boolean previousStateFound;
+
+    private IncrementalCompilationState(
+            Path stateFile, StateData data, boolean previousStateFound) {
+        this.stateFile = stateFile;
+        this.data = data;
+        this.previousStateFound = previousStateFound;
+    }
+
+    /**
+     * Loads the state of the previous compilation. The state is discarded if it was recorded
+     * with a different compiler configuration.
+     */
+    static IncrementalCompilationState load(Path stateFile, String configuration) {
+        if (Files.exists(stateFile)) {
+            try (Reader reader = Files.newBufferedReader(stateFile, StandardCharsets.UTF_8)) {
+                StateData data = gson.fromJson(reader, StateData.class);
+                if (data != null
+                        && data.version == FORMAT_VERSION
+                        && configuration.equals(data.configuration)
+                        && data.sources != null) {
+                    return new IncrementalCompilationState(stateFile, data, true);
+                }
+                log.info("Compiler configuration changed since {} was written", stateFile);
+            } catch (IOException | JsonParseException ex) {
+                log.warn("Unable to read compilation state from {}", stateFile, ex);
+            }
+        }
+        StateData data = new StateData();
+        data.configuration = configuration;
+        return new IncrementalCompilationState(stateFile, data, false);
+    }
+
+    /**
+     * Deletes the recorded state, so the next compilation recompiles everything.
+     */
+    static void delete(Path stateFile) {
+        try {
+            Files.deleteIfExists(stateFile);
+        } catch (IOException ex) {
+            log.warn("Unable to delete compilation state {}", stateFile, ex);
+        }
+    }
+
+    boolean isPreviousStateFound() {
+        return previousStateFound;
+    }
+
+    /**
+     * Returns the sources that were compiled previously but no longer exist.
+     */
+    Set<String> findRemovedSources(Collection<String> currentSources) {
+        Set<String> removed = new TreeSet<>(data.sources.keySet());
+        removed.removeAll(currentSources);
+        return removed;
+    }
+
+    /**
+     * Returns the classes compiled from the source in the previous compilation.
+     */
+    List<String> getClasses(String source) {
+        SourceEntry entry = data.sources.get(source);
+        return entry == null ? Collections.<String>emptyList() : entry.classes;
+    }
+
+    /**
+     * Returns the sources that need to be recompiled: new sources, sources whose hash has
+     * changed and, transitively, sources that depend on the classes of those or on any of the
+     * given changed classes. The classes of all returned sources are added to
+     * {@code changedClasses}.
+     */
+    Set<String> findStaleSources(
+            Map<String, Path> sources, Map<String, String> hashes, Set<String> changedClasses)
+            throws IOException {
+        Set<String> stale = new TreeSet<>();
+        for (String source : sources.keySet()) {
+            SourceEntry entry = data.sources.get(source);
+            if (entry == null || !entry.hash.equals(hashes.get(source))) {
+                stale.add(source);
+                changedClasses.addAll(getClasses(source));
+            }
+        }
+
+        Map<String, String> contents = new TreeMap<>();
+        boolean grew = !changedClasses.isEmpty();
+        while (grew) {
+            grew = false;
+            Pattern mentions = simpleNamePattern(changedClasses);
+            for (Map.Entry<String, Path> source : sources.entrySet()) {
+                String name = source.getKey();
+                if (stale.contains(name)) {
+                    continue;
+                }
+                SourceEntry entry = data.sources.get(name);
+                if (!Collections.disjoint(entry.dependencies, changedClasses)
+                        || mentions.matcher(read(contents, source)).find()) {
+                    stale.add(name);
+                    changedClasses.addAll(entry.classes);
+                    grew = true;
+                }
+            }
+        }
+        return stale;
+    }
+
+    /**
+     * Records the result of compiling the source.
+     */
+    void update(String source, String hash, Collection<String> classes, Set<String> dependencies) {
+        SourceEntry entry = new SourceEntry();
+        entry.hash = hash;
+        entry.classes = new ArrayList<>(new TreeSet<>(classes));
+        Set<String> externalDependencies = new TreeSet<>(dependencies);
+        externalDependencies.removeAll(classes);
+        entry.dependencies = new ArrayList<>(externalDependencies);
+        data.sources.put(source, entry);
+    }
+
+    void remove(String source) {
+        data.sources.remove(source);
+    }
+
+    void save() throws IOException {
+        Files.createDirectories(stateFile.getParent());
+        try (Writer writer = Files.newBufferedWriter(stateFile, StandardCharsets.UTF_8)) {
+            gson.toJson(data, writer);
+        }
+    }
+
+    private static String read(Map<String, String> cache, Map.Entry<String, Path> source)
+            throws IOException {
+        String text = cache.get(source.getKey());
+        if (text == null) {
+            text = new String(Files.readAllBytes(source.getValue()), StandardCharsets.UTF_8);
+            cache.put(source.getKey(), text);
+        }
+        return text;
+    }
+
+    private static Pattern simpleNamePattern(Set<String> classes) {
+        Set<String> names = new TreeSet<>();
+        for (String className : classes) {
+            String simpleName = className.substring(className.lastIndexOf('.') + 1);
+            int nested = simpleName.indexOf('$');
+            if (nested > 0) {
+                simpleName = simpleName.substring(0, nested);
+            }
+            names.add(Pattern.quote(simpleName));
+        }
+        if (names.isEmpty()) {
+            return Pattern.compile("(?!)");
+        }
+        return Pattern.compile("\\b(" + Joiner.on('|').join(names) + ")\\b");
+    }
+
+    private static final class StateData {
+        int version = FORMAT_VERSION;
+        String configuration;
+        SortedMap<String, SourceEntry> sources = new TreeMap<>();
+    }
+
+    private static final class SourceEntry {
+        String hash;
+        List<String> classes;
+        List<String> dependencies;
+    }
+}
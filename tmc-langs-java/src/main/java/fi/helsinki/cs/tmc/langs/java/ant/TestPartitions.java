@@ -0,0 +1,146 @@
+package fi.helsinki.cs.tmc.langs.java.ant;
+
+import fi.helsinki.cs.tmc.langs.domain.ExerciseDesc;
+import fi.helsinki.cs.tmc.langs.domain.TestDesc;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits the tests of an exercise by test class, so that the classes can be run in parallel
+ * by separate test runners, and merges the result files of the runners back into one.
+ */
+final class TestPartitions {
+
+    private static final Logger log = LoggerFactory.getLogger(TestPartitions.class);
+
+    private static final Gson gson = new Gson();
+
+    private TestPartitions() {
+    }
+
+    /**
+     * Splits the tests into at most {@code count} partitions. The tests of a class always end
+     * up in the same partition, and the partitions are balanced by their number of tests. The
+     * tests of each partition keep their original order.
+     */
+    static List<ExerciseDesc> partition(ExerciseDesc exercise, int count) {
+        Map<String, List<TestDesc>> testsByClass = new LinkedHashMap<>();
+        for (TestDesc test : exercise.tests) {
+            String className = className(test);
+            if (!testsByClass.containsKey(className)) {
+                testsByClass.put(className, new ArrayList<TestDesc>());
+            }
+            testsByClass.get(className).add(test);
+        }
+
+        int partitionCount = Math.max(1, Math.min(count, testsByClass.size()));
+        if (partitionCount == 1) {
+            return Collections.singletonList(exercise);
+        }
+
+        List<Map.Entry<String, List<TestDesc>>> classes =
+                new ArrayList<>(testsByClass.entrySet());
+        Collections.sort(classes, new LargestClassFirst());
+        int[] sizes = new int[partitionCount];
+        Map<String, Integer> partitionOfClass = new HashMap<>();
+        for (Map.Entry<String, List<TestDesc>> testClass : classes) {
+            int smallest = 0;
+            for (int i = 1; i < partitionCount; i++) {
+                if (sizes[i] < sizes[smallest]) {
+                    smallest = i;
+                }
+            }
+            sizes[smallest] += testClass.getValue().size();
+            partitionOfClass.put(testClass.getKey(), smallest);
+        }
+
+        List<ImmutableList.Builder<TestDesc>> builders = new ArrayList<>();
+        for (int i = 0; i < partitionCount; i++) {
+            builders.add(ImmutableList.<TestDesc>builder());
+        }
+        for (TestDesc test : exercise.tests) {
+            builders.get(partitionOfClass.get(className(test))).add(test);
+        }
+        List<ExerciseDesc> partitions = new ArrayList<>();
+        for (ImmutableList.Builder<TestDesc> builder : builders) {
+            partitions.add(new ExerciseDesc(exercise.name, builder.build()));
+        }
+        return partitions;
+    }
+
+    /**
+     * Concatenates the test cases of the partition result files into the result file and
+     * deletes the partition files. If any partition has no result file, for example because
+     * its test runner was killed, no result file is written and false is returned.
+     */
+    static boolean merge(List<Path> partitionFiles, Path resultFile) throws IOException {
+        Files.deleteIfExists(resultFile);
+        try {
+            JsonArray merged = new JsonArray();
+            for (Path partitionFile : partitionFiles) {
+                if (!Files.exists(partitionFile)) {
+                    log.warn("Test runner left no results in {}", partitionFile);
+                    return false;
+                }
+                try (Reader reader =
+                        Files.newBufferedReader(partitionFile, StandardCharsets.UTF_8)) {
+                    JsonElement results = new JsonParser().parse(reader);
+                    if (!results.isJsonArray()) {
+                        log.warn("Unexpected test results in {}", partitionFile);
+                        return false;
+                    }
+                    merged.addAll(results.getAsJsonArray());
+                } catch (JsonParseException ex) {
+                    log.warn("Unable to parse test results in {}", partitionFile, ex);
+                    return false;
+                }
+            }
+            try (Writer writer = Files.newBufferedWriter(resultFile, StandardCharsets.UTF_8)) {
+                gson.toJson(merged, writer);
+            }
+            return true;
+        } finally {
+            for (Path partitionFile : partitionFiles) {
+                Files.deleteIfExists(partitionFile);
+            }
+        }
+    }
+
+    private static String className(TestDesc test) {
+        int separator = test.name.indexOf(' ');
+        return separator < 0 ? test.name : test.name.substring(0, separator);
+    }
+
+    private static final class LargestClassFirst
+            implements Comparator<Map.Entry<String, List<TestDesc>>> {
+
+        @Override
+        public int compare(
+                Map.Entry<String, List<TestDesc>> first,
+                Map.Entry<String, List<TestDesc>> second) {
+            return Integer.compare(second.getValue().size(), first.getValue().size());
+        }
+    }
+}
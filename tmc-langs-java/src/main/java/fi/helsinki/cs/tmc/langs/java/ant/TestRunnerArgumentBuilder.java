@@ -4,12 +4,23 @@ import fi.helsinki.cs.tmc.langs.domain.ExerciseDesc;
 import fi.helsinki.cs.tmc.langs.domain.TestDesc;
 import fi.helsinki.cs.tmc.langs.java.ClassPath;
 
+import com.google.common.base.Throwables;
+import com.google.common.hash.Hashing;
+
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 /**
  * Builds the argument list needed to run TMC TestRunner.
@@ -17,13 +28,26 @@ import java.util.List;
 public final class TestRunnerArgumentBuilder {
 
     private static final String JAVA_RUNTIME = "java";
-    private static final String TEST_DIRECTORY_PARAM_PREFIX = "-Dtmc.test_class_dir=";
-    private static final String RESULT_FILE_PARAM_PREFIX = "-Dtmc.results_file=";
+    private static final String SYSTEM_PROPERTY_PARAM_PREFIX = "-D";
+    private static final String TEST_DIRECTORY_PROPERTY = "tmc.test_class_dir";
+    private static final String RESULT_FILE_PROPERTY = "tmc.results_file";
     private static final String ENDORSED_LIBS_PARAM_PREFIX = "-Djava.endorsed.dirs=";
     private static final String CLASSPATH_PARAM_PREFIX = "-cp";
     private static final String RUNNER_MAIN_CLASS = "fi.helsinki.cs.tmc.testrunner.Main";
 
-    private List<String> arguments;
+    /**
+     * Class paths longer than this are passed in a manifest jar instead of the command line.
+     * Windows limits the whole command line to 32767 characters; Linux limits a single
+     * argument to 128 KiB.
+     */
+    private static final int MAX_CLASS_PATH_ARGUMENT_LENGTH =
+            File.separatorChar == '\\' ? 24 * 1024 : 120 * 1024;
+
+    private final Path projectBasePath;
+    private final List<String> jvmArguments;
+    private final Map<String, String> systemProperties = new LinkedHashMap<>();
+    private final ClassPath classPath;
+    private final List<String> testCaseArguments;
 
     /**
      * Create TestRunnerArguments with all the necessary information for creating an argument list.
@@ -35,32 +59,36 @@ public final class TestRunnerArgumentBuilder {
             Path resultFile,
             ClassPath classPath,
             ExerciseDesc exercise) {
-        arguments = new ArrayList<>();
-        arguments.add(JAVA_RUNTIME);
+        this.projectBasePath = projectBasePath;
+        this.jvmArguments = createJvmArgumentList(runtimeArguments, projectBasePath);
+        systemProperties.put(TEST_DIRECTORY_PROPERTY, testDirectory.toString());
+        systemProperties.put(RESULT_FILE_PROPERTY, resultFile.toString());
+        this.classPath = classPath;
+        this.testCaseArguments = createTestCaseArgumentList(exercise);
+    }
+
+    /**
+     * Returns the options the JVM running the tests has to be started with: the runtime
+     * arguments of the exercise and its endorsed libraries, if any.
+     */
+    public static List<String> createJvmArgumentList(
+            String runtimeArguments, Path projectBasePath) {
+        List<String> arguments = new ArrayList<>();
         if (runtimeArguments != null) {
             arguments.addAll(Arrays.asList(runtimeArguments.split(" +")));
         }
-        arguments.add(TEST_DIRECTORY_PARAM_PREFIX + testDirectory.toString());
-        arguments.add(RESULT_FILE_PARAM_PREFIX + resultFile.toString());
-
         if (endorsedLibsExists(projectBasePath)) {
             arguments.add(ENDORSED_LIBS_PARAM_PREFIX + createEndorsedLibsPath(projectBasePath));
         }
-
-        arguments.add(CLASSPATH_PARAM_PREFIX);
-        arguments.add(classPath.toString());
-        arguments.add(RUNNER_MAIN_CLASS);
-        for (String testCaseArgument : createTestCaseArgumentList(exercise)) {
-            arguments.add(testCaseArgument);
-        }
+        return arguments;
     }
 
-    private boolean endorsedLibsExists(Path path) {
+    private static boolean endorsedLibsExists(Path path) {
         File endorsedDir = createEndorsedLibsPath(path).toFile();
         return endorsedDir.exists() && endorsedDir.isDirectory();
     }
 
-    private Path createEndorsedLibsPath(Path projectBasePath) {
+    private static Path createEndorsedLibsPath(Path projectBasePath) {
         return Paths.get(projectBasePath.toString(), "lib", "endorsed");
     }
 
@@ -85,10 +113,74 @@ public final class TestRunnerArgumentBuilder {
         return testCases;
     }
 
+    public List<String> getJvmArguments() {
+        return Collections.unmodifiableList(jvmArguments);
+    }
+
+    /**
+     * Returns the system properties the test runner reads its configuration from.
+     */
+    public Map<String, String> getSystemProperties() {
+        return Collections.unmodifiableMap(systemProperties);
+    }
+
+    public ClassPath getClassPath() {
+        return classPath;
+    }
+
+    public String getMainClass() {
+        return RUNNER_MAIN_CLASS;
+    }
+
+    /**
+     * Returns the arguments of the test runner: the test cases to run and their points.
+     */
+    public List<String> getTestCaseArguments() {
+        return Collections.unmodifiableList(testCaseArguments);
+    }
+
     /**
      * Get the command with the arguments as a string array. This can be used to start the process.
      */
     public String[] getCommand() {
+        List<String> arguments = new ArrayList<>();
+        arguments.add(JAVA_RUNTIME);
+        arguments.addAll(jvmArguments);
+        for (Map.Entry<String, String> property : systemProperties.entrySet()) {
+            arguments.add(
+                    SYSTEM_PROPERTY_PARAM_PREFIX + property.getKey() + "=" + property.getValue());
+        }
+        arguments.add(CLASSPATH_PARAM_PREFIX);
+        arguments.add(createClassPathArgument());
+        arguments.add(RUNNER_MAIN_CLASS);
+        arguments.addAll(testCaseArguments);
         return arguments.toArray(new String[0]);
     }
+
+    /**
+     * Returns the class path, or a manifest jar pointing to it if the class path is too long
+     * for the command line. The jar is named by the hash of the class path, so runs with the
+     * same class path share it.
+     */
+    private String createClassPathArgument() {
+        String classPathString = classPath.toString();
+        if (classPathString.length() <= MAX_CLASS_PATH_ARGUMENT_LENGTH) {
+            return classPathString;
+        }
+        String hash =
+                Hashing.sha1().hashString(classPathString, StandardCharsets.UTF_8).toString();
+        Path jarFile =
+                projectBasePath.resolve(Paths.get("build", "tmc-classpath-" + hash + ".jar"));
+        try {
+            if (Files.notExists(jarFile)) {
+                Path tempFile =
+                        jarFile.resolveSibling(jarFile.getFileName() + "." + UUID.randomUUID());
+                classPath.writeManifestJar(tempFile);
+                Files.move(tempFile, jarFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        return jarFile.toString();
+    }
 }
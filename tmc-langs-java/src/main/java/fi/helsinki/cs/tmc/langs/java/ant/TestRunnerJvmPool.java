@@ -0,0 +1,605 @@
+package fi.helsinki.cs.tmc.langs.java.ant;
+
+import fi.helsinki.cs.tmc.langs.java.ClassPath;
+import fi.helsinki.cs.tmc.langs.utils.BoundedOutputBuffer;
+import fi.helsinki.cs.tmc.langs.utils.OutputLimits;
+import fi.helsinki.cs.tmc.langs.utils.ProcessResult;
+import fi.helsinki.cs.tmc.langs.utils.ProcessRunner;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A pool of pre-started JVMs for running the TMC test runner.
+ *
+ * <p>Starting a JVM and loading JUnit is a large part of running the tests of a small
+ * exercise. The JVMs of the pool run {@link TestRunnerJvmServer}, which runs the test runner
+ * in a fresh class loader for every run, so a run can't see the classes or static state of
+ * the previous runs. The JUnit and Hamcrest jars of the class path are copied to a directory
+ * of the pool and loaded into a parent class loader that the JVM keeps between runs, so runs
+ * with the same jars find them loaded. The test runner itself is loaded for each run, like
+ * the exercise, so that the classes it loads by name include the exercise's.
+ *
+ * <p>A JVM can only serve runs with the JVM options it was started with, so the JVMs are keyed
+ * by them, and any exercise can be run in any of them. A run sets {@code user.dir} to its
+ * exercise directory, but the JVM's working directory stays the one it was started in, so
+ * tests that open files by relative paths should not be run in pooled JVMs.
+ * {@link #prestart(List, ClassPath)} starts a JVM and loads the libraries ahead of the run,
+ * for example while the exercise is being compiled. A JVM is replaced after
+ * {@code maxRunsPerWorker} runs or as soon as a run leaves something behind in it.
+ *
+ * <p>The output of a run is streamed from the JVM and kept within the output limits of the
+ * run, like {@link ProcessRunner} does. If the JVM fails before it gets the run, the caller
+ * is told to start a JVM of its own. If it fails during the run, the failure is reported as
+ * the result of the run, since the tests may have run already.
+ *
+ * <p>The JVMs need a security manager to trap the exits of the tests, which JDK 18 and later
+ * only allow with {@code -Djava.security.manager=allow}. JDK 12 and later accept the option,
+ * so it's passed when the release file of the java runtime says it's one of those. When a JVM
+ * still reports that it couldn't install a security manager, the pool starts its JVMs with
+ * the option from then on, and if even that doesn't help, the pool disables itself and every
+ * run falls back to a JVM of its own.
+ *
+ * <p>The JVMs exit when the pipe to their stdin closes, which also happens when this JVM
+ * exits.
+ */
+final class TestRunnerJvmPool {
+
+    /**
+     * Set to true to run the tests of Ant exercises in pooled JVMs. The tests then run with a
+     * working directory other than the exercise directory, see the class documentation.
+     */
+    static final String ENABLED_PROPERTY = "tmc.ant.warmrunner";
+
+    /**
+     * The number of runs after which a pooled JVM is replaced with a fresh one.
+     */
+    static final String MAX_RUNS_PROPERTY = "tmc.ant.warmrunner.maxruns";
+
+    private static final Logger log = LoggerFactory.getLogger(TestRunnerJvmPool.class);
+
+    private static final String JAVA_RUNTIME = "java";
+    private static final String ALLOW_SECURITY_MANAGER = "-Djava.security.manager=allow";
+    private static final Pattern RELEASE_VERSION =
+            Pattern.compile("JAVA_VERSION=\"(\\d+)(?:\\.(\\d+))?.*\"");
+    private static final int DEFAULT_MAX_RUNS = 20;
+    private static final int MAX_IDLE_WORKERS = 4;
+    private static final int STATUS_JVM_FAILED = 1;
+    private static final Pattern SHARED_LIBRARY =
+            Pattern.compile("(junit|hamcrest).*\\.jar", Pattern.CASE_INSENSITIVE);
+
+    private static TestRunnerJvmPool defaultPool;
+
+    private final int maxRunsPerWorker;
+    private final int maxIdleWorkers;
+    private final Deque<Worker> idleWorkers = new ArrayDeque<>();
+    private int startedWorkers;
+    private Boolean allowSecurityManager;
+    private boolean exitTrapUnavailable;
+    private Path sharedLibraryDir;
+
+    TestRunnerJvmPool(int maxRunsPerWorker, int maxIdleWorkers) {
+        Preconditions.checkArgument(maxRunsPerWorker > 0, "maxRunsPerWorker must be positive");
+        Preconditions.checkArgument(maxIdleWorkers > 0, "maxIdleWorkers must be positive");
+        this.maxRunsPerWorker = maxRunsPerWorker;
+        this.maxIdleWorkers = maxIdleWorkers;
+    }
+
+    /**
+     * Returns whether the pool is enabled. A run in a pooled JVM can't be timed out, so the
+     * pool is never used when processes have a timeout.
+     */
+    static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY)
+                && ProcessRunner.getDefaultTimeoutMillis() == 0;
+    }
+
+    /**
+     * Returns the pool shared by all Ant exercises.
+     */
+    static synchronized TestRunnerJvmPool getDefault() {
+        if (defaultPool == null) {
+            int maxRuns = Integer.getInteger(MAX_RUNS_PROPERTY, DEFAULT_MAX_RUNS);
+            defaultPool = new TestRunnerJvmPool(Math.max(1, maxRuns), MAX_IDLE_WORKERS);
+        }
+        return defaultPool;
+    }
+
+    /**
+     * Starts a JVM for running tests with the options and has it load the shared libraries of
+     * the class path, unless an idle one with them already exists. Failures are only logged,
+     * as the run will start a JVM again if needed.
+     */
+    void prestart(List<String> jvmArguments, ClassPath classPath) {
+        if (isExitTrapUnavailable()) {
+            return;
+        }
+        String key = key(jvmArguments);
+        try {
+            SharedLibraries shared = sharedLibraries(classPath);
+            synchronized (idleWorkers) {
+                for (Worker worker : idleWorkers) {
+                    if (worker.key.equals(key) && shared.key.equals(worker.sharedKey)) {
+                        return;
+                    }
+                }
+            }
+            Worker worker = startWorker(key, jvmArguments);
+            worker.preload(shared);
+            release(worker);
+        } catch (IOException ex) {
+            log.warn("Unable to start test runner JVM", ex);
+        }
+    }
+
+    /**
+     * Runs the main class in a pooled JVM as if it had been started with
+     * {@code java <jvmArguments> -D<systemProperties> -cp <classPath> <mainClass> <arguments>}
+     * in the directory, keeping its output within the limits. Returns absent if the run
+     * couldn't be handed to a pooled JVM, in which case the caller should start a JVM of its
+     * own. A JVM that fails during the run gives a failed result instead, so the tests are
+     * not run twice.
+     */
+    Optional<ProcessResult> run(
+            Path workDir,
+            List<String> jvmArguments,
+            Map<String, String> systemProperties,
+            ClassPath classPath,
+            String mainClass,
+            List<String> arguments,
+            OutputLimits outputLimits) {
+        if (isExitTrapUnavailable()) {
+            return Optional.absent();
+        }
+        String key = key(jvmArguments);
+        Worker worker = null;
+        try {
+            SharedLibraries shared = sharedLibraries(classPath);
+            worker = take(key, shared.key);
+            if (worker == null) {
+                worker = startWorker(key, jvmArguments);
+            }
+            Map<String, String> properties = new LinkedHashMap<>(systemProperties);
+            properties.put("user.dir", workDir.toAbsolutePath().normalize().toString());
+            worker.send(
+                    new TestRunnerJvmServer.Request(
+                            shared.key,
+                            shared.urls,
+                            mainClass,
+                            toUrls(workDir, shared.excludeFrom(classPath)),
+                            properties,
+                            arguments.toArray(new String[0])));
+        } catch (ExitTrapUnavailableException ex) {
+            worker.destroy();
+            exitTrapUnavailable(worker);
+            return Optional.absent();
+        } catch (IOException ex) {
+            log.warn("Unable to run tests of {} in a pooled JVM", workDir, ex);
+            if (worker != null) {
+                worker.destroy();
+            }
+            return Optional.absent();
+        }
+
+        BoundedOutputBuffer stdout = new BoundedOutputBuffer(outputLimits);
+        BoundedOutputBuffer stderr = new BoundedOutputBuffer(outputLimits);
+        try {
+            TestRunnerJvmServer.Response response = worker.receive(stdout, stderr);
+            if (response.reusable && worker.runs < maxRunsPerWorker) {
+                release(worker);
+            } else {
+                log.info("Replacing test runner JVM after {} runs", worker.runs);
+                worker.destroy();
+                prestart(jvmArguments, classPath);
+            }
+            return Optional.of(result(response.status, stdout, stderr, ""));
+        } catch (IOException ex) {
+            log.warn("Test runner JVM failed while running tests of {}", workDir, ex);
+            worker.destroy();
+            return Optional.of(
+                    result(
+                            STATUS_JVM_FAILED,
+                            stdout,
+                            stderr,
+                            "\nThe test runner JVM failed: " + ex + "\n"));
+        }
+    }
+
+    private static ProcessResult result(
+            int status,
+            BoundedOutputBuffer stdout,
+            BoundedOutputBuffer stderr,
+            String failure) {
+        return new ProcessResult(
+                status,
+                stdout.toString(),
+                stderr.toString() + failure,
+                false,
+                stdout.getTruncatedBytes(),
+                stderr.getTruncatedBytes());
+    }
+
+    /**
+     * Stops all idle JVMs.
+     */
+    void shutdown() {
+        synchronized (idleWorkers) {
+            for (Worker worker : idleWorkers) {
+                worker.destroy();
+            }
+            idleWorkers.clear();
+        }
+    }
+
+    synchronized int getStartedWorkers() {
+        return startedWorkers;
+    }
+
+    private synchronized boolean isExitTrapUnavailable() {
+        return exitTrapUnavailable;
+    }
+
+    /**
+     * Called when the worker couldn't install a security manager. Workers are started so that
+     * they are allowed to install one, and if that was already the case, the pool is disabled.
+     */
+    private void exitTrapUnavailable(Worker worker) {
+        synchronized (this) {
+            if (!worker.allowSecurityManager) {
+                log.info("Starting test runner JVMs with {}", ALLOW_SECURITY_MANAGER);
+                allowSecurityManager = true;
+            } else {
+                log.warn("Test runner JVMs can't trap exits, not using pooled JVMs");
+                exitTrapUnavailable = true;
+            }
+        }
+        // The idle workers were started without the option or are just as unusable.
+        shutdown();
+    }
+
+    /**
+     * Takes an idle JVM with the options, preferring one that has the shared libraries loaded.
+     */
+    private Worker take(String key, String sharedKey) {
+        synchronized (idleWorkers) {
+            Worker found = null;
+            for (Worker worker : idleWorkers) {
+                if (worker.key.equals(key)
+                        && (found == null || sharedKey.equals(worker.sharedKey))) {
+                    found = worker;
+                }
+            }
+            idleWorkers.remove(found);
+            return found;
+        }
+    }
+
+    private void release(Worker worker) {
+        synchronized (idleWorkers) {
+            idleWorkers.addFirst(worker);
+            while (idleWorkers.size() > maxIdleWorkers) {
+                idleWorkers.removeLast().destroy();
+            }
+        }
+    }
+
+    private Worker startWorker(String key, List<String> jvmArguments) throws IOException {
+        boolean allow;
+        synchronized (this) {
+            if (allowSecurityManager == null) {
+                allowSecurityManager = acceptsAllowSecurityManager();
+            }
+            allow = allowSecurityManager;
+        }
+        List<String> command = new ArrayList<>();
+        command.add(JAVA_RUNTIME);
+        if (allow) {
+            command.add(ALLOW_SECURITY_MANAGER);
+        }
+        command.addAll(jvmArguments);
+        command.add("-cp");
+        command.add(serverClassPath().toString());
+        command.add(TestRunnerJvmServer.class.getName());
+
+        log.info("Starting test runner JVM");
+        Process process = new ProcessBuilder(command).start();
+        synchronized (this) {
+            startedWorkers++;
+        }
+        return new Worker(key, process, allow);
+    }
+
+    /**
+     * Returns whether the java runtime is JDK 12 or later, judging by the release file of the
+     * installation the java on the PATH belongs to. Older runtimes would take the value of
+     * {@code java.security.manager} as the class name of a security manager and fail to start.
+     */
+    private static boolean acceptsAllowSecurityManager() {
+        Optional<Integer> version = findRuntimeVersion();
+        log.debug("Java runtime version of test runner JVMs: {}", version);
+        return version.isPresent() && version.get() >= 12;
+    }
+
+    static Optional<Integer> findRuntimeVersion() {
+        String path = System.getenv("PATH");
+        if (path == null) {
+            return Optional.absent();
+        }
+        for (String dir : path.split(File.pathSeparator)) {
+            for (String name : Arrays.asList(JAVA_RUNTIME, JAVA_RUNTIME + ".exe")) {
+                Path java = Paths.get(dir, name);
+                if (Files.isExecutable(java)) {
+                    return readReleaseVersion(java);
+                }
+            }
+        }
+        return Optional.absent();
+    }
+
+    /**
+     * Reads the major version from the release file of the installation of the java
+     * executable, which is in the parent of its bin directory or, for a JRE inside a JDK 8,
+     * one directory further up.
+     */
+    private static Optional<Integer> readReleaseVersion(Path java) {
+        try {
+            Path dir = java.toRealPath().getParent();
+            for (int i = 0; i < 3 && dir != null; i++, dir = dir.getParent()) {
+                Path release = dir.resolve("release");
+                if (!Files.isRegularFile(release)) {
+                    continue;
+                }
+                for (String line : Files.readAllLines(release, StandardCharsets.UTF_8)) {
+                    Matcher matcher = RELEASE_VERSION.matcher(line);
+                    if (matcher.matches()) {
+                        int major = Integer.parseInt(matcher.group(1));
+                        if (major == 1 && matcher.group(2) != null) {
+                            major = Integer.parseInt(matcher.group(2));
+                        }
+                        return Optional.of(major);
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            log.debug("Unable to read the version of {}", java, ex);
+        }
+        return Optional.absent();
+    }
+
+    private static Path serverClassPath() throws IOException {
+        try {
+            URL location =
+                    TestRunnerJvmServer.class.getProtectionDomain().getCodeSource().getLocation();
+            return Paths.get(location.toURI());
+        } catch (URISyntaxException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    private static URL[] toUrls(Path workDir, ClassPath classPath) throws IOException {
+        Path base = workDir.toAbsolutePath();
+        List<URL> urls = new ArrayList<>();
+        for (Path path : classPath.getPaths()) {
+            urls.add(base.resolve(path).normalize().toUri().toURL());
+        }
+        return urls.toArray(new URL[0]);
+    }
+
+    private static String key(List<String> jvmArguments) {
+        return Joiner.on('\0').join(jvmArguments);
+    }
+
+    /**
+     * Copies the JUnit and Hamcrest jars of the class path to the directory of the pool,
+     * named by their hashes, so that the JVMs keep loading them from there after the exercise
+     * is gone.
+     */
+    private SharedLibraries sharedLibraries(ClassPath classPath) throws IOException {
+        List<Path> jars = new ArrayList<>();
+        List<URL> urls = new ArrayList<>();
+        Hasher key = Hashing.sha1().newHasher();
+        for (Path path : classPath.getPaths()) {
+            if (!SHARED_LIBRARY.matcher(String.valueOf(path.getFileName())).matches()
+                    || !Files.isRegularFile(path)) {
+                continue;
+            }
+            String hash = Hashing.sha1().hashBytes(Files.readAllBytes(path)).toString();
+            Path copy = sharedLibraryDir().resolve(hash + ".jar");
+            if (Files.notExists(copy)) {
+                Path temp = Files.createTempFile(sharedLibraryDir(), hash, ".tmp");
+                Files.copy(path, temp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temp, copy, StandardCopyOption.REPLACE_EXISTING);
+                copy.toFile().deleteOnExit();
+            }
+            jars.add(path);
+            urls.add(copy.toUri().toURL());
+            key.putString(hash, StandardCharsets.UTF_8);
+        }
+        return new SharedLibraries(key.hash().toString(), jars, urls.toArray(new URL[0]));
+    }
+
+    private synchronized Path sharedLibraryDir() throws IOException {
+        if (sharedLibraryDir == null) {
+            sharedLibraryDir = Files.createTempDirectory("tmc-test-runner-libraries");
+            sharedLibraryDir.toFile().deleteOnExit();
+        }
+        return sharedLibraryDir;
+    }
+
+    /**
+     * The libraries loaded into the parent class loader of the runs.
+     */
+    private static final class SharedLibraries {
+
+        final String key;
+        final List<Path> jars;
+        final URL[] urls;
+
+        SharedLibraries(String key, List<Path> jars, URL[] urls) {
+            this.key = key;
+            this.jars = jars;
+            this.urls = urls;
+        }
+
+        ClassPath excludeFrom(ClassPath classPath) {
+            ClassPath rest = new ClassPath();
+            for (Path path : classPath.getPaths()) {
+                if (!jars.contains(path)) {
+                    rest.add(path);
+                }
+            }
+            return rest;
+        }
+    }
+
+    /**
+     * A pooled JVM. The handshake is only read before the first run, so that starting a JVM
+     * doesn't wait for it to boot.
+     */
+    private static final class Worker {
+
+        private final String key;
+        private final Process process;
+        private final boolean allowSecurityManager;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private boolean ready;
+        private int pendingPreloads;
+        private String sharedKey;
+        private int runs;
+
+        Worker(String key, Process process, boolean allowSecurityManager) {
+            this.key = key;
+            this.process = process;
+            this.allowSecurityManager = allowSecurityManager;
+            this.in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            logErrorOutput(process);
+        }
+
+        /**
+         * Asks the JVM to load the shared libraries, without waiting for it to boot.
+         */
+        void preload(SharedLibraries shared) throws IOException {
+            TestRunnerJvmServer.Request.preload(shared.key, shared.urls).write(out);
+            out.flush();
+            pendingPreloads++;
+            sharedKey = shared.key;
+        }
+
+        /**
+         * Waits for the JVM to be ready and sends it the run.
+         */
+        void send(TestRunnerJvmServer.Request request) throws IOException {
+            if (!ready) {
+                if (in.readInt() != TestRunnerJvmServer.READY
+                        || in.readInt() != TestRunnerJvmServer.PROTOCOL_VERSION) {
+                    throw new IOException("Unexpected handshake from test runner JVM");
+                }
+                if (!in.readBoolean()) {
+                    throw new ExitTrapUnavailableException();
+                }
+                ready = true;
+            }
+            for (; pendingPreloads > 0; pendingPreloads--) {
+                receive(null, null);
+            }
+            runs++;
+            sharedKey = request.sharedKey;
+            request.write(out);
+            out.flush();
+        }
+
+        /**
+         * Reads the output of the run into the buffers until the run ends.
+         */
+        TestRunnerJvmServer.Response receive(
+                BoundedOutputBuffer stdout, BoundedOutputBuffer stderr) throws IOException {
+            while (true) {
+                int frame = in.readUnsignedByte();
+                if (frame == TestRunnerJvmServer.DONE_FRAME) {
+                    return TestRunnerJvmServer.Response.read(in);
+                }
+                if (frame != TestRunnerJvmServer.STDOUT_FRAME
+                        && frame != TestRunnerJvmServer.STDERR_FRAME) {
+                    throw new IOException("Unexpected frame " + frame + " from test runner JVM");
+                }
+                byte[] bytes = TestRunnerJvmServer.readBytes(in);
+                BoundedOutputBuffer buffer =
+                        frame == TestRunnerJvmServer.STDOUT_FRAME ? stdout : stderr;
+                if (buffer != null) {
+                    buffer.write(bytes, 0, bytes.length);
+                }
+            }
+        }
+
+        void destroy() {
+            process.destroy();
+        }
+
+        private static void logErrorOutput(Process process) {
+            final BufferedReader reader =
+                    new BufferedReader(
+                            new InputStreamReader(
+                                    process.getErrorStream(), StandardCharsets.UTF_8));
+            Runnable logger =
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                String line;
+                                while ((line = reader.readLine()) != null) {
+                                    log.debug("Test runner JVM: {}", line);
+                                }
+                            } catch (IOException ex) {
+                                log.debug("Test runner JVM error output closed", ex);
+                            }
+                        }
+                    };
+            Thread thread = new Thread(logger, "tmc-test-runner-jvm-stderr");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Thrown when a JVM couldn't install the security manager that traps exits.
+     */
+    private static final class ExitTrapUnavailableException extends IOException {
+
+        ExitTrapUnavailableException() {
+            super("Test runner JVM can't install a security manager");
+        }
+    }
+}
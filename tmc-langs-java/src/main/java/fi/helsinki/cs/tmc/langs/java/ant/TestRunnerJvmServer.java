@@ -0,0 +1,527 @@
+package fi.helsinki.cs.tmc.langs.java.ant;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.security.Permission;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Main class of a warm test runner JVM started by {@link TestRunnerJvmPool}.
+ *
+ * <p>Reads run requests from stdin and runs the requested main class in a fresh class loader
+ * and thread group, as if it had been started in a JVM of its own in the requested directory.
+ * The output of the run is sent back over stdout as it is written, followed by the exit
+ * status. Calls to {@link System#exit(int)} are trapped and end the run instead of the JVM.
+ *
+ * <p>The shared libraries of a request, such as JUnit, are loaded into a class loader that is
+ * the parent of the class loaders of the runs and is kept for as long as the requests name
+ * the same libraries. Its classes are loaded as soon as it's created, which a request that
+ * only preloads the libraries can do before the first run.
+ *
+ * <p>Trapping the exits needs a security manager. On JDK 18 and later one can only be
+ * installed if the JVM was started with {@code -Djava.security.manager=allow}, and where none
+ * can be installed the JVM says so in its handshake and exits without serving any runs.
+ *
+ * <p>After each run the JVM checks that the run left nothing behind: no live threads, no
+ * changes to the default locale or time zone and the exit trap still in place. If anything
+ * is off, the JVM tells the pool it can't be reused and exits.
+ *
+ * <p>Only uses JDK classes, so that it can run with nothing but its own jar on the class path.
+ */
+final class TestRunnerJvmServer {
+
+    static final int READY = 0x544d4352;
+    static final int PROTOCOL_VERSION = 4;
+
+    /**
+     * The frames the JVM answers a request with: any number of output frames, each with a
+     * chunk of output, and a done frame with the {@link Response}.
+     */
+    static final int DONE_FRAME = 0;
+    static final int STDOUT_FRAME = 1;
+    static final int STDERR_FRAME = 2;
+
+    private static final long THREAD_JOIN_MILLIS = 100;
+    private static final int STATUS_UNCAUGHT_EXCEPTION = 1;
+
+    private static final PrintStream serverErr = System.err;
+    private static final ExitTrap exitTrap = new ExitTrap();
+    private static volatile RunState currentRun;
+    private static String sharedKey;
+    private static URLClassLoader sharedLoader;
+
+    private TestRunnerJvmServer() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        DataInputStream in =
+                new DataInputStream(
+                        new BufferedInputStream(new FileInputStream(FileDescriptor.in)));
+        final DataOutputStream out =
+                new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        System.setOut(serverErr);
+        System.setIn(new ByteArrayInputStream(new byte[0]));
+        boolean exitTrapped = installExitTrap();
+
+        out.writeInt(READY);
+        out.writeInt(PROTOCOL_VERSION);
+        out.writeBoolean(exitTrapped);
+        out.flush();
+        if (!exitTrapped) {
+            return;
+        }
+
+        while (true) {
+            Request request;
+            try {
+                request = Request.read(in);
+            } catch (EOFException ex) {
+                break;
+            }
+            ClassLoader shared = loadSharedLibraries(request);
+            Response response;
+            if (request.mainClass.isEmpty()) {
+                response = new Response(0, true);
+            } else {
+                response = run(request, shared, out);
+            }
+            synchronized (out) {
+                out.writeByte(DONE_FRAME);
+                response.write(out);
+                out.flush();
+            }
+            if (!response.reusable) {
+                break;
+            }
+        }
+        exitTrap.allowExit();
+        System.exit(0);
+    }
+
+    private static boolean installExitTrap() {
+        try {
+            System.setSecurityManager(exitTrap);
+            return true;
+        } catch (UnsupportedOperationException | SecurityException ex) {
+            serverErr.println("Unable to install a security manager: " + ex);
+            return false;
+        }
+    }
+
+    /**
+     * Returns the class loader of the shared libraries of the request, replacing the previous
+     * one if the request names other libraries.
+     */
+    private static ClassLoader loadSharedLibraries(Request request) throws IOException {
+        if (request.sharedKey.equals(sharedKey)) {
+            return sharedLoader;
+        }
+        if (sharedLoader != null) {
+            sharedLoader.close();
+        }
+        sharedLoader =
+                new URLClassLoader(
+                        request.sharedClassPath, ClassLoader.getSystemClassLoader().getParent());
+        sharedKey = request.sharedKey;
+        for (URL url : request.sharedClassPath) {
+            preload(sharedLoader, url);
+        }
+        return sharedLoader;
+    }
+
+    /**
+     * Loads every class of the jar, without initializing them. Classes that can't be loaded,
+     * for example because they need an optional library, are skipped.
+     */
+    private static void preload(ClassLoader loader, URL jar) throws IOException {
+        File file;
+        try {
+            file = new File(jar.toURI());
+        } catch (URISyntaxException | IllegalArgumentException ex) {
+            return;
+        }
+        if (!file.isFile()) {
+            return;
+        }
+        try (JarFile jarFile = new JarFile(file)) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (!name.endsWith(".class") || name.startsWith("META-INF/")
+                        || name.endsWith("module-info.class")) {
+                    continue;
+                }
+                String className =
+                        name.substring(0, name.length() - ".class".length()).replace('/', '.');
+                try {
+                    Class.forName(className, false, loader);
+                } catch (ClassNotFoundException | LinkageError ex) {
+                    // Not needed unless the tests use it.
+                }
+            }
+        }
+    }
+
+    private static Response run(Request request, ClassLoader shared, DataOutputStream out)
+            throws IOException {
+        final Properties savedProperties = (Properties) System.getProperties().clone();
+        final Locale savedLocale = Locale.getDefault();
+        final TimeZone savedTimeZone = TimeZone.getDefault();
+
+        FrameOutputStream stdout = new FrameOutputStream(out, STDOUT_FRAME);
+        FrameOutputStream stderr = new FrameOutputStream(out, STDERR_FRAME);
+        System.setOut(new PrintStream(stdout, true));
+        System.setErr(new PrintStream(stderr, true));
+        for (Map.Entry<String, String> property : request.systemProperties.entrySet()) {
+            System.setProperty(property.getKey(), property.getValue());
+        }
+
+        URLClassLoader loader = new URLClassLoader(request.classPath, shared);
+        ThreadGroup group = new ThreadGroup("tmc-test-run");
+        RunState run = new RunState(request.mainClass, request.arguments);
+        currentRun = run;
+        Thread mainThread = new Thread(group, run, "main");
+        mainThread.setContextClassLoader(loader);
+        run.mainThread = mainThread;
+        mainThread.start();
+
+        try {
+            run.awaitDone();
+            waitForNonDaemonThreads(group, run);
+            mainThread.join(THREAD_JOIN_MILLIS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        currentRun = null;
+
+        System.out.flush();
+        System.err.flush();
+        System.setOut(serverErr);
+        System.setErr(serverErr);
+        // Threads left behind must not write between the frames of the next response.
+        stdout.close();
+        stderr.close();
+        System.setProperties(savedProperties);
+        loader.close();
+
+        boolean reusable =
+                group.activeCount() == 0
+                        && (run.exitThread == null || run.exitThread == mainThread)
+                        && System.getSecurityManager() == exitTrap
+                        && savedLocale.equals(Locale.getDefault())
+                        && savedTimeZone.equals(TimeZone.getDefault());
+        int status = run.exitStatus != null ? run.exitStatus : run.mainStatus;
+        return new Response(status, reusable);
+    }
+
+    /**
+     * Waits for the threads a JVM would wait for before exiting on its own.
+     */
+    private static void waitForNonDaemonThreads(ThreadGroup group, RunState run)
+            throws InterruptedException {
+        while (run.exitStatus == null) {
+            Thread[] threads = new Thread[group.activeCount() + 1];
+            int count = group.enumerate(threads);
+            Thread nonDaemon = null;
+            for (int i = 0; i < count && nonDaemon == null; i++) {
+                if (!threads[i].isDaemon() && threads[i] != run.mainThread) {
+                    nonDaemon = threads[i];
+                }
+            }
+            if (nonDaemon == null) {
+                return;
+            }
+            nonDaemon.join(THREAD_JOIN_MILLIS);
+        }
+    }
+
+    private static final class RunState implements Runnable {
+
+        private final String mainClass;
+        private final String[] arguments;
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private volatile Thread mainThread;
+        private volatile int mainStatus;
+        private volatile Integer exitStatus;
+        private volatile Thread exitThread;
+
+        RunState(String mainClass, String[] arguments) {
+            this.mainClass = mainClass;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Class<?> main =
+                        Class.forName(
+                                mainClass, true, Thread.currentThread().getContextClassLoader());
+                Method mainMethod = main.getMethod("main", String[].class);
+                mainMethod.invoke(null, (Object) arguments);
+            } catch (InvocationTargetException ex) {
+                if (!(ex.getCause() instanceof ExitTrappedException)) {
+                    System.err.print("Exception in thread \"main\" ");
+                    ex.getCause().printStackTrace();
+                    mainStatus = STATUS_UNCAUGHT_EXCEPTION;
+                }
+            } catch (ReflectiveOperationException | LinkageError ex) {
+                System.err.println("Error: Could not find or load main class " + mainClass);
+                ex.printStackTrace();
+                mainStatus = STATUS_UNCAUGHT_EXCEPTION;
+            } finally {
+                done.countDown();
+            }
+        }
+
+        synchronized void exit(int status) {
+            if (exitStatus == null) {
+                exitStatus = status;
+                exitThread = Thread.currentThread();
+            }
+            done.countDown();
+        }
+
+        void awaitDone() throws InterruptedException {
+            done.await();
+        }
+    }
+
+    /**
+     * Lets everything through except exits, which end the current run instead.
+     */
+    private static final class ExitTrap extends SecurityManager {
+
+        private volatile boolean exitAllowed;
+
+        void allowExit() {
+            exitAllowed = true;
+        }
+
+        @Override
+        public void checkPermission(Permission perm) {
+        }
+
+        @Override
+        public void checkPermission(Permission perm, Object context) {
+        }
+
+        @Override
+        public void checkExit(int status) {
+            if (exitAllowed) {
+                return;
+            }
+            RunState run = currentRun;
+            if (run != null) {
+                run.exit(status);
+            }
+            throw new ExitTrappedException(status);
+        }
+    }
+
+    private static final class ExitTrappedException extends SecurityException {
+
+        ExitTrappedException(int status) {
+            super("System.exit(" + status + ") ended the test run");
+        }
+    }
+
+    /**
+     * Sends what a run writes to one of its output streams to the pool, each write in a frame
+     * of its own. Nothing is sent after the stream is closed.
+     */
+    private static final class FrameOutputStream extends OutputStream {
+
+        private final DataOutputStream out;
+        private final int frame;
+        private boolean closed;
+
+        FrameOutputStream(DataOutputStream out, int frame) {
+            this.out = out;
+            this.frame = frame;
+        }
+
+        @Override
+        public void write(int value) throws IOException {
+            write(new byte[] {(byte) value}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            synchronized (out) {
+                if (closed || length == 0) {
+                    return;
+                }
+                out.writeByte(frame);
+                out.writeInt(length);
+                out.write(bytes, offset, length);
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (out) {
+                closed = true;
+            }
+        }
+    }
+
+    /**
+     * A request to run a main class, or only to load the shared libraries if the main class
+     * is empty. The shared libraries are identified by their key, so that the JVM can tell
+     * whether it already has them loaded.
+     */
+    static final class Request {
+
+        final String sharedKey;
+        final URL[] sharedClassPath;
+        final String mainClass;
+        final URL[] classPath;
+        final Map<String, String> systemProperties;
+        final String[] arguments;
+
+        Request(
+                String sharedKey,
+                URL[] sharedClassPath,
+                String mainClass,
+                URL[] classPath,
+                Map<String, String> systemProperties,
+                String[] arguments) {
+            this.sharedKey = sharedKey;
+            this.sharedClassPath = sharedClassPath;
+            this.mainClass = mainClass;
+            this.classPath = classPath;
+            this.systemProperties = systemProperties;
+            this.arguments = arguments;
+        }
+
+        static Request preload(String sharedKey, URL[] sharedClassPath) {
+            return new Request(
+                    sharedKey,
+                    sharedClassPath,
+                    "",
+                    new URL[0],
+                    new LinkedHashMap<String, String>(),
+                    new String[0]);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            writeString(out, sharedKey);
+            writeUrls(out, sharedClassPath);
+            writeString(out, mainClass);
+            writeUrls(out, classPath);
+            out.writeInt(systemProperties.size());
+            for (Map.Entry<String, String> property : systemProperties.entrySet()) {
+                writeString(out, property.getKey());
+                writeString(out, property.getValue());
+            }
+            out.writeInt(arguments.length);
+            for (String argument : arguments) {
+                writeString(out, argument);
+            }
+        }
+
+        static Request read(DataInputStream in) throws IOException {
+            final String sharedKey = readString(in);
+            final URL[] sharedClassPath = readUrls(in);
+            final String mainClass = readString(in);
+            final URL[] classPath = readUrls(in);
+            Map<String, String> systemProperties = new LinkedHashMap<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                systemProperties.put(readString(in), readString(in));
+            }
+            String[] arguments = new String[in.readInt()];
+            for (int i = 0; i < arguments.length; i++) {
+                arguments[i] = readString(in);
+            }
+            return new Request(
+                    sharedKey, sharedClassPath, mainClass, classPath, systemProperties, arguments);
+        }
+
+        private static void writeUrls(DataOutputStream out, URL[] urls) throws IOException {
+            out.writeInt(urls.length);
+            for (URL url : urls) {
+                writeString(out, url.toString());
+            }
+        }
+
+        private static URL[] readUrls(DataInputStream in) throws IOException {
+            List<URL> urls = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                urls.add(new URL(readString(in)));
+            }
+            return urls.toArray(new URL[0]);
+        }
+    }
+
+    /**
+     * The end of a run: its exit status and whether the JVM can serve another run.
+     */
+    static final class Response {
+
+        final int status;
+        final boolean reusable;
+
+        Response(int status, boolean reusable) {
+            this.status = status;
+            this.reusable = reusable;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(status);
+            out.writeBoolean(reusable);
+        }
+
+        static Response read(DataInputStream in) throws IOException {
+            int status = in.readInt();
+            return new Response(status, in.readBoolean());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] value = new byte[in.readInt()];
+        in.readFully(value);
+        return value;
+    }
+}
@@ -1,15 +1,22 @@
 package fi.helsinki.cs.tmc.langs.java.exception;
 
+import fi.helsinki.cs.tmc.langs.utils.ProcessResult;
+
+import com.google.common.base.Optional;
+
 /**
  * Thrown when a exception occurs when running the TestRunner.
  */
 public final class TestRunnerException extends Exception {
 
+    private final ProcessResult interruptedProcess;
+
     /**
      * Create a new TestRunnerException.
      */
     public TestRunnerException() {
         super();
+        this.interruptedProcess = null;
     }
 
     /**
@@ -17,5 +24,22 @@ public final class TestRunnerException extends Exception {
      */
     public TestRunnerException(Throwable throwable) {
         super(throwable);
+        this.interruptedProcess = null;
+    }
+
+    /**
+     * Create a new TestRunnerException for a TestRunner that was killed before it finished,
+     * keeping its output for the logs of the run.
+     */
+    public TestRunnerException(ProcessResult interruptedProcess) {
+        super("Test runner interrupted");
+        this.interruptedProcess = interruptedProcess;
+    }
+
+    /**
+     * Returns the result of the killed TestRunner process, if the runner was killed.
+     */
+    public Optional<ProcessResult> getInterruptedProcess() {
+        return Optional.fromNullable(interruptedProcess);
     }
 }
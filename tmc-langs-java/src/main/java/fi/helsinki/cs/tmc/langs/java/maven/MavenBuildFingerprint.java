@@ -0,0 +1,175 @@
+package fi.helsinki.cs.tmc.langs.java.maven;
+
+import com.google.common.hash.Hashing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Records the state of a Maven project's sources after a successful build, so the next build
+ * can decide whether the compiled classes in target can be reused.
+ *
+ * <p>Added sources are picked up by the compiler plugin's own staleness checks. Those checks
+ * compare modification times, which an extracted submission can set to before the existing
+ * output. So the contents of every source file are hashed, and sources whose contents have
+ * changed are touched to make them newer than their classes. A deleted source or a changed
+ * pom requires a clean build, since the classes or settings it left behind would be reused.
+ */
+final class MavenBuildFingerprint {
+
+    private static final Logger log = LoggerFactory.getLogger(MavenBuildFingerprint.class);
+
+    static final Path FINGERPRINT_FILE = Paths.get("target", "tmc-build-fingerprint.txt");
+
+    private static final Path POM_FILE = Paths.get("pom.xml");
+    private static final Path SOURCE_FOLDER = Paths.get("src");
+    private static final String POM_PREFIX = "pom ";
+
+    private final String pomHash;
+    private final SortedMap<String, String> sourceFiles;
+
+    private MavenBuildFingerprint(String pomHash, SortedMap<String, String> sourceFiles) {
+        this.pomHash = pomHash;
+        this.sourceFiles = sourceFiles;
+    }
+
+    /**
+     * Computes the fingerprint of the project's current sources.
+     */
+    static MavenBuildFingerprint compute(final Path projectRoot) throws IOException {
+        String pomHash = hash(projectRoot.resolve(POM_FILE));
+
+        final SortedMap<String, String> sourceFiles = new TreeMap<>();
+        Path sourceFolder = projectRoot.resolve(SOURCE_FOLDER);
+        if (Files.isDirectory(sourceFolder)) {
+            Files.walkFileTree(
+                    sourceFolder,
+                    new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+                                throws IOException {
+                            if (attrs.isRegularFile()) {
+                                sourceFiles.put(
+                                        projectRoot.relativize(file).toString(), hash(file));
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+        }
+        return new MavenBuildFingerprint(pomHash, sourceFiles);
+    }
+
+    private static String hash(Path file) throws IOException {
+        return Hashing.sha1().hashBytes(Files.readAllBytes(file)).toString();
+    }
+
+    /**
+     * Prepares the project to be built again without cleaning it, and returns whether that is
+     * possible. It is not if the project has not been built successfully before, or its pom
+     * has changed or any of its source files have been removed since the last build. Source
+     * files whose contents have changed since then are touched, so the compiler plugin
+     * recompiles them even if they are older than their classes.
+     */
+    static boolean prepareIncrementalBuild(Path projectRoot) {
+        Path fingerprintFile = projectRoot.resolve(FINGERPRINT_FILE);
+        if (!Files.exists(fingerprintFile)) {
+            return false;
+        }
+
+        try {
+            MavenBuildFingerprint previous = read(fingerprintFile);
+            MavenBuildFingerprint current = compute(projectRoot);
+            if (!previous.pomHash.equals(current.pomHash)) {
+                log.info("pom.xml of {} has changed since the last build", projectRoot);
+                return false;
+            }
+            List<Path> changedSources = new ArrayList<>();
+            for (Map.Entry<String, String> source : previous.sourceFiles.entrySet()) {
+                String currentHash = current.sourceFiles.get(source.getKey());
+                if (currentHash == null) {
+                    log.info(
+                            "{} of {} was removed since the last build",
+                            source.getKey(),
+                            projectRoot);
+                    return false;
+                }
+                if (!source.getValue().equals(currentHash)) {
+                    changedSources.add(projectRoot.resolve(source.getKey()));
+                }
+            }
+
+            FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+            for (Path source : changedSources) {
+                log.debug("{} was changed since the last build", source);
+                Files.setLastModifiedTime(source, now);
+            }
+            return true;
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Unable to compare build fingerprint of {}", projectRoot, ex);
+            return false;
+        }
+    }
+
+    /**
+     * Removes the recorded fingerprint, so the next build of the project will be clean.
+     */
+    static void invalidate(Path projectRoot) {
+        try {
+            Files.deleteIfExists(projectRoot.resolve(FINGERPRINT_FILE));
+        } catch (IOException ex) {
+            log.warn("Unable to delete build fingerprint of {}", projectRoot, ex);
+        }
+    }
+
+    /**
+     * Records the current state of the project's sources.
+     */
+    static void record(Path projectRoot) {
+        try {
+            MavenBuildFingerprint fingerprint = compute(projectRoot);
+            List<String> lines = new ArrayList<>();
+            lines.add(POM_PREFIX + fingerprint.pomHash);
+            for (Map.Entry<String, String> source : fingerprint.sourceFiles.entrySet()) {
+                lines.add(source.getValue() + " " + source.getKey());
+            }
+
+            Path fingerprintFile = projectRoot.resolve(FINGERPRINT_FILE);
+            Files.createDirectories(fingerprintFile.getParent());
+            Files.write(fingerprintFile, lines, StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            log.warn("Unable to record build fingerprint of {}", projectRoot, ex);
+        }
+    }
+
+    private static MavenBuildFingerprint read(Path fingerprintFile) throws IOException {
+        List<String> lines = Files.readAllLines(fingerprintFile, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).startsWith(POM_PREFIX)) {
+            throw new IOException("Malformed build fingerprint " + fingerprintFile);
+        }
+        String pomHash = lines.get(0).substring(POM_PREFIX.length());
+        SortedMap<String, String> sourceFiles = new TreeMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            int separator = line.indexOf(' ');
+            if (separator <= 0) {
+                throw new IOException("Malformed build fingerprint " + fingerprintFile);
+            }
+            sourceFiles.put(line.substring(separator + 1), line.substring(0, separator));
+        }
+        return new MavenBuildFingerprint(pomHash, sourceFiles);
+    }
+}
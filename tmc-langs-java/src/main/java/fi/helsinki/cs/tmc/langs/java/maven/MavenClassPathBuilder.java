@@ -2,6 +2,8 @@ package fi.helsinki.cs.tmc.langs.java.maven;
 
 import fi.helsinki.cs.tmc.langs.java.ClassPath;
 
+import com.google.common.base.Optional;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,6 +17,9 @@ import java.util.Scanner;
 /**
  * Creates a complete ClassPath for a Maven project by calling the
  * dependency:build-classpath goal.
+ *
+ * <p>Resolved class paths are cached in a {@link MavenClassPathCache}, so the goal only needs
+ * to be run again when the project's poms or its dependencies change.
  */
 public final class MavenClassPathBuilder {
 
@@ -28,7 +33,19 @@ public final class MavenClassPathBuilder {
      * Create a complete ClassPath for the given Maven project.
      */
     public static ClassPath fromProjectBasePath(Path projectPath) throws IOException {
+        MavenClassPathCache cache = MavenClassPathCache.getDefault();
+        Optional<ClassPath> cached = cache.get(projectPath);
+        if (cached.isPresent()) {
+            log.info("Using cached classpath for maven project at {}", projectPath);
+            return cached.get();
+        }
+
+        ClassPath classPath = resolve(projectPath);
+        cache.put(projectPath, classPath);
+        return classPath;
+    }
 
+    private static ClassPath resolve(Path projectPath) throws IOException {
         log.info("Building classpath for maven project at {}", projectPath);
 
         File outputFile = File.createTempFile("tmc-classpath", ".tmp");
@@ -0,0 +1,219 @@
+package fi.helsinki.cs.tmc.langs.java.maven;
+
+import fi.helsinki.cs.tmc.langs.java.ClassPath;
+
+import com.google.common.base.Optional;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * On-disk cache of the dependency class paths of Maven projects.
+ *
+ * <p>Entries are keyed by a hash of the project's pom.xml, its parent poms and the location of
+ * the local repository. A cached class path is only handed out while every jar on it is still
+ * present in the local repository unchanged.
+ */
+public final class MavenClassPathCache {
+
+    private static final Logger log = LoggerFactory.getLogger(MavenClassPathCache.class);
+
+    private static final String POM_FILE = "pom.xml";
+    private static final String DEFAULT_PARENT_PATH = "../pom.xml";
+    private static final int MAX_PARENT_DEPTH = 16;
+
+    private static final Gson gson = new Gson();
+
+    private final Path cacheDirectory;
+
+    /**
+     * Creates a cache that stores its entries in the given directory.
+     */
+    public MavenClassPathCache(Path cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Creates a cache stored in the tmc configuration directory.
+     */
+    public static MavenClassPathCache getDefault() {
+        return new MavenClassPathCache(
+                MavenInvokatorMavenTaskRunner.getConfigDirectory().resolve("classpath-cache"));
+    }
+
+    /**
+     * Returns the cached class path of the project, if its poms and the artifacts on the
+     * class path haven't changed since it was stored.
+     */
+    public Optional<ClassPath> get(Path projectPath) {
+        try {
+            Path entryFile = entryFile(projectPath);
+            if (!Files.exists(entryFile)) {
+                return Optional.absent();
+            }
+
+            CacheEntry entry;
+            try (Reader reader = Files.newBufferedReader(entryFile, StandardCharsets.UTF_8)) {
+                entry = gson.fromJson(reader, CacheEntry.class);
+            }
+            if (entry == null || entry.artifacts == null) {
+                return Optional.absent();
+            }
+
+            ClassPath classPath = new ClassPath();
+            for (CachedArtifact artifact : entry.artifacts) {
+                Path path = Paths.get(artifact.path);
+                if (!artifact.matches(path)) {
+                    log.info("Cached class path of {} is stale, {} changed", projectPath, path);
+                    return Optional.absent();
+                }
+                classPath.add(path);
+            }
+            return Optional.of(classPath);
+        } catch (IOException | JsonParseException ex) {
+            log.warn("Unable to read cached class path of {}", projectPath, ex);
+            return Optional.absent();
+        }
+    }
+
+    /**
+     * Stores the class path of the project. Failures are logged and otherwise ignored, as the
+     * class path can always be resolved again.
+     */
+    public void put(Path projectPath, ClassPath classPath) {
+        try {
+            CacheEntry entry = new CacheEntry();
+            for (Path path : classPath.getPaths()) {
+                entry.artifacts.add(CachedArtifact.of(path));
+            }
+
+            Files.createDirectories(cacheDirectory);
+            Path tempFile = Files.createTempFile(cacheDirectory, "classpath", ".tmp");
+            try {
+                try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                    gson.toJson(entry, writer);
+                }
+                Files.move(tempFile, entryFile(projectPath), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException ex) {
+            log.warn("Unable to cache class path of {}", projectPath, ex);
+        }
+    }
+
+    private Path entryFile(Path projectPath) throws IOException {
+        return cacheDirectory.resolve(cacheKey(projectPath) + ".json");
+    }
+
+    /**
+     * Hashes the project's pom.xml, the parent poms that can be found on disk and the local
+     * repository the dependencies are resolved to.
+     */
+    static String cacheKey(Path projectPath) throws IOException {
+        Hasher hasher = Hashing.sha1().newHasher();
+        hasher.putString(getLocalRepository().toString(), StandardCharsets.UTF_8);
+
+        Set<Path> visited = new HashSet<>();
+        Path pom = projectPath.toAbsolutePath().normalize().resolve(POM_FILE);
+        while (pom != null && visited.size() < MAX_PARENT_DEPTH && visited.add(pom)) {
+            byte[] contents = Files.readAllBytes(pom);
+            hasher.putString(pom.toString(), StandardCharsets.UTF_8);
+            hasher.putBytes(contents);
+            pom = findParentPom(pom);
+        }
+        return hasher.hash().toString();
+    }
+
+    private static Path findParentPom(Path pom) {
+        Model model;
+        try (Reader reader = Files.newBufferedReader(pom, StandardCharsets.UTF_8)) {
+            model = new MavenXpp3Reader().read(reader, false);
+        } catch (IOException | XmlPullParserException ex) {
+            log.debug("Unable to read {} while looking for parent pom", pom, ex);
+            return null;
+        }
+
+        Parent parent = model.getParent();
+        if (parent == null) {
+            return null;
+        }
+        String relativePath = parent.getRelativePath();
+        if (relativePath == null || relativePath.isEmpty()) {
+            relativePath = DEFAULT_PARENT_PATH;
+        }
+        Path parentPom = pom.getParent().resolve(relativePath).normalize();
+        if (Files.isDirectory(parentPom)) {
+            parentPom = parentPom.resolve(POM_FILE);
+        }
+        // Parents that aren't on disk come from a repository and are covered by the artifacts.
+        return Files.isRegularFile(parentPom) ? parentPom : null;
+    }
+
+    private static Path getLocalRepository() {
+        String localRepository = System.getProperty("maven.repo.local");
+        if (localRepository != null && !localRepository.isEmpty()) {
+            return Paths.get(localRepository).toAbsolutePath();
+        }
+        return Paths.get(System.getProperty("user.home"), ".m2", "repository");
+    }
+
+    private static final class CacheEntry {
+        List<CachedArtifact> artifacts = new ArrayList<>();
+    }
+
+    private static final class CachedArtifact {
+        String path;
+        boolean directory;
+        long size;
+        long lastModified;
+
+        static CachedArtifact of(Path path) throws IOException {
+            CachedArtifact artifact = new CachedArtifact();
+            artifact.path = path.toString();
+            if (Files.isDirectory(path)) {
+                // Output directories of sibling modules change on every build, so only
+                // their presence is checked.
+                artifact.directory = true;
+            } else if (Files.exists(path)) {
+                artifact.size = Files.size(path);
+                artifact.lastModified = Files.getLastModifiedTime(path).toMillis();
+            } else {
+                artifact.size = -1;
+            }
+            return artifact;
+        }
+
+        boolean matches(Path path) throws IOException {
+            if (directory) {
+                return Files.isDirectory(path);
+            }
+            if (!Files.isRegularFile(path)) {
+                return size == -1;
+            }
+            return size == Files.size(path)
+                    && lastModified == Files.getLastModifiedTime(path).toMillis();
+        }
+    }
+}
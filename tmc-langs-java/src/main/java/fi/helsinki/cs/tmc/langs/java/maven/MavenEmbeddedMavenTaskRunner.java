@@ -0,0 +1,257 @@
+package fi.helsinki.cs.tmc.langs.java.maven;
+
+import fi.helsinki.cs.tmc.langs.java.exception.MavenExecutorException;
+
+import org.apache.maven.Maven;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenExecutionRequestPopulationException;
+import org.apache.maven.execution.MavenExecutionRequestPopulator;
+import org.apache.maven.settings.Settings;
+import org.apache.maven.settings.building.DefaultSettingsBuildingRequest;
+import org.apache.maven.settings.building.SettingsBuilder;
+import org.apache.maven.settings.building.SettingsBuildingException;
+import org.apache.maven.settings.building.SettingsBuildingRequest;
+import org.codehaus.plexus.ContainerConfiguration;
+import org.codehaus.plexus.DefaultContainerConfiguration;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.codehaus.plexus.PlexusConstants;
+import org.codehaus.plexus.PlexusContainerException;
+import org.codehaus.plexus.classworlds.ClassWorld;
+import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+import org.codehaus.plexus.logging.AbstractLogger;
+import org.codehaus.plexus.logging.BaseLoggerManager;
+import org.codehaus.plexus.logging.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Runs Maven goals inside the current JVM instead of forking a new Maven process.
+ *
+ * <p>The Plexus container is created once and reused by every execution, so plugin realms,
+ * plugin descriptors and resolved artifacts stay cached between builds. Executions are
+ * serialized, as a single Maven container does not support concurrent builds.
+ */
+public class MavenEmbeddedMavenTaskRunner implements MavenTaskRunner {
+
+    private static final org.slf4j.Logger log =
+            LoggerFactory.getLogger(MavenEmbeddedMavenTaskRunner.class);
+
+    private static final String USER_PROPERTY_PREFIX = "-D";
+
+    private final RedirectingLoggerManager loggerManager = new RedirectingLoggerManager();
+    private final DefaultPlexusContainer container;
+    private final Maven maven;
+    private final MavenExecutionRequestPopulator populator;
+    private final SettingsBuilder settingsBuilder;
+
+    /**
+     * Creates the embedded Maven container.
+     *
+     * @throws MavenExecutorException if the container can't be started
+     */
+    public MavenEmbeddedMavenTaskRunner() {
+        ClassLoader classLoader = getClass().getClassLoader();
+        ContainerConfiguration configuration =
+                new DefaultContainerConfiguration()
+                        .setClassWorld(new ClassWorld("plexus.core", classLoader))
+                        .setClassPathScanning(PlexusConstants.SCANNING_INDEX)
+                        .setAutoWiring(true)
+                        .setName("maven");
+        try {
+            container = new DefaultPlexusContainer(configuration);
+            container.setLoggerManager(loggerManager);
+            maven = container.lookup(Maven.class);
+            populator = container.lookup(MavenExecutionRequestPopulator.class);
+            settingsBuilder = container.lookup(SettingsBuilder.class);
+        } catch (PlexusContainerException | ComponentLookupException e) {
+            throw new MavenExecutorException(e);
+        }
+        log.info("Started embedded maven container");
+    }
+
+    @Override
+    public synchronized MavenExecutionResult exec(Path projectPath, String[] mavenArgs) {
+        ByteArrayOutputStream outBuf = new ByteArrayOutputStream();
+        ByteArrayOutputStream errBuf = new ByteArrayOutputStream();
+        PrintStream out = newPrintStream(outBuf);
+        PrintStream err = newPrintStream(errBuf);
+
+        Thread thread = Thread.currentThread();
+        ClassLoader originalClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(container.getContainerRealm());
+        loggerManager.redirectTo(out);
+        try {
+            MavenExecutionRequest request = createRequest(projectPath, mavenArgs);
+            org.apache.maven.execution.MavenExecutionResult result = maven.execute(request);
+
+            int exitCode = 0;
+            if (result.hasExceptions()) {
+                exitCode = 1;
+                for (Throwable exception : result.getExceptions()) {
+                    log.info("Embedded maven build failed", exception);
+                    err.println("[ERROR] " + exception.getMessage());
+                }
+            }
+
+            out.flush();
+            err.flush();
+            return new MavenExecutionResult()
+                    .setExitCode(exitCode)
+                    .setStdOut(outBuf.toByteArray())
+                    .setStdErr(errBuf.toByteArray());
+        } catch (MavenExecutionRequestPopulationException | SettingsBuildingException e) {
+            throw new MavenExecutorException(e);
+        } finally {
+            loggerManager.redirectTo(null);
+            thread.setContextClassLoader(originalClassLoader);
+        }
+    }
+
+    private MavenExecutionRequest createRequest(Path projectPath, String[] mavenArgs)
+            throws MavenExecutionRequestPopulationException, SettingsBuildingException {
+        Properties userProperties = new Properties();
+        userProperties.setProperty("maven.compiler.source", "1.8");
+        userProperties.setProperty("maven.compiler.target", "1.8");
+
+        List<String> goals = new ArrayList<>();
+        for (String arg : mavenArgs) {
+            if (arg.startsWith(USER_PROPERTY_PREFIX)) {
+                String property = arg.substring(USER_PROPERTY_PREFIX.length());
+                int separator = property.indexOf('=');
+                if (separator < 0) {
+                    userProperties.setProperty(property, "true");
+                } else {
+                    userProperties.setProperty(
+                            property.substring(0, separator), property.substring(separator + 1));
+                }
+            } else if (arg.startsWith("-")) {
+                log.debug("Ignoring maven option {} in embedded mode", arg);
+            } else {
+                goals.add(arg);
+            }
+        }
+
+        Properties systemProperties = new Properties();
+        systemProperties.putAll(System.getProperties());
+        for (Map.Entry<String, String> entry : System.getenv().entrySet()) {
+            systemProperties.setProperty("env." + entry.getKey(), entry.getValue());
+        }
+
+        File baseDirectory = projectPath.toAbsolutePath().toFile();
+        MavenExecutionRequest request = new DefaultMavenExecutionRequest();
+        request.setPom(new File(baseDirectory, "pom.xml"));
+        request.setBaseDirectory(baseDirectory);
+        request.setMultiModuleProjectDirectory(baseDirectory);
+        request.setGoals(goals);
+        request.setSystemProperties(systemProperties);
+        request.setUserProperties(userProperties);
+        request.setInteractiveMode(false);
+        request.setShowErrors(true);
+        request.setStartTime(new Date());
+        request.setLoggingLevel(MavenExecutionRequest.LOGGING_LEVEL_INFO);
+
+        populator.populateFromSettings(request, readSettings(systemProperties, userProperties));
+        populator.populateDefaults(request);
+        return request;
+    }
+
+    private Settings readSettings(Properties systemProperties, Properties userProperties)
+            throws SettingsBuildingException {
+        SettingsBuildingRequest request = new DefaultSettingsBuildingRequest();
+        request.setSystemProperties(systemProperties);
+        request.setUserProperties(userProperties);
+        request.setUserSettingsFile(
+                new File(new File(System.getProperty("user.home"), ".m2"), "settings.xml"));
+        String mavenHome = System.getProperty("maven.home");
+        if (mavenHome != null) {
+            request.setGlobalSettingsFile(new File(new File(mavenHome, "conf"), "settings.xml"));
+        }
+        return settingsBuilder.build(request).getEffectiveSettings();
+    }
+
+    private static PrintStream newPrintStream(ByteArrayOutputStream buffer) {
+        try {
+            return new PrintStream(buffer, true, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Hands out loggers that write Maven's and the mojos' log output to the output stream of
+     * the execution currently in progress.
+     */
+    private static final class RedirectingLoggerManager extends BaseLoggerManager {
+
+        private volatile PrintStream target;
+
+        RedirectingLoggerManager() {
+            setThreshold(Logger.LEVEL_INFO);
+        }
+
+        void redirectTo(PrintStream target) {
+            this.target = target;
+        }
+
+        @Override
+        protected Logger createLogger(String key) {
+            return new AbstractLogger(Logger.LEVEL_INFO, key) {
+                @Override
+                public void debug(String message, Throwable throwable) {
+                    write("DEBUG", message, throwable);
+                }
+
+                @Override
+                public void info(String message, Throwable throwable) {
+                    write("INFO", message, throwable);
+                }
+
+                @Override
+                public void warn(String message, Throwable throwable) {
+                    write("WARNING", message, throwable);
+                }
+
+                @Override
+                public void error(String message, Throwable throwable) {
+                    write("ERROR", message, throwable);
+                }
+
+                @Override
+                public void fatalError(String message, Throwable throwable) {
+                    write("ERROR", message, throwable);
+                }
+
+                @Override
+                public Logger getChildLogger(String name) {
+                    return this;
+                }
+
+                private void write(String level, String message, Throwable throwable) {
+                    PrintStream out = target;
+                    if (out == null || !isEnabledFor(level)) {
+                        return;
+                    }
+                    out.println("[" + level + "] " + message);
+                    if (throwable != null) {
+                        throwable.printStackTrace(out);
+                    }
+                }
+
+                private boolean isEnabledFor(String level) {
+                    return !"DEBUG".equals(level) || isDebugEnabled();
+                }
+            };
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package fi.helsinki.cs.tmc.langs.java.maven;
 
+import fi.helsinki.cs.tmc.langs.java.exception.MavenExecutorException;
 import fi.helsinki.cs.tmc.langs.java.maven.MavenTaskRunner.MavenExecutionResult;
 
 import org.slf4j.Logger;
@@ -11,8 +12,46 @@ public class MavenExecutors {
 
     private static final Logger log = LoggerFactory.getLogger(MavenExecutors.class);
 
+    /**
+     * Selects the maven executor. Set either to {@value #EMBEDDED_EXECUTOR} to run maven
+     * inside this JVM instead of forking a new maven process for every goal.
+     */
+    static final String EXECUTOR_PROPERTY = "tmc.maven.executor";
+    static final String EXECUTOR_ENV = "TMC_MAVEN_EXECUTOR";
+    static final String EMBEDDED_EXECUTOR = "embedded";
+
+    private static MavenEmbeddedMavenTaskRunner embeddedRunner;
+    private static boolean embeddedRunnerFailed;
+
     public static final MavenExecutionResult tryAndExec(Path directory, String[] mavenArgs) {
+        if (isEmbeddedExecutorSelected()) {
+            MavenEmbeddedMavenTaskRunner runner = getEmbeddedRunner();
+            if (runner != null) {
+                log.info("Using embedded maven");
+                return runner.exec(directory, mavenArgs);
+            }
+        }
         log.info("Defaulting to MavenInvokator");
         return new MavenInvokatorMavenTaskRunner().exec(directory, mavenArgs);
     }
+
+    private static boolean isEmbeddedExecutorSelected() {
+        String executor = System.getProperty(EXECUTOR_PROPERTY);
+        if (executor == null) {
+            executor = System.getenv(EXECUTOR_ENV);
+        }
+        return EMBEDDED_EXECUTOR.equalsIgnoreCase(executor);
+    }
+
+    private static synchronized MavenEmbeddedMavenTaskRunner getEmbeddedRunner() {
+        if (embeddedRunner == null && !embeddedRunnerFailed) {
+            try {
+                embeddedRunner = new MavenEmbeddedMavenTaskRunner();
+            } catch (MavenExecutorException | LinkageError e) {
+                log.warn("Unable to start embedded maven, falling back to MavenInvokator", e);
+                embeddedRunnerFailed = true;
+            }
+        }
+        return embeddedRunner;
+    }
 }
@@ -7,12 +7,13 @@ import fi.helsinki.cs.tmc.langs.io.StudentFilePolicy;
 import fi.helsinki.cs.tmc.langs.io.sandbox.StudentFileAwareSubmissionProcessor;
 import fi.helsinki.cs.tmc.langs.java.AbstractJavaPlugin;
 import fi.helsinki.cs.tmc.langs.java.ClassPath;
-import fi.helsinki.cs.tmc.langs.java.LazyTestScanner;
 import fi.helsinki.cs.tmc.langs.java.TestRunFileAndLogs;
+import fi.helsinki.cs.tmc.langs.java.TestScannerPool;
 import fi.helsinki.cs.tmc.langs.java.exception.TestRunnerException;
 import fi.helsinki.cs.tmc.langs.java.exception.TestScannerException;
 import fi.helsinki.cs.tmc.langs.java.maven.MavenTaskRunner.MavenExecutionResult;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 
 import org.slf4j.Logger;
@@ -36,14 +37,23 @@ public final class MavenPlugin extends AbstractJavaPlugin {
     private static final Path POM_FILE = Paths.get("pom.xml");
     private static final Path RESULT_FILE = Paths.get("target", "test_output.txt");
     private static final Path TEST_FOLDER = Paths.get("src");
+    private static final Path TEST_SCAN_CACHE_FILE = Paths.get("target", "tmc-test-scan.json");
+    private static final Path CHECKSTYLE_CACHE_FILE =
+            Paths.get("target", "tmc-checkstyle-cache.json");
 
     private static final String TEST_RUNNER_GOAL = "fi.helsinki.cs.tmc:tmc-maven-plugin:1.12:test";
 
+    /**
+     * Set to true to reuse the classes compiled by the previous build instead of cleaning the
+     * project before every build.
+     */
+    static final String INCREMENTAL_BUILD_PROPERTY = "tmc.maven.incremental";
+
     /**
      * Creates a new MavenPlugin.
      */
     public MavenPlugin() {
-        super(TEST_FOLDER, new StudentFileAwareSubmissionProcessor(), new LazyTestScanner());
+        super(TEST_FOLDER, new StudentFileAwareSubmissionProcessor(), new TestScannerPool());
     }
 
     @Override
@@ -61,6 +71,16 @@ public final class MavenPlugin extends AbstractJavaPlugin {
         return new MavenStudentFilePolicy(path);
     }
 
+    @Override
+    protected Optional<Path> getTestScanCacheFile(Path projectRoot) {
+        return Optional.of(projectRoot.resolve(TEST_SCAN_CACHE_FILE));
+    }
+
+    @Override
+    protected Optional<Path> getCheckstyleCacheFile(Path projectRoot) {
+        return Optional.of(projectRoot.resolve(CHECKSTYLE_CACHE_FILE));
+    }
+
     @Override
     protected ClassPath getProjectClassPath(Path projectRoot) throws IOException {
         ClassPath testClassPath = MavenClassPathBuilder.fromProjectBasePath(projectRoot);
@@ -74,11 +94,20 @@ public final class MavenPlugin extends AbstractJavaPlugin {
 
         log.info("Building maven project at {}", path);
 
-        MavenExecutionResult compilationResult =
-                MavenExecutors.tryAndExec(path, new String[] {"clean", "compile", "test-compile"});
+        String[] goals;
+        if (isIncrementalBuildEnabled() && MavenBuildFingerprint.prepareIncrementalBuild(path)) {
+            log.info("Reusing classes from previous build of {}", path);
+            goals = new String[] {"compile", "test-compile"};
+        } else {
+            goals = new String[] {"clean", "compile", "test-compile"};
+        }
+        MavenBuildFingerprint.invalidate(path);
+
+        MavenExecutionResult compilationResult = MavenExecutors.tryAndExec(path, goals);
 
         if (compilationResult.getExitCode() == 0) {
             log.info("Built maven project at {}", path);
+            MavenBuildFingerprint.record(path);
         } else {
             log.info("Failed to build maven project at {}", path);
         }
@@ -89,6 +118,10 @@ public final class MavenPlugin extends AbstractJavaPlugin {
                 compilationResult.getStdErr());
     }
 
+    private static boolean isIncrementalBuildEnabled() {
+        return Boolean.getBoolean(INCREMENTAL_BUILD_PROPERTY);
+    }
+
     @Override
     protected TestRunFileAndLogs createRunResultFile(Path path, CompileResult compileResult)
             throws TestRunnerException, TestScannerException {
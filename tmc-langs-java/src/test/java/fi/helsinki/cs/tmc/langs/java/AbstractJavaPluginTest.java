@@ -1,5 +1,6 @@
 package fi.helsinki.cs.tmc.langs.java;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
@@ -14,11 +15,13 @@ import fi.helsinki.cs.tmc.langs.abstraction.ValidationResult;
 import fi.helsinki.cs.tmc.langs.domain.CompileResult;
 import fi.helsinki.cs.tmc.langs.domain.ExerciseDesc;
 import fi.helsinki.cs.tmc.langs.domain.RunResult;
+import fi.helsinki.cs.tmc.langs.domain.SpecialLogs;
 import fi.helsinki.cs.tmc.langs.io.StudentFilePolicy;
 import fi.helsinki.cs.tmc.langs.io.sandbox.StudentFileAwareSubmissionProcessor;
 import fi.helsinki.cs.tmc.langs.io.sandbox.SubmissionProcessor;
 import fi.helsinki.cs.tmc.langs.java.exception.TestRunnerException;
 import fi.helsinki.cs.tmc.langs.java.exception.TestScannerException;
+import fi.helsinki.cs.tmc.langs.utils.ProcessResult;
 import fi.helsinki.cs.tmc.langs.utils.TestUtils;
 
 import com.google.common.base.Optional;
@@ -27,6 +30,7 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
@@ -40,12 +44,12 @@ public class AbstractJavaPluginTest {
         public StubLanguagePlugin(
                 Path testFolderPath,
                 SubmissionProcessor submissionProcessor,
-                LazyTestScanner testScanner) {
-            super(testFolderPath, submissionProcessor, testScanner);
+                TestScannerPool testScanners) {
+            super(testFolderPath, submissionProcessor, testScanners);
         }
 
         public StubLanguagePlugin(Path testFolderPath) {
-            super(testFolderPath, new StudentFileAwareSubmissionProcessor(), new LazyTestScanner());
+            super(testFolderPath, new StudentFileAwareSubmissionProcessor(), new TestScannerPool());
         }
 
         @Override
@@ -149,6 +153,28 @@ public class AbstractJavaPluginTest {
         assertEquals(plugin.runTests(null).status, RunResult.Status.TESTRUN_INTERRUPTED);
     }
 
+    @Test
+    public void interruptedTestRunnerKeepsItsOutputInTheLogs() {
+        AbstractJavaPlugin plugin =
+                new StubLanguagePlugin(Paths.get("")) {
+                    @Override
+                    protected TestRunFileAndLogs createRunResultFile(Path path,
+                                                                     CompileResult compileResult)
+                            throws TestRunnerException, TestScannerException {
+                        throw new TestRunnerException(
+                                new ProcessResult(137, "out", "err", true));
+                    }
+                };
+
+        RunResult result = plugin.runTests(null);
+
+        assertEquals(RunResult.Status.TESTRUN_INTERRUPTED, result.status);
+        assertArrayEquals(
+                "out".getBytes(StandardCharsets.UTF_8), result.logs.get(SpecialLogs.STDOUT));
+        assertArrayEquals(
+                "err".getBytes(StandardCharsets.UTF_8), result.logs.get(SpecialLogs.STDERR));
+    }
+
     @Test
     public void testScannerExceptionDuringRunTestsReturnsStatusCompileFailed() {
         AbstractJavaPlugin plugin =
@@ -164,6 +190,28 @@ public class AbstractJavaPluginTest {
         assertEquals(plugin.runTests(null).status, RunResult.Status.COMPILE_FAILED);
     }
 
+    @Test
+    public void classPathIsComputedOncePerBuildContext() throws IOException {
+        final int[] calls = new int[1];
+        AbstractJavaPlugin plugin =
+                new StubLanguagePlugin(Paths.get("")) {
+                    @Override
+                    protected ClassPath getProjectClassPath(Path path) throws IOException {
+                        calls[0]++;
+                        return super.getProjectClassPath(path);
+                    }
+                };
+        BuildContext context =
+                new BuildContext(Paths.get(""), new CompileResult(0, new byte[0], new byte[0]));
+
+        ClassPath first = plugin.getProjectClassPath(context);
+        ClassPath second = plugin.getProjectClassPath(context);
+
+        assertEquals(1, calls[0]);
+        assertTrue(first == second);
+        assertTrue(context.getPhaseTimings().containsKey("classpath"));
+    }
+
     @Test
     public void scanExerciseReturnsAbsentOnInvalidProject() {
         AbstractJavaPlugin plugin = new StubLanguagePlugin(Paths.get(""));
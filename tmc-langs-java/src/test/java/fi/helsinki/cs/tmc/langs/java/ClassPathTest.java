@@ -6,11 +6,18 @@ import static org.junit.Assert.assertTrue;
 
 import fi.helsinki.cs.tmc.langs.utils.TestUtils;
 
+import org.apache.commons.io.FileUtils;
+
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
 
 public class ClassPathTest {
 
@@ -104,4 +111,40 @@ public class ClassPathTest {
         ClassPath classPath = new ClassPath();
         assertEquals("", classPath.toString());
     }
+
+    @Test
+    public void pathsKeepInsertionOrderAndStringFormIsUpdatedOnAdd() {
+        Path first = Paths.get("first");
+        Path second = Paths.get("second");
+        ClassPath classPath = new ClassPath(second, first, second);
+        assertEquals(Arrays.asList(second, first), classPath.getPaths());
+        assertEquals("second" + File.pathSeparatorChar + "first", classPath.toString());
+
+        classPath.add(Paths.get("third"));
+
+        assertEquals(3, classPath.getPaths().size());
+        assertTrue(classPath.toString().endsWith(File.pathSeparatorChar + "third"));
+    }
+
+    @Test
+    public void manifestJarListsClassPathEntries() throws Exception {
+        Path tempDir = Files.createTempDirectory("tmc-class-path-test");
+        try {
+            Path jar = tempDir.resolve("lib").resolve("library.jar");
+            ClassPath classPath = new ClassPath(tempDir, jar);
+            Path manifestJar = tempDir.resolve("classpath.jar");
+
+            classPath.writeManifestJar(manifestJar);
+
+            try (JarFile jarFile = new JarFile(manifestJar.toFile())) {
+                String entries =
+                        jarFile.getManifest()
+                                .getMainAttributes()
+                                .getValue(Attributes.Name.CLASS_PATH);
+                assertEquals(tempDir.toUri() + " " + jar.toUri(), entries);
+            }
+        } finally {
+            FileUtils.deleteDirectory(tempDir.toFile());
+        }
+    }
 }
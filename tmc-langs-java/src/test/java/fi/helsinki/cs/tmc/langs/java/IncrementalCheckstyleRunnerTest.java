@@ -0,0 +1,288 @@
+package fi.helsinki.cs.tmc.langs.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import fi.helsinki.cs.tmc.langs.abstraction.Strategy;
+import fi.helsinki.cs.tmc.langs.abstraction.ValidationError;
+import fi.helsinki.cs.tmc.langs.abstraction.ValidationResult;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import org.apache.commons.io.FileUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class IncrementalCheckstyleRunnerTest {
+
+    private Path projectPath;
+    private FakeChecker checker;
+    private IncrementalCheckstyleRunner runner;
+
+    @Before
+    public void setUp() throws Exception {
+        projectPath = Files.createTempDirectory("tmc-incremental-checkstyle-test");
+        write("src/Good.java", "class Good {}");
+        write("src/pkg/Bad.java", "class Bad { BAD }");
+        checker = new FakeChecker();
+        runner = runner(1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(projectPath.toFile());
+    }
+
+    @Test
+    public void firstRunChecksAllSources() throws Exception {
+        ValidationResult result = runner.run(projectPath, Locale.ENGLISH);
+
+        assertEquals(set("src/Good.java", "src/pkg/Bad.java"), checker.checked);
+        assertEquals(Strategy.FAIL, result.getStrategy());
+        assertEquals(Collections.singleton(file("src/pkg/Bad.java")), errorFiles(result));
+    }
+
+    @Test
+    public void unchangedSourcesAreNotCheckedAgain() throws Exception {
+        runner.run(projectPath, Locale.ENGLISH);
+        checker.checked.clear();
+
+        ValidationResult result = runner.run(projectPath, Locale.ENGLISH);
+
+        assertTrue(checker.checked.isEmpty());
+        assertEquals(Strategy.FAIL, result.getStrategy());
+        List<ValidationError> errors = result.getValidationErrors().get(file("src/pkg/Bad.java"));
+        assertEquals(1, errors.size());
+        assertEquals(3, errors.get(0).getLine());
+        assertEquals("bad", errors.get(0).getMessage());
+    }
+
+    @Test
+    public void onlyChangedSourcesAreChecked() throws Exception {
+        runner.run(projectPath, Locale.ENGLISH);
+        checker.checked.clear();
+        write("src/Good.java", "class Good { BAD }");
+
+        ValidationResult result = runner.run(projectPath, Locale.ENGLISH);
+
+        assertEquals(set("src/Good.java"), checker.checked);
+        assertEquals(
+                set(file("src/Good.java"), file("src/pkg/Bad.java")), errorFiles(result));
+    }
+
+    @Test
+    public void configurationChangeChecksAllSources() throws Exception {
+        runner.run(projectPath, Locale.ENGLISH);
+        checker.checked.clear();
+        write(".tmcproject.yml", "checkstyle: strict");
+
+        runner.run(projectPath, Locale.ENGLISH);
+
+        assertEquals(set("src/Good.java", "src/pkg/Bad.java"), checker.checked);
+    }
+
+    @Test
+    public void buildFilesAreCopiedToScratchProjects() throws Exception {
+        write("pom.xml", "<project/>");
+
+        runner.run(projectPath, Locale.ENGLISH);
+
+        assertTrue(checker.sawPom);
+    }
+
+    @Test
+    public void localeChangeChecksAllSources() throws Exception {
+        runner.run(projectPath, Locale.ENGLISH);
+        checker.checked.clear();
+
+        runner.run(projectPath, new Locale("fi"));
+
+        assertEquals(set("src/Good.java", "src/pkg/Bad.java"), checker.checked);
+    }
+
+    @Test
+    public void removedSourcesAreDropped() throws Exception {
+        runner.run(projectPath, Locale.ENGLISH);
+        write("src/Other.java", "class Other {}");
+        Files.delete(projectPath.resolve("src/pkg/Bad.java"));
+
+        ValidationResult result = runner.run(projectPath, Locale.ENGLISH);
+
+        assertTrue(errorFiles(result).isEmpty());
+    }
+
+    @Test
+    public void parallelChecksSplitTheChangedSources() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            write("src/pkg/Source" + i + ".java", i % 2 == 0 ? "class A { BAD }" : "class A {}");
+        }
+
+        ValidationResult result = runner(3).run(projectPath, Locale.ENGLISH);
+
+        assertEquals(3, checker.checks.get());
+        assertEquals(12, checker.checked.size());
+        assertEquals(6, errorFiles(result).size());
+        assertTrue(errorFiles(result).contains(file("src/pkg/Source4.java")));
+    }
+
+    @Test
+    public void partitionsAreBalancedBySize() {
+        SortedSet<String> sources = new TreeSet<>(Arrays.asList("a", "b", "c", "d", "e", "f"));
+        Map<String, Integer> sizes =
+                ImmutableMap.<String, Integer>builder()
+                        .put("a", 50)
+                        .put("b", 10)
+                        .put("c", 20)
+                        .put("d", 30)
+                        .put("e", 40)
+                        .put("f", 10)
+                        .build();
+
+        List<SortedSet<String>> partitions =
+                IncrementalCheckstyleRunner.partition(sources, sizes, 4);
+
+        assertEquals(2, partitions.size());
+        assertEquals(set("a", "b", "c"), partitions.get(0));
+        assertEquals(set("d", "e", "f"), partitions.get(1));
+    }
+
+    @Test
+    public void fewSourcesAreCheckedTogether() {
+        SortedSet<String> sources = new TreeSet<>(Arrays.asList("a", "b", "c"));
+        Map<String, Integer> sizes = ImmutableMap.of("a", 1, "b", 1, "c", 1);
+
+        assertEquals(
+                Collections.singletonList(sources),
+                IncrementalCheckstyleRunner.partition(sources, sizes, 4));
+    }
+
+    private IncrementalCheckstyleRunner runner(int parallelism) {
+        return new IncrementalCheckstyleRunner(
+                projectPath.resolve("build/checkstyle.json"), checker, parallelism);
+    }
+
+    private void write(String name, String contents) throws IOException {
+        Path file = projectPath.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private File file(String name) {
+        return projectPath.resolve(name).toFile();
+    }
+
+    private static Set<File> errorFiles(ValidationResult result) {
+        return result.getValidationErrors().keySet();
+    }
+
+    @SafeVarargs
+    private static <T> Set<T> set(T... items) {
+        return ImmutableSet.copyOf(items);
+    }
+
+    /**
+     * Reports an error on line 3 of every source containing "BAD" and remembers which sources
+     * it checked.
+     */
+    private static class FakeChecker implements IncrementalCheckstyleRunner.StyleChecker {
+
+        private final Set<String> checked = new ConcurrentSkipListSet<>();
+        private final AtomicInteger checks = new AtomicInteger();
+        private volatile boolean sawPom;
+
+        @Override
+        public ValidationResult check(final Path projectRoot, Locale locale) {
+            checks.incrementAndGet();
+            sawPom |= Files.exists(projectRoot.resolve("pom.xml"));
+            final Map<File, List<ValidationError>> errors = new HashMap<>();
+            SimpleFileVisitor<Path> visitor =
+                    new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+                                throws IOException {
+                            checked.add(projectRoot.relativize(file).toString());
+                            String contents =
+                                    new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+                            if (contents.contains("BAD")) {
+                                List<ValidationError> fileErrors = new ArrayList<>();
+                                fileErrors.add(new FakeError());
+                                errors.put(file.toFile(), fileErrors);
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+                    };
+            try {
+                Files.walkFileTree(projectRoot.resolve("src"), visitor);
+            } catch (IOException ex) {
+                throw new AssertionError(ex);
+            }
+            return new FakeResult(errors);
+        }
+    }
+
+    private static class FakeError implements ValidationError {
+
+        @Override
+        public int getColumn() {
+            return 1;
+        }
+
+        @Override
+        public int getLine() {
+            return 3;
+        }
+
+        @Override
+        public String getMessage() {
+            return "bad";
+        }
+
+        @Override
+        public String getSourceName() {
+            return "FakeCheck";
+        }
+    }
+
+    private static class FakeResult implements ValidationResult {
+
+        private final Map<File, List<ValidationError>> errors;
+
+        FakeResult(Map<File, List<ValidationError>> errors) {
+            this.errors = errors;
+        }
+
+        @Override
+        public Strategy getStrategy() {
+            return Strategy.FAIL;
+        }
+
+        @Override
+        public Map<File, List<ValidationError>> getValidationErrors() {
+            return errors;
+        }
+    }
+}
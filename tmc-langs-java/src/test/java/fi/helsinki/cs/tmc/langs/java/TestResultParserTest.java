@@ -8,9 +8,15 @@ import fi.helsinki.cs.tmc.langs.domain.RunResult;
 import fi.helsinki.cs.tmc.langs.domain.TestResult;
 import fi.helsinki.cs.tmc.langs.utils.TestUtils;
 
+import com.google.common.base.Strings;
+
 import org.junit.Test;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 
 public class TestResultParserTest {
 
@@ -426,6 +432,74 @@ public class TestResultParserTest {
         assertTrue("ArithTest testAdd passed should be true", testResult.isSuccessful());
     }
 
+    @Test
+    public void stackTraceIsFormattedLikeJava() {
+        String json =
+                "[{\"className\":\"ArithTest\",\"methodName\":\"testSub\","
+                        + "\"status\":\"FAILED\",\"exception\":{\"message\":\"boom\","
+                        + "\"stackTrace\":["
+                        + "{\"declaringClass\":\"org.junit.Assert\",\"methodName\":\"fail\","
+                        + "\"fileName\":\"Assert.java\",\"lineNumber\":88},"
+                        + "{\"declaringClass\":\"sun.reflect.NativeMethodAccessorImpl\","
+                        + "\"methodName\":\"invoke0\",\"lineNumber\":-2}],"
+                        + "\"cause\":{\"message\":\"ignored\"}}}]";
+
+        RunResult result = parser.parseTestResult(json, new byte[0], new byte[0]);
+
+        assertEquals(RunResult.Status.TESTS_FAILED, result.status);
+        assertEquals(
+                Arrays.asList(
+                        "boom",
+                        "org.junit.Assert.fail(Assert.java:88)",
+                        "sun.reflect.NativeMethodAccessorImpl.invoke0(Native Method)"),
+                result.testResults.get(0).getException());
+    }
+
+    @Test
+    public void longMessagesAndStackTracesAreTruncated() {
+        String message = Strings.repeat("x", TestResultParser.MAX_MESSAGE_LENGTH + 10);
+        StringBuilder json = new StringBuilder();
+        json.append("[{\"className\":\"A\",\"methodName\":\"b\",\"status\":\"FAILED\",")
+                .append("\"message\":\"").append(message).append("\",")
+                .append("\"exception\":{\"stackTrace\":[");
+        for (int i = 0; i < TestResultParser.MAX_STACK_TRACE_LENGTH + 5; i++) {
+            json.append(i == 0 ? "" : ",")
+                    .append("{\"declaringClass\":\"A\",\"methodName\":\"b\"}");
+        }
+        json.append("]}}]");
+
+        TestResult testResult =
+                parser.parseTestResult(json.toString(), new byte[0], new byte[0])
+                        .testResults
+                        .get(0);
+
+        assertTrue(testResult.getMessage().endsWith("... (10 characters truncated)"));
+        assertEquals(
+                TestResultParser.MAX_STACK_TRACE_LENGTH + 1, testResult.getException().size());
+        assertEquals(
+                "... 5 more",
+                testResult.getException().get(TestResultParser.MAX_STACK_TRACE_LENGTH));
+    }
+
+    @Test
+    public void truncatedResultFileInterruptsRun() throws Exception {
+        Path resultsFile = Files.createTempFile("tmc-results", ".txt");
+        try {
+            Files.write(
+                    resultsFile,
+                    "[{\"className\":\"ArithTest\",\"meth".getBytes(StandardCharsets.UTF_8));
+
+            RunResult result =
+                    parser.parseTestResult(
+                            new TestRunFileAndLogs(
+                                    resultsFile.toFile(), new byte[0], new byte[0]));
+
+            assertEquals(RunResult.Status.TESTRUN_INTERRUPTED, result.status);
+        } finally {
+            Files.delete(resultsFile);
+        }
+    }
+
     private void assertFieldsNotNull(TestResult testResult) {
         assertNotNull(testResult.getMessage());
         assertNotNull(testResult.getDetailedMessage());
@@ -0,0 +1,98 @@
+package fi.helsinki.cs.tmc.langs.java;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import fi.helsinki.cs.tmc.testscanner.TestMethod;
+
+import com.google.common.base.Optional;
+
+import org.apache.commons.io.FileUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TestScanCacheTest {
+
+    private Path projectPath;
+    private Path source;
+    private Path classes;
+    private ClassPath classPath;
+
+    @Before
+    public void setUp() throws Exception {
+        projectPath = Files.createTempDirectory("tmc-test-scan-cache-test");
+        source = Files.createDirectory(projectPath.resolve("test")).resolve("ArithTest.java");
+        write(source, "public class ArithTest {}");
+        classes = Files.createDirectories(projectPath.resolve("build").resolve("classes"));
+        classPath = new ClassPath(classes);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(projectPath.toFile());
+    }
+
+    @Test
+    public void storedTestsAreReturnedForSameKey() throws Exception {
+        TestMethod method = new TestMethod();
+        method.className = "ArithTest";
+        method.methodName = "testAdd";
+        method.points = new String[] {"arith-add"};
+        TestScanCache cache = new TestScanCache(projectPath.resolve("build/scan.json"));
+        cache.put(key(), Collections.singletonList(method));
+
+        Optional<List<TestMethod>> cached = cache.get(key());
+
+        assertTrue(cached.isPresent());
+        assertEquals(1, cached.get().size());
+        assertEquals("ArithTest", cached.get().get(0).className);
+        assertEquals("testAdd", cached.get().get(0).methodName);
+        assertArrayEquals(new String[] {"arith-add"}, cached.get().get(0).points);
+    }
+
+    @Test
+    public void otherKeyIsNotFound() throws Exception {
+        TestScanCache cache = new TestScanCache(projectPath.resolve("build/scan.json"));
+        cache.put(key(), Collections.<TestMethod>emptyList());
+
+        assertFalse(cache.get("other").isPresent());
+    }
+
+    @Test
+    public void changedSourceChangesKey() throws Exception {
+        String before = key();
+
+        write(source, "public class ArithTest { @Test public void testAdd() {} }");
+
+        assertNotEquals(before, key());
+    }
+
+    @Test
+    public void compiledClassesDoNotChangeKey() throws Exception {
+        String before = key();
+
+        write(classes.resolve("Arith.class"), "compiled");
+
+        assertEquals(before, key());
+    }
+
+    private String key() throws Exception {
+        return TestScanCache.key(projectPath, Arrays.asList(source.toFile()), classPath);
+    }
+
+    private static void write(Path file, String contents) throws Exception {
+        Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+    }
+}
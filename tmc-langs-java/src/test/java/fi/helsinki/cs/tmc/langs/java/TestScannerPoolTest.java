@@ -0,0 +1,62 @@
+package fi.helsinki.cs.tmc.langs.java;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import fi.helsinki.cs.tmc.testscanner.TestScanner;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class TestScannerPoolTest {
+
+    @Test
+    public void releasedScannerIsReused() {
+        TestScannerPool pool = new TestScannerPool(2);
+
+        TestScanner scanner = pool.borrow();
+        pool.release(scanner);
+
+        assertSame(scanner, pool.borrow());
+    }
+
+    @Test
+    public void concurrentBorrowersGetSeparateScanners() {
+        TestScannerPool pool = new TestScannerPool(2);
+
+        TestScanner first = pool.borrow();
+        TestScanner second = pool.borrow();
+
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void borrowWaitsWhenPoolIsExhausted() throws Exception {
+        final TestScannerPool pool = new TestScannerPool(1);
+        TestScanner scanner = pool.borrow();
+
+        final CountDownLatch borrowed = new CountDownLatch(1);
+        Runnable borrower =
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        pool.borrow();
+                        borrowed.countDown();
+                    }
+                };
+        new Thread(borrower).start();
+
+        assertFalse(borrowed.await(100, TimeUnit.MILLISECONDS));
+        pool.release(scanner);
+        assertTrue(borrowed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void poolMustHoldAtLeastOneScanner() {
+        new TestScannerPool(0);
+    }
+}
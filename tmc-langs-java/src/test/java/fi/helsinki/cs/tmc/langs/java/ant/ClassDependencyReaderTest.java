@@ -0,0 +1,33 @@
+package fi.helsinki.cs.tmc.langs.java.ant;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+
+public class ClassDependencyReaderTest {
+
+    @Test
+    public void readsReferencedClasses() throws Exception {
+        Set<String> dependencies = ClassDependencyReader.readDependencies(classFile(getClass()));
+
+        assertTrue(dependencies.contains(ClassDependencyReader.class.getName()));
+        assertTrue(dependencies.contains(Test.class.getName()));
+    }
+
+    @Test
+    public void leavesOutJavaClasses() throws Exception {
+        Set<String> dependencies = ClassDependencyReader.readDependencies(classFile(getClass()));
+
+        assertFalse(dependencies.contains(Set.class.getName()));
+        assertFalse(dependencies.contains(Object.class.getName()));
+    }
+
+    private static Path classFile(Class<?> type) throws Exception {
+        return Paths.get(type.getResource(type.getSimpleName() + ".class").toURI());
+    }
+}
@@ -0,0 +1,218 @@
+package fi.helsinki.cs.tmc.langs.java.ant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import fi.helsinki.cs.tmc.langs.domain.CompileResult;
+import fi.helsinki.cs.tmc.langs.utils.TestUtils;
+
+import org.apache.commons.io.FileUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+public class InProcessJavaCompilerTest {
+
+    private Path tempDir;
+
+    @Before
+    public void setUp() throws Exception {
+        tempDir = Files.createTempDirectory("tmc-in-process-javac-test");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(tempDir.toFile());
+    }
+
+    @Test
+    public void generatedBuildFileIsCompiledInProcess() throws Exception {
+        Path project = copy("trivial");
+
+        assertTrue(InProcessJavaCompiler.forProject(project).isPresent());
+    }
+
+    @Test
+    public void customBuildFileIsLeftToAnt() {
+        Path project = TestUtils.getPath(getClass(), "ant_project");
+
+        assertFalse(InProcessJavaCompiler.forProject(project).isPresent());
+    }
+
+    @Test
+    public void projectUsingToolsJarIsCompiledInProcess() throws Exception {
+        Path project = copy("UsingToolsJar");
+
+        assertTrue(InProcessJavaCompiler.forProject(project).isPresent());
+    }
+
+    @Test
+    public void unresolvedClassPathIsLeftToAnt() throws Exception {
+        Path project = copy("trivial");
+        appendProperty(project, "javac.classpath=${libs.swing-layout.classpath}");
+
+        assertFalse(InProcessJavaCompiler.forProject(project).isPresent());
+    }
+
+    @Test
+    public void classPathOutsideLibIsLeftToAnt() throws Exception {
+        Path project = copy("trivial");
+        appendProperty(project, "javac.test.classpath=${javac.classpath}:../shared/util.jar");
+
+        assertFalse(InProcessJavaCompiler.forProject(project).isPresent());
+    }
+
+    @Test
+    public void compilesSourcesAndTests() throws Exception {
+        Path project = copy("trivial");
+
+        CompileResult result = compile(project);
+
+        assertEquals(0, result.getStatusCode());
+        assertTrue(Files.exists(project.resolve("build/classes/Trivial.class")));
+        assertTrue(Files.exists(project.resolve("build/test/classes/TrivialTest.class")));
+    }
+
+    @Test
+    public void reportsCompilationErrors() throws Exception {
+        Path project = copy("trivial");
+        Files.write(
+                project.resolve("src").resolve("Broken.java"),
+                "public class Broken { int x = }".getBytes(StandardCharsets.UTF_8));
+
+        CompileResult result = compile(project);
+
+        assertEquals(1, result.getStatusCode());
+        String errors = new String(result.getStderr(), StandardCharsets.UTF_8);
+        assertTrue(errors, errors.contains("Broken.java:1: error"));
+    }
+
+    @Test
+    public void unchangedProjectIsNotRecompiled() throws Exception {
+        Path project = copy("trivial");
+        compile(project);
+
+        CompileResult result = compile(project);
+
+        assertEquals(0, result.getStatusCode());
+        assertFalse(stdout(result), stdout(result).contains("Compiling"));
+    }
+
+    @Test
+    public void changedSourceRecompilesItsDependents() throws Exception {
+        Path project = copy("trivial");
+        compile(project);
+        Path newerSource = project.resolve("src").resolve("Unrelated.java");
+        Files.write(newerSource, "class Unrelated {}".getBytes(StandardCharsets.UTF_8));
+        compile(project);
+
+        Path source = project.resolve("src").resolve("Trivial.java");
+        String changed = "public class Trivial { public int f() { return 2; } }";
+        Files.write(source, changed.getBytes(StandardCharsets.UTF_8));
+        CompileResult result = compile(project);
+
+        assertEquals(0, result.getStatusCode());
+        String output = stdout(result);
+        assertTrue(output, output.contains("Compiling 1 source file to " + classes(project)));
+        assertTrue(output, output.contains("Compiling 1 source file to " + testClasses(project)));
+    }
+
+    @Test
+    public void removedSourceHasItsClassesDeleted() throws Exception {
+        Path project = copy("trivial");
+        Path source = project.resolve("src").resolve("Extra.java");
+        Files.write(source, "class Extra { class Inner {} }".getBytes(StandardCharsets.UTF_8));
+        compile(project);
+        assertTrue(Files.exists(project.resolve("build/classes/Extra$Inner.class")));
+
+        Files.delete(source);
+        CompileResult result = compile(project);
+
+        assertEquals(0, result.getStatusCode());
+        assertFalse(Files.exists(project.resolve("build/classes/Extra.class")));
+        assertFalse(Files.exists(project.resolve("build/classes/Extra$Inner.class")));
+    }
+
+    @Test
+    public void replacedJarIsReadAgain() throws Exception {
+        Path project = copy("trivial");
+        Path jar = project.resolve("lib").resolve("helper.jar");
+        writeJar(jar, "public class Helper { public static int first() { return 1; } }");
+        Path source = project.resolve("src").resolve("Uses.java");
+        write(source, "class Uses { int f() { return Helper.first(); } }");
+        assertEquals(0, compile(project).getStatusCode());
+
+        writeJar(jar, "public class Helper { public static int second() { return 2; } }");
+        write(source, "class Uses { int f() { return Helper.second(); } }");
+        CompileResult result = compile(project);
+
+        assertEquals(new String(result.getStderr(), StandardCharsets.UTF_8),
+                0, result.getStatusCode());
+    }
+
+    private void writeJar(Path jar, String source) throws Exception {
+        Path sourceDir = Files.createTempDirectory(tempDir, "helper");
+        Path sourceFile = sourceDir.resolve("Helper.java");
+        write(sourceFile, source);
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertEquals(0, compiler.run(null, null, null, sourceFile.toString()));
+
+        Files.createDirectories(jar.getParent());
+        try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar))) {
+            output.putNextEntry(new JarEntry("Helper.class"));
+            output.write(Files.readAllBytes(sourceDir.resolve("Helper.class")));
+            output.closeEntry();
+        }
+    }
+
+    private static void write(Path file, String contents) throws Exception {
+        Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String stdout(CompileResult result) {
+        return new String(result.getStdout(), StandardCharsets.UTF_8);
+    }
+
+    private static Path classes(Path project) {
+        return project.resolve("build").resolve("classes");
+    }
+
+    private static Path testClasses(Path project) {
+        return project.resolve("build").resolve("test").resolve("classes");
+    }
+
+    private CompileResult compile(Path project) throws Exception {
+        return InProcessJavaCompiler.forProject(project)
+                .get()
+                .compile(
+                        project,
+                        project.resolve("build_log.txt"),
+                        project.resolve("build_errors.txt"));
+    }
+
+    private static void appendProperty(Path project, String property) throws Exception {
+        Path properties = project.resolve("nbproject").resolve("project.properties");
+        Files.write(
+                properties,
+                ("\n" + property + "\n").getBytes(StandardCharsets.ISO_8859_1),
+                StandardOpenOption.APPEND);
+    }
+
+    private Path copy(String name) throws Exception {
+        Path project = tempDir.resolve(name);
+        FileUtils.copyDirectory(TestUtils.getPath(getClass(), name).toFile(), project.toFile());
+        return project;
+    }
+}
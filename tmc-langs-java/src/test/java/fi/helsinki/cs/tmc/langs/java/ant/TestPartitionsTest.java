@@ -0,0 +1,119 @@
+package fi.helsinki.cs.tmc.langs.java.ant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import fi.helsinki.cs.tmc.langs.domain.ExerciseDesc;
+import fi.helsinki.cs.tmc.langs.domain.TestDesc;
+
+import com.google.common.collect.ImmutableList;
+
+import org.apache.commons.io.FileUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestPartitionsTest {
+
+    private Path tempDir;
+
+    @Before
+    public void setUp() throws Exception {
+        tempDir = Files.createTempDirectory("tmc-test-partitions-test");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(tempDir.toFile());
+    }
+
+    @Test
+    public void classesAreKeptTogetherAndBalanced() {
+        ExerciseDesc exercise =
+                exercise("A a1", "A a2", "A a3", "B b1", "B b2", "C c1", "D d1");
+
+        List<ExerciseDesc> partitions = TestPartitions.partition(exercise, 2);
+
+        assertEquals(2, partitions.size());
+        assertEquals(names("A a1", "A a2", "A a3", "D d1"), names(partitions.get(0)));
+        assertEquals(names("B b1", "B b2", "C c1"), names(partitions.get(1)));
+    }
+
+    @Test
+    public void partitionCountIsLimitedByClassCount() {
+        ExerciseDesc exercise = exercise("A a1", "B b1");
+
+        assertEquals(2, TestPartitions.partition(exercise, 8).size());
+    }
+
+    @Test
+    public void singlePartitionIsTheExerciseItself() {
+        ExerciseDesc exercise = exercise("A a1", "A a2");
+
+        List<ExerciseDesc> partitions = TestPartitions.partition(exercise, 4);
+
+        assertEquals(1, partitions.size());
+        assertSame(exercise, partitions.get(0));
+    }
+
+    @Test
+    public void mergeConcatenatesPartitionResults() throws Exception {
+        Path first = write("results-1.txt", "[{\"className\":\"A\"}]");
+        Path second = write("results-2.txt", "[{\"className\":\"B\"},{\"className\":\"C\"}]");
+        Path resultFile = tempDir.resolve("results.txt");
+
+        assertTrue(TestPartitions.merge(Arrays.asList(first, second), resultFile));
+
+        String merged = new String(Files.readAllBytes(resultFile), StandardCharsets.UTF_8);
+        assertEquals(
+                "[{\"className\":\"A\"},{\"className\":\"B\"},{\"className\":\"C\"}]", merged);
+        assertFalse(Files.exists(first));
+        assertFalse(Files.exists(second));
+    }
+
+    @Test
+    public void missingPartitionResultLeavesNoResultFile() throws Exception {
+        Path first = write("results-1.txt", "[{\"className\":\"A\"}]");
+        Path resultFile = write("results.txt", "[]");
+
+        assertFalse(
+                TestPartitions.merge(
+                        Arrays.asList(first, tempDir.resolve("results-2.txt")), resultFile));
+
+        assertFalse(Files.exists(resultFile));
+        assertFalse(Files.exists(first));
+    }
+
+    private Path write(String name, String contents) throws Exception {
+        return Files.write(tempDir.resolve(name), contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ExerciseDesc exercise(String... testNames) {
+        ImmutableList.Builder<TestDesc> tests = ImmutableList.builder();
+        for (String name : testNames) {
+            tests.add(new TestDesc(name, ImmutableList.<String>of()));
+        }
+        return new ExerciseDesc("exercise", tests.build());
+    }
+
+    private static List<String> names(String... names) {
+        return Arrays.asList(names);
+    }
+
+    private static List<String> names(ExerciseDesc exercise) {
+        ImmutableList.Builder<String> names = ImmutableList.builder();
+        for (TestDesc test : exercise.tests) {
+            names.add(test.name);
+        }
+        return names.build();
+    }
+}
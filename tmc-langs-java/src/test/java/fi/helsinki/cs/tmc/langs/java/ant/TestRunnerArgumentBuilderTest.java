@@ -0,0 +1,81 @@
+package fi.helsinki.cs.tmc.langs.java.ant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import fi.helsinki.cs.tmc.langs.domain.ExerciseDesc;
+import fi.helsinki.cs.tmc.langs.domain.TestDesc;
+import fi.helsinki.cs.tmc.langs.java.ClassPath;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+
+import org.apache.commons.io.FileUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestRunnerArgumentBuilderTest {
+
+    private Path projectPath;
+    private ExerciseDesc exercise;
+
+    @Before
+    public void setUp() throws Exception {
+        projectPath = Files.createTempDirectory("tmc-test-runner-argument-builder-test");
+        exercise =
+                new ExerciseDesc(
+                        "arith",
+                        ImmutableList.of(
+                                new TestDesc("ArithTest testAdd", ImmutableList.of("add"))));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(projectPath.toFile());
+    }
+
+    @Test
+    public void commandRunsTestRunnerWithClassPath() {
+        ClassPath classPath = new ClassPath(projectPath.resolve("lib"));
+
+        List<String> command = Arrays.asList(builder(classPath).getCommand());
+
+        assertEquals("java", command.get(0));
+        assertTrue(command.contains("-Dtmc.results_file=" + projectPath.resolve("results.txt")));
+        assertEquals(classPath.toString(), command.get(command.indexOf("-cp") + 1));
+        assertEquals("fi.helsinki.cs.tmc.testrunner.Main", command.get(command.size() - 2));
+        assertEquals("ArithTest.testAdd{add}", command.get(command.size() - 1));
+    }
+
+    @Test
+    public void longClassPathIsPassedInManifestJar() {
+        ClassPath classPath = new ClassPath();
+        for (int i = 0; i < 2000; i++) {
+            classPath.add(Paths.get(Strings.repeat("x", 100) + i + ".jar"));
+        }
+
+        List<String> command = Arrays.asList(builder(classPath).getCommand());
+
+        Path jar = Paths.get(command.get(command.indexOf("-cp") + 1));
+        assertTrue(jar.startsWith(projectPath.resolve("build")));
+        assertTrue(Files.isRegularFile(jar));
+    }
+
+    private TestRunnerArgumentBuilder builder(ClassPath classPath) {
+        return new TestRunnerArgumentBuilder(
+                null,
+                projectPath,
+                projectPath.resolve("test"),
+                projectPath.resolve("results.txt"),
+                classPath,
+                exercise);
+    }
+}
@@ -0,0 +1,243 @@
+package fi.helsinki.cs.tmc.langs.java.ant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import fi.helsinki.cs.tmc.langs.java.ClassPath;
+import fi.helsinki.cs.tmc.langs.utils.OutputLimits;
+import fi.helsinki.cs.tmc.langs.utils.ProcessResult;
+
+import com.google.common.base.Optional;
+
+import org.apache.commons.io.FileUtils;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+public class TestRunnerJvmPoolTest {
+
+    private Path workDir;
+    private ClassPath classPath;
+    private TestRunnerJvmPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        workDir = Files.createTempDirectory("tmc-test-runner-jvm-pool-test");
+        classPath =
+                new ClassPath(
+                        Paths.get(
+                                WarmRunnerFixture.class
+                                        .getProtectionDomain()
+                                        .getCodeSource()
+                                        .getLocation()
+                                        .toURI()));
+        pool = new TestRunnerJvmPool(3, 4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.shutdown();
+        FileUtils.deleteDirectory(workDir.toFile());
+    }
+
+    @Test
+    public void runsMainClassInWorkDirectoryWithProperties() throws Exception {
+        ProcessResult result = run("print");
+
+        assertEquals(0, result.statusCode);
+        assertTrue(result.output.contains("runs 1"));
+        assertTrue(result.output.contains("property fixture"));
+        assertTrue(result.output.contains("dir " + workDir.toAbsolutePath()));
+        assertEquals("error output", result.errorOutput.trim());
+    }
+
+    @Test
+    public void jvmIsReusedWithFreshClassLoader() throws Exception {
+        run("print");
+        ProcessResult second = run("print");
+
+        assertTrue(second.output.contains("runs 1"));
+        assertEquals(1, pool.getStartedWorkers());
+    }
+
+    @Test
+    public void jvmIsSharedBetweenDirectories() throws Exception {
+        Path otherDir = Files.createTempDirectory(workDir, "other");
+        run("print");
+
+        ProcessResult other = run(otherDir, "print");
+
+        assertTrue(other.output.contains("dir " + otherDir.toAbsolutePath()));
+        assertEquals(1, pool.getStartedWorkers());
+    }
+
+    @Test
+    public void junitIsLoadedOnceForAllRuns() throws Exception {
+        URL junit = Assert.class.getProtectionDomain().getCodeSource().getLocation();
+        classPath.add(Paths.get(junit.toURI()));
+
+        String first = run("junit").output;
+        String second = run("junit").output;
+
+        assertTrue(first, first.startsWith("junit "));
+        assertEquals(first, second);
+        assertEquals(1, pool.getStartedWorkers());
+    }
+
+    @Test
+    public void prestartedJvmServesTheRun() throws Exception {
+        pool.prestart(Collections.<String>emptyList(), classPath);
+
+        assertEquals(0, run("print").statusCode);
+        assertEquals(1, pool.getStartedWorkers());
+    }
+
+    @Test
+    public void jvmFailingDuringRunIsReportedAsFailedRun() throws Exception {
+        ProcessResult failed = run("corrupt");
+        ProcessResult next = run("print");
+
+        assertEquals(1, failed.statusCode);
+        assertTrue(failed.errorOutput, failed.errorOutput.contains("test runner JVM failed"));
+        assertEquals(0, next.statusCode);
+        assertEquals(2, pool.getStartedWorkers());
+    }
+
+    @Test
+    public void exitEndsRunWithItsStatus() throws Exception {
+        ProcessResult exited = run("exit", "3");
+        ProcessResult next = run("print");
+
+        assertEquals(3, exited.statusCode);
+        assertEquals(0, next.statusCode);
+        assertEquals(1, pool.getStartedWorkers());
+    }
+
+    @Test
+    public void uncaughtExceptionFailsRun() throws Exception {
+        ProcessResult result = run("throw");
+
+        assertEquals(1, result.statusCode);
+        assertTrue(result.errorOutput.contains("thrown by fixture"));
+    }
+
+    @Test
+    public void leftoverThreadReplacesJvm() throws Exception {
+        run("thread");
+        ProcessResult next = run("print");
+
+        assertEquals(0, next.statusCode);
+        assertEquals(2, pool.getStartedWorkers());
+    }
+
+    @Test
+    public void jvmIsReplacedAfterMaxRuns() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0, run("print").statusCode);
+        }
+
+        assertEquals(2, pool.getStartedWorkers());
+    }
+
+    @Test
+    public void outputIsKeptWithinLimits() throws Exception {
+        Map<String, String> properties = Collections.emptyMap();
+
+        Optional<ProcessResult> result =
+                pool.run(
+                        workDir,
+                        Collections.<String>emptyList(),
+                        properties,
+                        classPath,
+                        WarmRunnerFixture.class.getName(),
+                        Arrays.asList("flood"),
+                        OutputLimits.of(10, 12));
+
+        assertTrue(result.isPresent());
+        String output = result.get().output;
+        assertTrue(output, output.startsWith("line 0\nlin\n... ("));
+        assertTrue(output, output.endsWith(" bytes truncated)\n\nline 99999\n"));
+        assertTrue(result.get().outputTruncatedBytes > 1000000);
+    }
+
+    @Test
+    public void failedJvmIsReportedAsAbsent() throws Exception {
+        Map<String, String> properties = Collections.emptyMap();
+
+        Optional<ProcessResult> result =
+                pool.run(
+                        workDir,
+                        Arrays.asList("-XX:NoSuchOption"),
+                        properties,
+                        classPath,
+                        WarmRunnerFixture.class.getName(),
+                        Arrays.asList("print"),
+                        OutputLimits.UNLIMITED);
+
+        assertFalse(result.isPresent());
+    }
+
+    @Test
+    public void poolIsDisabledWhenExitsCanNotBeTrapped() throws Exception {
+        Optional<Integer> version = TestRunnerJvmPool.findRuntimeVersion();
+        Assume.assumeTrue(
+                "Older runtimes take disallow as the class of a security manager",
+                version.isPresent() && version.get() >= 12);
+        Map<String, String> properties = Collections.emptyMap();
+
+        Optional<ProcessResult> result =
+                pool.run(
+                        workDir,
+                        Arrays.asList("-Djava.security.manager=disallow"),
+                        properties,
+                        classPath,
+                        WarmRunnerFixture.class.getName(),
+                        Arrays.asList("print"),
+                        OutputLimits.UNLIMITED);
+        int startedWorkers = pool.getStartedWorkers();
+        Optional<ProcessResult> next =
+                pool.run(
+                        workDir,
+                        Collections.<String>emptyList(),
+                        properties,
+                        classPath,
+                        WarmRunnerFixture.class.getName(),
+                        Arrays.asList("print"),
+                        OutputLimits.UNLIMITED);
+
+        assertFalse(result.isPresent());
+        assertFalse(next.isPresent());
+        assertEquals(startedWorkers, pool.getStartedWorkers());
+    }
+
+    private ProcessResult run(String... arguments) {
+        return run(workDir, arguments);
+    }
+
+    private ProcessResult run(Path dir, String... arguments) {
+        Map<String, String> properties = Collections.singletonMap("fixture.value", "fixture");
+        Optional<ProcessResult> result =
+                pool.run(
+                        dir,
+                        Collections.<String>emptyList(),
+                        properties,
+                        classPath,
+                        WarmRunnerFixture.class.getName(),
+                        Arrays.asList(arguments),
+                        OutputLimits.UNLIMITED);
+        assertTrue(result.isPresent());
+        return result.get();
+    }
+}
@@ -0,0 +1,62 @@
+package fi.helsinki.cs.tmc.langs.java.ant;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+
+/**
+ * Main class run in the pooled JVMs of {@link TestRunnerJvmPoolTest}.
+ */
+public class WarmRunnerFixture {
+
+    private static int runs;
+
+    public static void main(String[] args) throws Exception {
+        runs++;
+        switch (args[0]) {
+            case "print":
+                System.out.println("runs " + runs);
+                System.out.println("property " + System.getProperty("fixture.value"));
+                System.out.println("dir " + System.getProperty("user.dir"));
+                System.err.println("error output");
+                break;
+            case "exit":
+                System.exit(Integer.parseInt(args[1]));
+                break;
+            case "flood":
+                for (int i = 0; i < 100000; i++) {
+                    System.out.print("line " + i + "\n");
+                }
+                break;
+            case "junit":
+                Class<?> junit = Class.forName("org.junit.Assert");
+                System.out.println("junit " + System.identityHashCode(junit.getClassLoader()));
+                break;
+            case "corrupt":
+                FileOutputStream protocol = new FileOutputStream(FileDescriptor.out);
+                protocol.write(new byte[] {9, 9, 9, 9});
+                protocol.flush();
+                break;
+            case "throw":
+                throw new IllegalStateException("thrown by fixture");
+            case "thread":
+                Thread thread = new Thread(new Sleeper());
+                thread.setDaemon(true);
+                thread.start();
+                break;
+            default:
+                throw new IllegalArgumentException(args[0]);
+        }
+    }
+
+    private static class Sleeper implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                Thread.sleep(Long.MAX_VALUE);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package fi.helsinki.cs.tmc.langs.java.exception;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import fi.helsinki.cs.tmc.langs.utils.ProcessResult;
 
 import org.junit.Test;
 
@@ -19,4 +23,12 @@ public class TestRunnerExceptionTest {
         TestRunnerException exception = new TestRunnerException(original);
         assertEquals(original, exception.getCause());
     }
+
+    @Test
+    public void keepsTheInterruptedProcess() {
+        ProcessResult result = new ProcessResult(137, "out", "err", true);
+        TestRunnerException exception = new TestRunnerException(result);
+        assertSame(result, exception.getInterruptedProcess().get());
+        assertFalse(new TestRunnerException().getInterruptedProcess().isPresent());
+    }
 }
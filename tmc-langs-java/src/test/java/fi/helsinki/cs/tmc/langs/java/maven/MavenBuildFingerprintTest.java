@@ -0,0 +1,111 @@
+package fi.helsinki.cs.tmc.langs.java.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.io.FileUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+public class MavenBuildFingerprintTest {
+
+    private Path projectPath;
+    private Path source;
+
+    @Before
+    public void setUp() throws Exception {
+        projectPath = Files.createTempDirectory("tmc-build-fingerprint-test");
+        write(projectPath.resolve("pom.xml"), "<project/>");
+        Path sourceFolder = projectPath.resolve("src").resolve("main").resolve("java");
+        Files.createDirectories(sourceFolder);
+        source = sourceFolder.resolve("App.java");
+        write(source, "public class App {}");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(projectPath.toFile());
+    }
+
+    @Test
+    public void unbuiltProjectRequiresClean() {
+        assertFalse(MavenBuildFingerprint.prepareIncrementalBuild(projectPath));
+    }
+
+    @Test
+    public void unchangedSourcesDoNotRequireClean() throws Exception {
+        MavenBuildFingerprint.record(projectPath);
+
+        assertTrue(MavenBuildFingerprint.prepareIncrementalBuild(projectPath));
+    }
+
+    @Test
+    public void addedSourceDoesNotRequireClean() throws Exception {
+        MavenBuildFingerprint.record(projectPath);
+
+        write(source.resolveSibling("Other.java"), "class Other {}");
+
+        assertTrue(MavenBuildFingerprint.prepareIncrementalBuild(projectPath));
+    }
+
+    @Test
+    public void changedSourceWithOlderTimestampIsTouched() throws Exception {
+        FileTime built = Files.getLastModifiedTime(source);
+        MavenBuildFingerprint.record(projectPath);
+
+        write(source, "public class App { int x; }");
+        Files.setLastModifiedTime(source, FileTime.fromMillis(built.toMillis() - 60000));
+
+        assertTrue(MavenBuildFingerprint.prepareIncrementalBuild(projectPath));
+        assertTrue(Files.getLastModifiedTime(source).compareTo(built) >= 0);
+    }
+
+    @Test
+    public void unchangedSourceIsNotTouched() throws Exception {
+        FileTime old = FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() - 60000);
+        Files.setLastModifiedTime(source, old);
+        MavenBuildFingerprint.record(projectPath);
+
+        assertTrue(MavenBuildFingerprint.prepareIncrementalBuild(projectPath));
+        assertEquals(old, Files.getLastModifiedTime(source));
+    }
+
+    @Test
+    public void deletedSourceRequiresClean() throws Exception {
+        MavenBuildFingerprint.record(projectPath);
+
+        Files.delete(source);
+
+        assertFalse(MavenBuildFingerprint.prepareIncrementalBuild(projectPath));
+    }
+
+    @Test
+    public void changedPomRequiresClean() throws Exception {
+        MavenBuildFingerprint.record(projectPath);
+
+        write(projectPath.resolve("pom.xml"), "<project><packaging>jar</packaging></project>");
+
+        assertFalse(MavenBuildFingerprint.prepareIncrementalBuild(projectPath));
+    }
+
+    @Test
+    public void invalidatedFingerprintRequiresClean() throws Exception {
+        MavenBuildFingerprint.record(projectPath);
+
+        MavenBuildFingerprint.invalidate(projectPath);
+
+        assertFalse(MavenBuildFingerprint.prepareIncrementalBuild(projectPath));
+    }
+
+    private static void write(Path file, String contents) throws Exception {
+        Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+    }
+}
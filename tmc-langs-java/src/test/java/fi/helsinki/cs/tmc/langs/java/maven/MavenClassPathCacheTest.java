@@ -0,0 +1,99 @@
+package fi.helsinki.cs.tmc.langs.java.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import fi.helsinki.cs.tmc.langs.java.ClassPath;
+
+import com.google.common.base.Optional;
+
+import org.apache.commons.io.FileUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class MavenClassPathCacheTest {
+
+    private static final String PARENT_POM =
+            "<project><modelVersion>4.0.0</modelVersion>"
+                    + "<groupId>g</groupId><artifactId>parent</artifactId>"
+                    + "<version>1</version><packaging>pom</packaging></project>";
+    private static final String CHILD_POM =
+            "<project><modelVersion>4.0.0</modelVersion>"
+                    + "<parent><groupId>g</groupId><artifactId>parent</artifactId>"
+                    + "<version>1</version></parent>"
+                    + "<artifactId>child</artifactId></project>";
+
+    private Path tempDir;
+    private Path projectPath;
+    private Path jar;
+    private MavenClassPathCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        tempDir = Files.createTempDirectory("tmc-classpath-cache-test");
+        write(tempDir.resolve("pom.xml"), PARENT_POM);
+        projectPath = Files.createDirectory(tempDir.resolve("child"));
+        write(projectPath.resolve("pom.xml"), CHILD_POM);
+        jar = tempDir.resolve("dependency.jar");
+        write(jar, "jar");
+        cache = new MavenClassPathCache(tempDir.resolve("cache"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(tempDir.toFile());
+    }
+
+    @Test
+    public void storedClassPathIsReturned() {
+        cache.put(projectPath, new ClassPath(jar));
+
+        Optional<ClassPath> cached = cache.get(projectPath);
+
+        assertTrue(cached.isPresent());
+        assertEquals(jar.toString(), cached.get().toString());
+    }
+
+    @Test
+    public void missingEntryIsAbsent() {
+        assertFalse(cache.get(projectPath).isPresent());
+    }
+
+    @Test
+    public void changedPomInvalidatesEntry() throws Exception {
+        cache.put(projectPath, new ClassPath(jar));
+
+        write(projectPath.resolve("pom.xml"), CHILD_POM.replace("child", "renamed"));
+
+        assertFalse(cache.get(projectPath).isPresent());
+    }
+
+    @Test
+    public void changedParentPomInvalidatesEntry() throws Exception {
+        cache.put(projectPath, new ClassPath(jar));
+
+        write(tempDir.resolve("pom.xml"), PARENT_POM.replace("<version>1", "<version>2"));
+
+        assertFalse(cache.get(projectPath).isPresent());
+    }
+
+    @Test
+    public void removedArtifactInvalidatesEntry() throws Exception {
+        cache.put(projectPath, new ClassPath(jar));
+
+        Files.delete(jar);
+
+        assertFalse(cache.get(projectPath).isPresent());
+    }
+
+    private static void write(Path file, String contents) throws Exception {
+        Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+    }
+}
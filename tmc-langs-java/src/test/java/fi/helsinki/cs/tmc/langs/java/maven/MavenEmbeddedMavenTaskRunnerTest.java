@@ -0,0 +1,50 @@
+package fi.helsinki.cs.tmc.langs.java.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import fi.helsinki.cs.tmc.langs.java.maven.MavenTaskRunner.MavenExecutionResult;
+import fi.helsinki.cs.tmc.langs.utils.TestUtils;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class MavenEmbeddedMavenTaskRunnerTest {
+
+    private static MavenEmbeddedMavenTaskRunner runner;
+
+    @BeforeClass
+    public static void setUpClass() {
+        runner = new MavenEmbeddedMavenTaskRunner();
+    }
+
+    @Test
+    public void passingBuildHasZeroExitCode() {
+        Path project = TestUtils.getPath(getClass(), "passing_maven_exercise");
+        MavenExecutionResult result =
+                runner.exec(project, new String[] {"clean", "compile", "test-compile"});
+        assertEquals(0, result.getExitCode());
+        assertTrue(Files.isDirectory(project.resolve("target").resolve("test-classes")));
+    }
+
+    @Test
+    public void failingBuildReportsCompilationErrors() {
+        Path project = TestUtils.getPath(getClass(), "failing_maven_exercise");
+        MavenExecutionResult result =
+                runner.exec(project, new String[] {"clean", "compile", "test-compile"});
+        assertEquals(1, result.getExitCode());
+        String output = new String(result.getStdOut(), StandardCharsets.UTF_8);
+        assertTrue(output, output.contains("COMPILATION ERROR"));
+    }
+
+    @Test
+    public void runnerIsReusable() {
+        Path project = TestUtils.getPath(getClass(), "passing_maven_exercise");
+        assertEquals(0, runner.exec(project, new String[] {"clean"}).getExitCode());
+        assertEquals(0, runner.exec(project, new String[] {"compile"}).getExitCode());
+    }
+}
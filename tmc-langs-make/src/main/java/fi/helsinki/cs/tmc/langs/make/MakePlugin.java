@@ -45,6 +45,7 @@ public final class MakePlugin extends AbstractLanguagePlugin {
     private static final Path VALGRIND_LOG = Paths.get("valgrind.log");
 
     private static final String TEST_FAIL_MESSAGE = "Failed to run tests.";
+    private static final String TESTS_TIMED_OUT_MESSAGE = "Running tests timed out.";
     private static final String WRONG_EXERCISE_TYPE_MESSAGE =
             "Failed to scan exercise due to missing Makefile.";
     private static final String CANT_PARSE_EXERCISE_DESCRIPTION =
@@ -169,15 +170,20 @@ public final class MakePlugin extends AbstractLanguagePlugin {
                     new ImmutableMap.Builder<String, byte[]>().build());
         }
 
+        ProcessResult testRun = null;
         try {
-            runTests(path, withValgrind);
+            testRun = runTests(path, withValgrind);
+        } catch (InterruptedException e) {
+            log.error(TEST_FAIL_MESSAGE, e);
+            Thread.currentThread().interrupt();
+            return runResultFromInterruptedProcess();
         } catch (Exception e) {
             // In case the folder has a test binary without the executable bit
             if (e.getMessage().contains(PERMISSION_PROBLEM_INDICATOR)) {
                 log.info(PERMISSION_MITIGATION_MESSAGE);
                 clean(path);
                 try {
-                    runTests(path, withValgrind);
+                    testRun = runTests(path, withValgrind);
                 } catch (Exception e1) {
                     log.info(PERMISSIONS_FIX_FAILED_MESSAGE);
                     withValgrind = false;
@@ -189,13 +195,17 @@ public final class MakePlugin extends AbstractLanguagePlugin {
                 // The system probably doesn't have Valgrind properly installed
                 log.info(RUNNING_WITHOUT_VALGRIND_MESSAGE);
                 try {
-                    runTests(path, withValgrind);
+                    testRun = runTests(path, withValgrind);
                 } catch (Exception e1) {
                     log.error(e1.toString());
                     throw new RuntimeException(TEST_FAIL_MESSAGE);
                 }
             }
         }
+        if (testRun != null && testRun.timedOut) {
+            log.error(TESTS_TIMED_OUT_MESSAGE);
+            return runResultFromInterruptedProcess(testRun);
+        }
 
         Path baseTestPath = path.toAbsolutePath().resolve(TEST_DIR);
         Path testResults = baseTestPath.resolve(TMC_TEST_RESULTS);
@@ -203,21 +213,29 @@ public final class MakePlugin extends AbstractLanguagePlugin {
         Configuration configuration = new Configuration(path);
 
         return new CTestResultParser(path, testResults, valgrindOutput, configuration, withValgrind)
-                .result();
+                .result()
+                .withResourceUsage(testRun != null ? testRun.resourceUsage : null);
     }
 
-    private void runTests(Path dir, boolean withValgrind) throws Exception {
+    /**
+     * Runs the tests, returning the result of the test process. A test run that timed out is
+     * returned as is, but any other failure is thrown.
+     */
+    private ProcessResult runTests(Path dir, boolean withValgrind) throws Exception {
         String target = withValgrind ? "run-test-with-valgrind" : "run-test";
         String[] command = {"make", target};
 
         log.info("Running tests with command {0}", new Object[] {Arrays.deepToString(command)});
 
-        ProcessRunner runner = new ProcessRunner(command, dir);
+        ProcessRunner runner =
+                new ProcessRunner(command, dir, getOutputLimits(dir))
+                        .withResourceLimits(getResourceLimits(dir));
         ProcessResult result = runner.call();
-        if (result.statusCode != 0) {
+        if (result.statusCode != 0 && !result.timedOut) {
             log.warn(result.errorOutput);
             throw new IllegalArgumentException(result.errorOutput);
         }
+        return result;
     }
 
     @Override
@@ -7,12 +7,14 @@ import fi.helsinki.cs.tmc.langs.abstraction.ValidationResult;
 import fi.helsinki.cs.tmc.langs.domain.ExerciseBuilder;
 import fi.helsinki.cs.tmc.langs.domain.ExerciseDesc;
 import fi.helsinki.cs.tmc.langs.domain.ExercisePackagingConfiguration;
+import fi.helsinki.cs.tmc.langs.domain.ResourceUsage;
 import fi.helsinki.cs.tmc.langs.domain.RunResult;
 import fi.helsinki.cs.tmc.langs.domain.TestDesc;
 import fi.helsinki.cs.tmc.langs.io.StudentFilePolicy;
 import fi.helsinki.cs.tmc.langs.io.sandbox.StudentFileAwareSubmissionProcessor;
 import fi.helsinki.cs.tmc.langs.io.zip.StudentFileAwareUnzipper;
 import fi.helsinki.cs.tmc.langs.io.zip.StudentFileAwareZipper;
+import fi.helsinki.cs.tmc.langs.utils.ProcessResult;
 import fi.helsinki.cs.tmc.langs.utils.ProcessRunner;
 
 import com.google.common.base.Optional;
@@ -44,6 +46,7 @@ public final class Python3Plugin extends AbstractLanguagePlugin {
     private static final Path MAIN_PY_PATH = Paths.get("__main__.py");
 
     private static final String CANNOT_RUN_TESTS_MESSAGE = "Failed to run tests.";
+    private static final String TESTS_TIMED_OUT_MESSAGE = "Running tests timed out.";
     private static final String CANNOT_PARSE_TEST_RESULTS_MESSAGE = "Failed to read test results.";
     private static final String CANNOT_SCAN_EXERCISE_MESSAGE = "Failed to scan exercise.";
     private static final String CANNOT_PARSE_EXERCISE_DESCRIPTION_MESSAGE =
@@ -103,15 +106,29 @@ public final class Python3Plugin extends AbstractLanguagePlugin {
     @Override
     public RunResult runTests(Path path) {
 
-        ProcessRunner runner = new ProcessRunner(getTestCommand(), path);
+        ProcessRunner runner =
+                new ProcessRunner(getTestCommand(), path, getOutputLimits(path))
+                        .withResourceLimits(getResourceLimits(path))
+                        .withSpilledOutput();
+        ResourceUsage resourceUsage = null;
         try {
-            runner.call();
+            ProcessResult result = runner.call();
+            resourceUsage = result.resourceUsage;
+            if (result.timedOut) {
+                log.error(TESTS_TIMED_OUT_MESSAGE);
+                return runResultFromInterruptedProcess(result);
+            }
+            result.close();
+        } catch (InterruptedException e) {
+            log.error(CANNOT_RUN_TESTS_MESSAGE, e);
+            Thread.currentThread().interrupt();
+            return runResultFromInterruptedProcess();
         } catch (Exception e) {
             log.error(CANNOT_RUN_TESTS_MESSAGE, e);
         }
 
         try {
-            return new Python3TestResultParser(path).parse();
+            return new Python3TestResultParser(path).parse().withResourceUsage(resourceUsage);
         } catch (IOException e) {
             log.error(CANNOT_PARSE_TEST_RESULTS_MESSAGE, e);
         }
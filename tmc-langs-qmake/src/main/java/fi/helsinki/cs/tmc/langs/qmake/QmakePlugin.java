@@ -7,6 +7,7 @@ import fi.helsinki.cs.tmc.langs.abstraction.ValidationResult;
 import fi.helsinki.cs.tmc.langs.domain.ExerciseBuilder;
 import fi.helsinki.cs.tmc.langs.domain.ExerciseDesc;
 import fi.helsinki.cs.tmc.langs.domain.ExercisePackagingConfiguration;
+import fi.helsinki.cs.tmc.langs.domain.ResourceUsage;
 import fi.helsinki.cs.tmc.langs.domain.RunResult;
 import fi.helsinki.cs.tmc.langs.domain.RunResult.Status;
 import fi.helsinki.cs.tmc.langs.domain.SpecialLogs;
@@ -200,8 +201,17 @@ public final class QmakePlugin extends AbstractLanguagePlugin {
 
         log.info("Testing project with command {}", Arrays.toString(makeCommand));
 
+        ResourceUsage resourceUsage;
         try {
-            ProcessResult testRun = run(makeCommand, shadowDir);
+            ProcessResult testRun =
+                    new ProcessRunner(makeCommand, shadowDir, getOutputLimits(fullPath))
+                            .withResourceLimits(getResourceLimits(fullPath))
+                            .call();
+            if (testRun.timedOut) {
+                log.error("Testing with make check timed out");
+                return runResultFromInterruptedProcess(testRun);
+            }
+            resourceUsage = testRun.resourceUsage;
 
             if (!Files.exists(testResults) || Files.size(testResults) == 0) {
                 log.error("Failed to get test output at {}", testResults);
@@ -209,14 +219,18 @@ public final class QmakePlugin extends AbstractLanguagePlugin {
                 log.error("Test stderr\n {}", testRun.errorOutput);
                 return filledFailure(Status.COMPILE_FAILED, testRun.errorOutput);
             }
-        } catch (IOException | InterruptedException e) {
+        } catch (InterruptedException e) {
+            log.error("Testing with make check was interrupted", e);
+            Thread.currentThread().interrupt();
+            return runResultFromInterruptedProcess();
+        } catch (IOException e) {
             log.error("Testing with make check failed", e);
             return filledFailure(Status.GENERIC_ERROR, "Testing with make check failed");
         }
 
         QTestResultParser parser = new QTestResultParser();
         parser.loadTests(testResults);
-        return parser.result();
+        return parser.result().withResourceUsage(resourceUsage);
     }
 
     @Override
@@ -7,6 +7,7 @@ import fi.helsinki.cs.tmc.langs.abstraction.ValidationResult;
 import fi.helsinki.cs.tmc.langs.domain.ExerciseBuilder;
 import fi.helsinki.cs.tmc.langs.domain.ExerciseDesc;
 import fi.helsinki.cs.tmc.langs.domain.ExercisePackagingConfiguration;
+import fi.helsinki.cs.tmc.langs.domain.ResourceUsage;
 import fi.helsinki.cs.tmc.langs.domain.RunResult;
 import fi.helsinki.cs.tmc.langs.domain.SpecialLogs;
 import fi.helsinki.cs.tmc.langs.domain.TestDesc;
@@ -58,6 +59,7 @@ public final class RPlugin extends AbstractLanguagePlugin {
     private static final Path TESTTHAT_FOLDER_PATH = Paths.get("testthat");
 
     private static final String CANNOT_RUN_TESTS_MESSAGE = "Failed to run tests.";
+    private static final String TESTS_TIMED_OUT_MESSAGE = "Running tests timed out.";
     private static final String CANNOT_PARSE_TEST_RESULTS_MESSAGE = "Failed to read test results.";
     private static final String CANNOT_SCAN_EXERCISE_MESSAGE = "Failed to scan exercise.";
     private static final String CANNOT_PARSE_EXERCISE_DESCRIPTION_MESSAGE =
@@ -120,23 +122,37 @@ public final class RPlugin extends AbstractLanguagePlugin {
 
     @Override
     public RunResult runTests(Path path) {
-        ProcessRunner runner = new ProcessRunner(getTestCommand(), path);
+        ProcessRunner runner =
+                new ProcessRunner(getTestCommand(), path, getOutputLimits(path))
+                        .withResourceLimits(getResourceLimits(path))
+                        .withSpilledOutput();
 
         deleteResultsJson(path);
  
+        ResourceUsage resourceUsage;
         try {
             ProcessResult result = runner.call();
+            resourceUsage = result.resourceUsage;
+            if (result.timedOut) {
+                log.error(TESTS_TIMED_OUT_MESSAGE);
+                return runResultFromInterruptedProcess(result);
+            }
+            result.close();
             if (result.statusCode != 0) {
                 log.error(CANNOT_RUN_TESTS_MESSAGE);
                 return getGenericErrorRunResult(new Exception(CANNOT_RUN_TESTS_MESSAGE));
             }
+        } catch (InterruptedException e) {
+            log.error(CANNOT_RUN_TESTS_MESSAGE, e);
+            Thread.currentThread().interrupt();
+            return runResultFromInterruptedProcess();
         } catch (Exception e) {
             log.error(CANNOT_RUN_TESTS_MESSAGE, e);
             return getGenericErrorRunResult(e);
         }
 
         try {
-            return new RTestResultParser(path).parse();
+            return new RTestResultParser(path).parse().withResourceUsage(resourceUsage);
         } catch (IOException e) {
             log.error(CANNOT_PARSE_TEST_RESULTS_MESSAGE, e);
             return getGenericErrorRunResult(e);
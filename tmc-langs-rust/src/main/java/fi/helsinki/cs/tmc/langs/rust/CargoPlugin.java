@@ -13,8 +13,10 @@ import fi.helsinki.cs.tmc.langs.io.sandbox.StudentFileAwareSubmissionProcessor;
 import fi.helsinki.cs.tmc.langs.io.zip.StudentFileAwareUnzipper;
 import fi.helsinki.cs.tmc.langs.io.zip.StudentFileAwareZipper;
 import fi.helsinki.cs.tmc.langs.rust.util.Constants;
+import fi.helsinki.cs.tmc.langs.utils.OutputLimits;
 import fi.helsinki.cs.tmc.langs.utils.ProcessResult;
 import fi.helsinki.cs.tmc.langs.utils.ProcessRunner;
+import fi.helsinki.cs.tmc.langs.utils.ResourceLimits;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
@@ -61,6 +63,15 @@ public class CargoPlugin extends AbstractLanguagePlugin {
         return new CargoStudentFilePolicy(projectPath);
     }
 
+    /**
+     * The test results are parsed from the output of cargo, so all of it is kept unless the
+     * project limits it.
+     */
+    @Override
+    protected OutputLimits getDefaultOutputLimits() {
+        return OutputLimits.UNLIMITED;
+    }
+
     @Override
     public ValidationResult checkCodeStyle(Path path, Locale locale) {
         if (run(new String[] {"cargo", "clean"}, path).isPresent()) {
@@ -132,15 +143,26 @@ public class CargoPlugin extends AbstractLanguagePlugin {
     private RunResult runBuiltTests(Path dir) {
         String[] command = {"cargo", "test"};
         log.info("Running tests with command {}", Arrays.deepToString(command));
-        Optional<ProcessResult> result = run(command, dir);
+        Optional<ProcessResult> result =
+                run(command, dir, getOutputLimits(dir), getResourceLimits(dir));
         if (result.isPresent()) {
+            if (result.get().timedOut) {
+                log.info("Running tests timed out.");
+                return runResultFromInterruptedProcess(result.get());
+            }
             return parseResult(result.get(), dir);
         }
         return EMPTY_FAILURE;
     }
 
     private Optional<ProcessResult> run(String[] command, Path dir) {
-        ProcessRunner runner = new ProcessRunner(command, dir);
+        return run(command, dir, OutputLimits.UNLIMITED, ResourceLimits.NONE);
+    }
+
+    private Optional<ProcessResult> run(
+            String[] command, Path dir, OutputLimits limits, ResourceLimits resourceLimits) {
+        ProcessRunner runner =
+                new ProcessRunner(command, dir, limits).withResourceLimits(resourceLimits);
         try {
             return Optional.of(runner.call());
         } catch (Exception e) {
@@ -159,7 +181,9 @@ public class CargoPlugin extends AbstractLanguagePlugin {
     }
 
     private RunResult parseResult(ProcessResult processResult, Path path) {
-        return new CargoResultParser().parse(processResult);
+        return new CargoResultParser()
+                .parse(processResult)
+                .withResourceUsage(processResult.resourceUsage);
     }
 
     private ValidationResult parseLints(ProcessResult processResult) {
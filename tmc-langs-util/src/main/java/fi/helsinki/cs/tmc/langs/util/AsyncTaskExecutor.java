@@ -0,0 +1,61 @@
+package fi.helsinki.cs.tmc.langs.util;
+
+import fi.helsinki.cs.tmc.langs.abstraction.ValidationResult;
+import fi.helsinki.cs.tmc.langs.domain.ExerciseDesc;
+import fi.helsinki.cs.tmc.langs.domain.RunResult;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Optional;
+
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Calls the tasks of {@link TaskExecutor} in the given executor, returning the future of their
+ * results instead of blocking the caller.
+ *
+ * <p>A task that fails completes its future exceptionally with the exception the blocking
+ * task would have thrown, such as a
+ * {@link fi.helsinki.cs.tmc.langs.domain.NoLanguagePluginFoundException}.
+ *
+ * <p>This only moves the blocking calls off the caller's thread. The language plugins compile
+ * and run the tests synchronously, so each task still occupies a thread of the executor for
+ * its whole run, including the time spent waiting for build and test processes. The executor
+ * therefore decides how many tasks run at the same time, and a bounded executor queues the
+ * rest instead of running them with fewer threads.
+ *
+ * @see TaskExecutor
+ */
+@Beta
+public interface AsyncTaskExecutor {
+
+    /**
+     * Runs {@link TaskExecutor#runCheckCodeStyle(Path, Locale)} in the executor.
+     */
+    CompletableFuture<ValidationResult> runCheckCodeStyle(
+            Path path, Locale locale, Executor executor);
+
+    /**
+     * Runs {@link TaskExecutor#runTests(Path)} in the executor.
+     */
+    CompletableFuture<RunResult> runTests(Path path, Executor executor);
+
+    /**
+     * Runs {@link TaskExecutor#scanExercise(Path, String)} in the executor.
+     */
+    CompletableFuture<Optional<ExerciseDesc>> scanExercise(
+            Path path, String exerciseName, Executor executor);
+
+    /**
+     * Runs {@link TaskExecutor#extractProject(Path, Path)} in the executor.
+     */
+    CompletableFuture<Void> extractProject(
+            Path compressedProject, Path targetLocation, Executor executor);
+
+    /**
+     * Runs {@link TaskExecutor#compressProject(Path)} in the executor.
+     */
+    CompletableFuture<byte[]> compressProject(Path path, Executor executor);
+}
@@ -0,0 +1,124 @@
+package fi.helsinki.cs.tmc.langs.util;
+
+import fi.helsinki.cs.tmc.langs.abstraction.ValidationResult;
+import fi.helsinki.cs.tmc.langs.domain.ExerciseDesc;
+import fi.helsinki.cs.tmc.langs.domain.RunResult;
+
+import com.google.common.base.Optional;
+
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the tasks of a {@link TaskExecutor}, by default a {@link TaskExecutorImpl}.
+ *
+ * <p>Each operation is submitted to the executor as one task that makes the blocking call, so
+ * this is a thread-offloading wrapper rather than non-blocking I/O.
+ */
+public class AsyncTaskExecutorImpl implements AsyncTaskExecutor {
+
+    private final TaskExecutor taskExecutor;
+
+    public AsyncTaskExecutorImpl() {
+        this(new TaskExecutorImpl());
+    }
+
+    public AsyncTaskExecutorImpl(TaskExecutor taskExecutor) {
+        this.taskExecutor = taskExecutor;
+    }
+
+    @Override
+    public CompletableFuture<ValidationResult> runCheckCodeStyle(
+            final Path path, final Locale locale, Executor executor) {
+        Callable<ValidationResult> task =
+                new Callable<ValidationResult>() {
+                    @Override
+                    public ValidationResult call() throws Exception {
+                        return taskExecutor.runCheckCodeStyle(path, locale);
+                    }
+                };
+        return submit(task, executor);
+    }
+
+    @Override
+    public CompletableFuture<RunResult> runTests(final Path path, Executor executor) {
+        Callable<RunResult> task =
+                new Callable<RunResult>() {
+                    @Override
+                    public RunResult call() throws Exception {
+                        return taskExecutor.runTests(path);
+                    }
+                };
+        return submit(task, executor);
+    }
+
+    @Override
+    public CompletableFuture<Optional<ExerciseDesc>> scanExercise(
+            final Path path, final String exerciseName, Executor executor) {
+        Callable<Optional<ExerciseDesc>> task =
+                new Callable<Optional<ExerciseDesc>>() {
+                    @Override
+                    public Optional<ExerciseDesc> call() throws Exception {
+                        return taskExecutor.scanExercise(path, exerciseName);
+                    }
+                };
+        return submit(task, executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> extractProject(
+            final Path compressedProject, final Path targetLocation, Executor executor) {
+        Callable<Void> task =
+                new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        taskExecutor.extractProject(compressedProject, targetLocation);
+                        return null;
+                    }
+                };
+        return submit(task, executor);
+    }
+
+    @Override
+    public CompletableFuture<byte[]> compressProject(final Path path, Executor executor) {
+        Callable<byte[]> task =
+                new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws Exception {
+                        return taskExecutor.compressProject(path);
+                    }
+                };
+        return submit(task, executor);
+    }
+
+    /**
+     * Runs the task in the executor, completing the future with its result or with the
+     * exception it threw.
+     */
+    private static <T> CompletableFuture<T> submit(final Callable<T> task, Executor executor) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable run =
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        if (result.isDone()) {
+                            return;
+                        }
+                        try {
+                            result.complete(task.call());
+                        } catch (Throwable e) {
+                            result.completeExceptionally(e);
+                        }
+                    }
+                };
+        try {
+            executor.execute(run);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,282 @@
+package fi.helsinki.cs.tmc.langs.util;
+
+import fi.helsinki.cs.tmc.langs.domain.ExerciseDesc;
+import fi.helsinki.cs.tmc.langs.domain.TestDesc;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * On-disk index of the exercises of a course repository.
+ *
+ * <p>Records the project type of every exercise found and, once scanned, its
+ * {@link ExerciseDesc} together with a fingerprint of the exercise's contents. A cached
+ * description is only handed out while the fingerprint still matches, so unchanged exercises
+ * don't need to be compiled and scanned again.
+ *
+ * <p>The index is not locked. Concurrent writers may lose each other's updates, which only
+ * causes the affected exercises to be scanned again.
+ */
+public final class ExerciseIndex {
+
+    public static final String DEFAULT_FILE_NAME = ".tmc-index";
+
+    private static final Logger log = LoggerFactory.getLogger(ExerciseIndex.class);
+
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Directories that only contain metadata or build output wherever they are, and are not
+     * fingerprinted.
+     */
+    private static final Set<String> SKIPPED_DIRECTORIES =
+            new HashSet<>(Arrays.asList(".git", ".svn", ".idea", "__pycache__"));
+
+    /**
+     * Directories directly under the exercise root that only contain build output or private
+     * files and are not fingerprinted. Deeper down these names can be source packages.
+     */
+    private static final Set<String> SKIPPED_ROOT_DIRECTORIES =
+            new HashSet<>(Arrays.asList("target", "build", "dist", "private"));
+
+    /**
+     * Files the language plugins write into the exercise directory while building or testing.
+     */
+    private static final Set<String> SKIPPED_FILES =
+            new HashSet<>(
+                    Arrays.asList(
+                            DEFAULT_FILE_NAME, "build_log.txt", "build_errors.txt",
+                            "results.txt", "test_output.txt", ".available_points.json",
+                            ".tmc_test_results.json", "tmc-junit-runner.jar"));
+
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    private final Path indexFile;
+    private final Path rootPath;
+    private final IndexData data;
+
+    private ExerciseIndex(Path indexFile, IndexData data) {
+        this.indexFile = indexFile.toAbsolutePath();
+        this.rootPath = this.indexFile.getParent();
+        this.data = data;
+    }
+
+    /**
+     * Loads the index from the given file. A missing, unreadable or outdated index file yields
+     * an empty index.
+     */
+    public static ExerciseIndex load(Path indexFile) {
+        if (Files.exists(indexFile)) {
+            try (Reader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+                IndexData data = gson.fromJson(reader, IndexData.class);
+                if (data != null && data.version == FORMAT_VERSION && data.exercises != null) {
+                    return new ExerciseIndex(indexFile, data);
+                }
+                log.info("Ignoring exercise index of unknown format at {}", indexFile);
+            } catch (IOException | JsonParseException ex) {
+                log.warn("Unable to read exercise index at {}, starting over", indexFile, ex);
+            }
+        }
+        return new ExerciseIndex(indexFile, new IndexData());
+    }
+
+    /**
+     * Replaces the set of indexed exercises with the given exercises. Entries of exercises that
+     * are still present, including their cached descriptions, are kept.
+     */
+    public void updateExercises(Collection<Path> exercisePaths) {
+        SortedMap<String, IndexEntry> exercises = new TreeMap<>();
+        for (Path exercisePath : exercisePaths) {
+            String key = keyOf(exercisePath);
+            IndexEntry entry = data.exercises.get(key);
+            if (entry == null) {
+                entry = new IndexEntry();
+                entry.projectType = findProjectType(exercisePath);
+            }
+            exercises.put(key, entry);
+        }
+        data.exercises = exercises;
+    }
+
+    /**
+     * Returns the cached description of the exercise, if the exercise hasn't changed since it
+     * was stored. The description is renamed to {@code exerciseName}.
+     */
+    public Optional<ExerciseDesc> getExerciseDesc(Path exercisePath, String exerciseName)
+            throws IOException {
+        IndexEntry entry = data.exercises.get(keyOf(exercisePath));
+        if (entry == null || entry.fingerprint == null || entry.tests == null) {
+            return Optional.absent();
+        }
+        if (!entry.fingerprint.equals(fingerprint(exercisePath))) {
+            log.info("Exercise at {} has changed since it was indexed", exercisePath);
+            return Optional.absent();
+        }
+
+        ImmutableList.Builder<TestDesc> tests = ImmutableList.builder();
+        for (IndexedTest test : entry.tests) {
+            tests.add(new TestDesc(test.name, ImmutableList.copyOf(test.points)));
+        }
+        return Optional.of(new ExerciseDesc(exerciseName, tests.build()));
+    }
+
+    /**
+     * Stores the description of the exercise along with the current fingerprint of its
+     * contents.
+     */
+    public void putExerciseDesc(Path exercisePath, ExerciseDesc exerciseDesc) throws IOException {
+        IndexEntry entry = new IndexEntry();
+        entry.projectType = findProjectType(exercisePath);
+        entry.fingerprint = fingerprint(exercisePath);
+        entry.tests = new ArrayList<>();
+        for (TestDesc test : exerciseDesc.tests) {
+            IndexedTest indexed = new IndexedTest();
+            indexed.name = test.name;
+            indexed.points = new ArrayList<>(test.points);
+            entry.tests.add(indexed);
+        }
+        data.exercises.put(keyOf(exercisePath), entry);
+    }
+
+    /**
+     * Writes the index to disk, replacing the previous index file.
+     */
+    public void save() throws IOException {
+        Files.createDirectories(rootPath);
+        Path tempFile = Files.createTempFile(rootPath, DEFAULT_FILE_NAME, ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                gson.toJson(data, writer);
+            }
+            Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        log.info("Saved exercise index with {} exercises to {}", data.exercises.size(), indexFile);
+    }
+
+    /**
+     * Computes a fingerprint of the exercise's contents. Build output and files that the
+     * language plugins generate are not included.
+     */
+    static String fingerprint(final Path exercisePath) throws IOException {
+        final SortedMap<String, Path> files = new TreeMap<>();
+        Files.walkFileTree(
+                exercisePath,
+                new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(
+                            Path dir, BasicFileAttributes attrs) {
+                        if (dir.equals(exercisePath)) {
+                            return FileVisitResult.CONTINUE;
+                        }
+                        String name = dir.getFileName().toString();
+                        if (SKIPPED_DIRECTORIES.contains(name)
+                                || (dir.getParent().equals(exercisePath)
+                                        && SKIPPED_ROOT_DIRECTORIES.contains(name))) {
+                            return FileVisitResult.SKIP_SUBTREE;
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        String name = file.getFileName().toString();
+                        if (attrs.isRegularFile()
+                                && !SKIPPED_FILES.contains(name)
+                                && !name.endsWith(".class")
+                                && !name.endsWith(".pyc")
+                                && !name.endsWith(".o")) {
+                            files.put(toKey(exercisePath.relativize(file)), file);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+
+        Hasher hasher = Hashing.sha1().newHasher();
+        OutputStream hashStream = Funnels.asOutputStream(hasher);
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+            hasher.putString(file.getKey(), StandardCharsets.UTF_8);
+            hasher.putLong(Files.size(file.getValue()));
+            Files.copy(file.getValue(), hashStream);
+        }
+        return hasher.hash().toString();
+    }
+
+    private String keyOf(Path exercisePath) {
+        Path absolutePath = exercisePath.toAbsolutePath().normalize();
+        if (absolutePath.startsWith(rootPath)) {
+            return toKey(rootPath.relativize(absolutePath));
+        }
+        return toKey(absolutePath);
+    }
+
+    private static String toKey(Path path) {
+        StringBuilder key = new StringBuilder();
+        if (path.isAbsolute()) {
+            key.append(path.getRoot().toString());
+        }
+        for (int i = 0; i < path.getNameCount(); i++) {
+            if (i > 0) {
+                key.append('/');
+            }
+            key.append(path.getName(i).toString());
+        }
+        return key.length() == 0 ? "." : key.toString();
+    }
+
+    private static String findProjectType(Path exercisePath) {
+        try {
+            return ProjectType.getProjectType(exercisePath).name();
+        } catch (Exception ex) {
+            log.debug("Could not determine project type of {}", exercisePath, ex);
+            return null;
+        }
+    }
+
+    private static final class IndexData {
+        int version = FORMAT_VERSION;
+        SortedMap<String, IndexEntry> exercises = new TreeMap<>();
+    }
+
+    private static final class IndexEntry {
+        String projectType;
+        String fingerprint;
+        List<IndexedTest> tests;
+    }
+
+    private static final class IndexedTest {
+        String name;
+        List<String> points;
+    }
+}
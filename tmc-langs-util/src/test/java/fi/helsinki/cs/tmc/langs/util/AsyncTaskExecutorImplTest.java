@@ -0,0 +1,121 @@
+package fi.helsinki.cs.tmc.langs.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import fi.helsinki.cs.tmc.langs.abstraction.ValidationResult;
+import fi.helsinki.cs.tmc.langs.domain.NoLanguagePluginFoundException;
+import fi.helsinki.cs.tmc.langs.utils.TestUtils;
+
+import org.apache.commons.io.FileUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+public class AsyncTaskExecutorImplTest {
+
+    private final AsyncTaskExecutor asyncTaskExecutor = new AsyncTaskExecutorImpl();
+    private final AtomicInteger executed = new AtomicInteger();
+    private ExecutorService pool;
+    private Executor executor;
+    private Path target;
+
+    @Before
+    public void setUp() throws Exception {
+        pool = Executors.newSingleThreadExecutor();
+        executor =
+                new Executor() {
+                    @Override
+                    public void execute(Runnable task) {
+                        executed.incrementAndGet();
+                        pool.execute(task);
+                    }
+                };
+        target = Files.createTempDirectory("tmc-async-task-executor");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.shutdownNow();
+        FileUtils.deleteDirectory(target.toFile());
+    }
+
+    @Test
+    public void compressedProjectCanBeExtracted() throws Exception {
+        Path project = TestUtils.getPath(getClass(), "arith_funcs");
+        final Path zip = target.resolve("project.zip");
+
+        CompletableFuture<Void> extracted =
+                asyncTaskExecutor
+                        .compressProject(project, executor)
+                        .thenAccept(new WriteTo(zip))
+                        .thenCompose(new Extract(zip, target.resolve("extracted")));
+        extracted.get(30, TimeUnit.SECONDS);
+
+        assertEquals(2, executed.get());
+        assertTrue(Files.exists(target.resolve("extracted").resolve("src").resolve("Arith.java")));
+    }
+
+    @Test
+    public void missingLanguagePluginFailsTheFuture() throws Exception {
+        CompletableFuture<ValidationResult> result =
+                asyncTaskExecutor.runCheckCodeStyle(target, Locale.ENGLISH, executor);
+        try {
+            result.get(30, TimeUnit.SECONDS);
+            fail("Expected no language plugin to be found");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof NoLanguagePluginFoundException);
+        }
+    }
+
+    private static final class WriteTo implements Consumer<byte[]> {
+
+        private final Path file;
+
+        WriteTo(Path file) {
+            this.file = file;
+        }
+
+        @Override
+        public void accept(byte[] bytes) {
+            try {
+                Files.write(file, bytes);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    private final class Extract implements Function<Void, CompletableFuture<Void>> {
+
+        private final Path zip;
+        private final Path destination;
+
+        Extract(Path zip, Path destination) {
+            this.zip = zip;
+            this.destination = destination;
+        }
+
+        @Override
+        public CompletableFuture<Void> apply(Void ignored) {
+            return asyncTaskExecutor.extractProject(zip, destination, executor);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package fi.helsinki.cs.tmc.langs.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import fi.helsinki.cs.tmc.langs.domain.ExerciseDesc;
+import fi.helsinki.cs.tmc.langs.domain.TestDesc;
+import fi.helsinki.cs.tmc.langs.utils.TestUtils;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+
+import org.apache.commons.io.FileUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class ExerciseIndexTest {
+
+    private Path repoPath;
+    private Path exercisePath;
+    private Path indexFile;
+    private ExerciseDesc exerciseDesc;
+
+    @Before
+    public void setUp() throws Exception {
+        repoPath = Files.createTempDirectory("tmc-index-test");
+        exercisePath = repoPath.resolve("arith_funcs");
+        FileUtils.copyDirectory(
+                TestUtils.getPath(getClass(), "arith_funcs").toFile(), exercisePath.toFile());
+        indexFile = repoPath.resolve(ExerciseIndex.DEFAULT_FILE_NAME);
+        exerciseDesc =
+                new ExerciseDesc(
+                        "arith_funcs",
+                        ImmutableList.of(
+                                new TestDesc("ArithTest testAdd", ImmutableList.of("arith-add"))));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(repoPath.toFile());
+    }
+
+    @Test
+    public void storedDescriptionIsReturnedForUnchangedExercise() throws Exception {
+        ExerciseIndex index = ExerciseIndex.load(indexFile);
+        index.putExerciseDesc(exercisePath, exerciseDesc);
+        index.save();
+
+        Optional<ExerciseDesc> cached =
+                ExerciseIndex.load(indexFile).getExerciseDesc(exercisePath, "renamed");
+
+        assertTrue(cached.isPresent());
+        assertEquals("renamed", cached.get().name);
+        assertEquals(1, cached.get().tests.size());
+        assertEquals("ArithTest testAdd", cached.get().tests.get(0).name);
+        assertEquals(ImmutableList.of("arith-add"), cached.get().tests.get(0).points);
+    }
+
+    @Test
+    public void storedDescriptionIsDiscardedWhenExerciseChanges() throws Exception {
+        ExerciseIndex index = ExerciseIndex.load(indexFile);
+        index.putExerciseDesc(exercisePath, exerciseDesc);
+
+        Files.write(exercisePath.resolve("src").resolve("New.java"), "class New {}".getBytes());
+
+        assertFalse(index.getExerciseDesc(exercisePath, "arith_funcs").isPresent());
+    }
+
+    @Test
+    public void buildOutputDoesNotChangeFingerprint() throws Exception {
+        final String before = ExerciseIndex.fingerprint(exercisePath);
+
+        Path classes = exercisePath.resolve("build").resolve("classes");
+        Files.createDirectories(classes);
+        Files.write(classes.resolve("Arith.java"), "class Arith {}".getBytes());
+        Files.write(exercisePath.resolve("build_log.txt"), "BUILD SUCCESSFUL".getBytes());
+
+        assertEquals(before, ExerciseIndex.fingerprint(exercisePath));
+    }
+
+    @Test
+    public void sourcePackagesNamedLikeBuildOutputChangeFingerprint() throws Exception {
+        String before = ExerciseIndex.fingerprint(exercisePath);
+
+        Path buildPackage = exercisePath.resolve("src").resolve("build");
+        Files.createDirectories(buildPackage);
+        Files.write(buildPackage.resolve("Builder.java"), "class Builder {}".getBytes());
+
+        assertNotEquals(before, ExerciseIndex.fingerprint(exercisePath));
+    }
+
+    @Test
+    public void updatingExercisesDropsRemovedExercises() throws Exception {
+        ExerciseIndex index = ExerciseIndex.load(indexFile);
+        index.putExerciseDesc(exercisePath, exerciseDesc);
+        index.updateExercises(Arrays.asList(repoPath.resolve("other")));
+
+        assertFalse(index.getExerciseDesc(exercisePath, "arith_funcs").isPresent());
+    }
+
+    @Test
+    public void corruptIndexIsIgnored() throws Exception {
+        Files.write(indexFile, "not json {".getBytes());
+
+        ExerciseIndex index = ExerciseIndex.load(indexFile);
+
+        assertFalse(index.getExerciseDesc(exercisePath, "arith_funcs").isPresent());
+    }
+}